@@ -0,0 +1,101 @@
+/*
+ * OdometryIntegrationBenchmark.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.drive;
+
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team5924.frc2025.util.PoseCovarianceTracker;
+import org.team5924.frc2025.util.PoseHistory;
+
+/**
+ * One loop of odometry integration as done in {@link Drive#periodic()}: five 250 Hz samples, each
+ * updating the pose estimator, pose history and covariance. Drive itself needs hardware IO, so the
+ * per-sample work is reproduced here with the robot driving an arc.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OdometryIntegrationBenchmark {
+  private static final double SAMPLE_PERIOD = 1.0 / 250.0;
+  private static final int SAMPLES_PER_LOOP = 5;
+  private static final double HALF_TRACK = 0.29;
+
+  private SwerveDrivePoseEstimator poseEstimator;
+  private PoseHistory poseHistory;
+  private PoseCovarianceTracker poseCovariance;
+  private final SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
+  private double timestamp = 0.0;
+  private double yawRad = 0.0;
+
+  @Setup
+  public void setup() {
+    SwerveDriveKinematics kinematics =
+        new SwerveDriveKinematics(
+            new Translation2d(HALF_TRACK, HALF_TRACK),
+            new Translation2d(HALF_TRACK, -HALF_TRACK),
+            new Translation2d(-HALF_TRACK, HALF_TRACK),
+            new Translation2d(-HALF_TRACK, -HALF_TRACK));
+    for (int i = 0; i < 4; i++) {
+      modulePositions[i] = new SwerveModulePosition();
+    }
+    poseEstimator =
+        new SwerveDrivePoseEstimator(kinematics, new Rotation2d(), modulePositions, new Pose2d());
+    poseHistory = new PoseHistory((int) Math.ceil(250 * Drive.POSE_HISTORY_SECONDS));
+    poseCovariance = new PoseCovarianceTracker(0.05, 0.02, 0.005, 0.002, 0.02, 0.005, 10.0, 1.0);
+  }
+
+  @Benchmark
+  public Pose2d integrateLoop() {
+    Pose2d currentPose = poseEstimator.getEstimatedPosition();
+    for (int sample = 0; sample < SAMPLES_PER_LOOP; sample++) {
+      timestamp += SAMPLE_PERIOD;
+      yawRad += 1.0 * SAMPLE_PERIOD;
+      Rotation2d moduleAngle = Rotation2d.fromRadians(0.5 * yawRad);
+      for (int i = 0; i < 4; i++) {
+        modulePositions[i].distanceMeters += 3.0 * SAMPLE_PERIOD;
+        modulePositions[i].angle = moduleAngle;
+      }
+
+      Pose2d previousPose = currentPose;
+      currentPose =
+          poseEstimator.updateWithTime(timestamp, new Rotation2d(yawRad), modulePositions);
+      poseCovariance.predict(
+          currentPose.getTranslation().getDistance(previousPose.getTranslation()),
+          Math.abs(currentPose.getRotation().minus(previousPose.getRotation()).getRadians()),
+          SAMPLE_PERIOD);
+      poseHistory.addSample(
+          timestamp,
+          currentPose,
+          (currentPose.getX() - previousPose.getX()) / SAMPLE_PERIOD,
+          (currentPose.getY() - previousPose.getY()) / SAMPLE_PERIOD,
+          1.0);
+    }
+    return currentPose;
+  }
+}
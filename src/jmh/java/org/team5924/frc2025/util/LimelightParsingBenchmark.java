@@ -0,0 +1,90 @@
+/*
+ * LimelightParsingBenchmark.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares decoding a botpose array through {@link LimelightHelpers} and the {@code fromLimelight}
+ * copies against decoding it in place with {@link LimelightPoseParser}. Run with {@code -prof gc}
+ * to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LimelightParsingBenchmark {
+  private static final long TIMESTAMP_MICROS = 12_345_678L;
+
+  @Param({"1", "2", "4"})
+  public int tagCount;
+
+  private double[] poseArray;
+  private final MegatagPoseEstimate estimate = new MegatagPoseEstimate();
+  private FiducialObservation[] fiducials;
+
+  @Setup
+  public void setup() {
+    poseArray = new double[11 + 7 * tagCount];
+    poseArray[0] = 4.2;
+    poseArray[1] = 3.1;
+    poseArray[5] = 37.0;
+    poseArray[6] = 24.0;
+    poseArray[7] = tagCount;
+    poseArray[8] = 0.8;
+    poseArray[9] = 2.1;
+    poseArray[10] = 0.4;
+    for (int i = 0; i < tagCount; i++) {
+      int base = 11 + 7 * i;
+      poseArray[base] = 17 + i;
+      poseArray[base + 1] = 0.1 * i;
+      poseArray[base + 2] = -0.05 * i;
+      poseArray[base + 3] = 0.4;
+      poseArray[base + 4] = 2.0;
+      poseArray[base + 5] = 2.2;
+      poseArray[base + 6] = 0.05;
+    }
+
+    fiducials = new FiducialObservation[tagCount];
+    for (int i = 0; i < tagCount; i++) {
+      fiducials[i] = new FiducialObservation();
+    }
+  }
+
+  @Benchmark
+  public void limelightHelpers(Blackhole blackhole) {
+    LimelightHelpers.PoseEstimate poseEstimate =
+        LimelightHelpers.parseBotPoseEstimate(poseArray, TIMESTAMP_MICROS, true);
+    blackhole.consume(MegatagPoseEstimate.fromLimelight(poseEstimate, true));
+    blackhole.consume(FiducialObservation.fromLimelight(poseEstimate.rawFiducials));
+  }
+
+  @Benchmark
+  public void pooled(Blackhole blackhole) {
+    blackhole.consume(
+        LimelightPoseParser.parse(poseArray, TIMESTAMP_MICROS, true, estimate, fiducials));
+    blackhole.consume(estimate.pose);
+  }
+}
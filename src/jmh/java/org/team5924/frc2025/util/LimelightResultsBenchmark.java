@@ -0,0 +1,64 @@
+/*
+ * LimelightResultsBenchmark.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the full {@link LimelightHelpers#parseLatestResults(String)} object mapping against the
+ * streaming {@link LimelightResultsParser} on JSON dumps in {@code src/jmh/resources/limelight}.
+ * Drop dumps recorded from the cameras into that directory and list them below to benchmark them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LimelightResultsBenchmark {
+  @Param({"apriltag_3_tags.json", "detector_4_targets.json"})
+  public String sample;
+
+  private String json;
+  private final LimelightResultsParser.Results results = new LimelightResultsParser.Results();
+
+  @Setup
+  public void setup() throws IOException {
+    try (InputStream stream = getClass().getResourceAsStream("/limelight/" + sample)) {
+      json = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @Benchmark
+  public LimelightHelpers.LimelightResults objectMapper() {
+    return LimelightHelpers.parseLatestResults(json);
+  }
+
+  @Benchmark
+  public LimelightResultsParser.Results streaming() {
+    LimelightResultsParser.parse(json, results);
+    return results;
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * LoggedTunableNumberBenchmark.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link LoggedTunableNumber#hasChanged(int)} for a typical gain set polled every loop, outside
+ * tuning mode so no NetworkTables entry is created.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggedTunableNumberBenchmark {
+  private LoggedTunableNumber[] gains;
+
+  @Setup
+  public void setup() {
+    gains =
+        new LoggedTunableNumber[] {
+          new LoggedTunableNumber("Benchmark/kP", 1.0),
+          new LoggedTunableNumber("Benchmark/kI", 0.0),
+          new LoggedTunableNumber("Benchmark/kD", 0.1),
+          new LoggedTunableNumber("Benchmark/kS", 0.2),
+          new LoggedTunableNumber("Benchmark/kV", 0.4),
+          new LoggedTunableNumber("Benchmark/kA", 0.0)
+        };
+  }
+
+  @Benchmark
+  public void hasChanged(Blackhole blackhole) {
+    int id = hashCode();
+    for (LoggedTunableNumber gain : gains) {
+      blackhole.consume(gain.hasChanged(id));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * PathingBenchmark.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link Pathing#getClosestPose} from robot poses spread around the reef. Loads {@code Constants},
+ * so it needs the WPILib desktop natives that the jmh task puts on the library path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathingBenchmark {
+  private static final int POSE_COUNT = 32;
+
+  @Param({"true", "false"})
+  public boolean isLeftTarget;
+
+  private Pose2d[] poses;
+  private int index = 0;
+
+  @Setup
+  public void setup() {
+    poses = new Pose2d[POSE_COUNT];
+    for (int i = 0; i < POSE_COUNT; i++) {
+      double angle = 2.0 * Math.PI * i / POSE_COUNT;
+      poses[i] =
+          new Pose2d(
+              4.49 + 2.0 * Math.cos(angle),
+              4.03 + 2.0 * Math.sin(angle),
+              Rotation2d.fromRadians(angle + Math.PI));
+    }
+  }
+
+  @Benchmark
+  public List<Pose2d> getClosestPose() {
+    List<Pose2d> result = Pathing.getClosestPose(poses[index], isLeftTarget);
+    index = (index + 1) % POSE_COUNT;
+    return result;
+  }
+}
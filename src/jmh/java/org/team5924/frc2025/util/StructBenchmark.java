@@ -0,0 +1,102 @@
+/*
+ * StructBenchmark.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Struct pack and unpack for the vision types logged every loop, as AdvantageKit does. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StructBenchmark {
+  private static final int FIDUCIAL_COUNT = 4;
+
+  private final MegatagPoseEstimate estimate = new MegatagPoseEstimate();
+  private final FiducialObservation[] fiducials = new FiducialObservation[FIDUCIAL_COUNT];
+  private ByteBuffer estimateBuffer;
+  private ByteBuffer fiducialBuffer;
+
+  @Setup
+  public void setup() {
+    estimate.pose = new Pose2d(4.2, 3.1, Rotation2d.fromDegrees(37));
+    estimate.timestampSeconds = 12.3;
+    estimate.latency = 24.0;
+    estimate.tagCount = FIDUCIAL_COUNT;
+    estimate.tagSpan = 0.8;
+    estimate.avgTagDist = 2.1;
+    estimate.avgTagArea = 0.4;
+    for (int i = 0; i < FIDUCIAL_COUNT; i++) {
+      fiducials[i] = new FiducialObservation();
+      fiducials[i].id = 17 + i;
+      fiducials[i].ambiguity = 0.05;
+      fiducials[i].distance = 2.0;
+    }
+    estimateBuffer =
+        ByteBuffer.allocate(MegatagPoseEstimate.struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+    fiducialBuffer =
+        ByteBuffer.allocate(FiducialObservation.struct.getSize() * FIDUCIAL_COUNT)
+            .order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  @Benchmark
+  public ByteBuffer packMegatagPoseEstimate() {
+    estimateBuffer.clear();
+    MegatagPoseEstimate.struct.pack(estimateBuffer, estimate);
+    return estimateBuffer;
+  }
+
+  @Benchmark
+  public MegatagPoseEstimate unpackMegatagPoseEstimate() {
+    estimateBuffer.clear();
+    MegatagPoseEstimate.struct.pack(estimateBuffer, estimate);
+    estimateBuffer.flip();
+    return MegatagPoseEstimate.struct.unpack(estimateBuffer);
+  }
+
+  @Benchmark
+  public ByteBuffer packFiducialObservations() {
+    fiducialBuffer.clear();
+    for (FiducialObservation fiducial : fiducials) {
+      FiducialObservation.struct.pack(fiducialBuffer, fiducial);
+    }
+    return fiducialBuffer;
+  }
+
+  @Benchmark
+  public void unpackFiducialObservations(Blackhole blackhole) {
+    fiducialBuffer.clear();
+    for (FiducialObservation fiducial : fiducials) {
+      FiducialObservation.struct.pack(fiducialBuffer, fiducial);
+    }
+    fiducialBuffer.flip();
+    for (int i = 0; i < FIDUCIAL_COUNT; i++) {
+      blackhole.consume(FiducialObservation.struct.unpack(fiducialBuffer));
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * SetpointSolverComparison.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util.swerve;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.util.Units;
+import java.util.Arrays;
+import java.util.Random;
+import org.team5924.frc2025.util.swerve.SwerveSetpointGenerator.LimitSolver;
+
+/**
+ * Compares the iterative and closed form limit solvers of {@link SwerveSetpointGenerator} on the
+ * same random command sequence. Run with ./gradlew compareSetpointSolvers.
+ *
+ * <p>Accuracy is reported both as the difference between the two setpoints and as how far each
+ * solver overshoots the drive acceleration and steering velocity limits, which is the error that
+ * matters on the robot. Latency is reported as a distribution of single calls, since the worst case
+ * is what eats into the loop budget.
+ */
+public class SetpointSolverComparison {
+  private static final double LOOP_PERIOD = 0.02;
+  private static final double HALF_TRACK = 0.29;
+  private static final ModuleLimits LIMITS =
+      new ModuleLimits(3.83, Units.feetToMeters(75.0), Units.degreesToRadians(1080.0));
+  private static final Translation2d[] MODULE_TRANSLATIONS = {
+    new Translation2d(HALF_TRACK, HALF_TRACK),
+    new Translation2d(HALF_TRACK, -HALF_TRACK),
+    new Translation2d(-HALF_TRACK, HALF_TRACK),
+    new Translation2d(-HALF_TRACK, -HALF_TRACK)
+  };
+  // Module speeds below this are too small to have a meaningful steering angle
+  private static final double MIN_STEERING_SPEED = 1e-3;
+
+  private static final int WARMUP_STEPS = 200_000;
+  private static final int STEPS = 200_000;
+
+  public static void main(String[] args) {
+    ChassisSpeeds[] commands = randomCommands(new Random(5924), STEPS);
+
+    // Warm both solvers up so the JIT has compiled them before anything is timed
+    ChassisSpeeds[] warmupCommands = randomCommands(new Random(1), WARMUP_STEPS);
+    for (LimitSolver solver : LimitSolver.values()) {
+      run(new SwerveSetpointGenerator(MODULE_TRANSLATIONS, solver), warmupCommands, null);
+    }
+
+    long[][] latencies = new long[LimitSolver.values().length][];
+    for (LimitSolver solver : LimitSolver.values()) {
+      latencies[solver.ordinal()] = new long[STEPS];
+      SwerveSetpointGenerator generator = new SwerveSetpointGenerator(MODULE_TRANSLATIONS, solver);
+      run(generator, commands, latencies[solver.ordinal()]);
+      System.out.printf(
+          "%-12s closed form fallbacks: %d%n", solver, generator.getClosedFormFallbackCount());
+    }
+
+    compareAccuracy(commands);
+
+    System.out.printf(
+        "%n%-12s %10s %10s %10s %10s %10s%n", "Latency", "mean", "p50", "p99", "p99.9", "max");
+    for (LimitSolver solver : LimitSolver.values()) {
+      long[] sorted = latencies[solver.ordinal()].clone();
+      Arrays.sort(sorted);
+      System.out.printf(
+          "%-12s %8.2fus %8.2fus %8.2fus %8.2fus %8.2fus%n",
+          solver,
+          Arrays.stream(sorted).average().orElse(0.0) / 1e3,
+          sorted[sorted.length / 2] / 1e3,
+          sorted[(int) (sorted.length * 0.99)] / 1e3,
+          sorted[(int) (sorted.length * 0.999)] / 1e3,
+          sorted[sorted.length - 1] / 1e3);
+    }
+  }
+
+  /** Runs a generator through the commands, recording each call's latency if given an array. */
+  private static void run(
+      SwerveSetpointGenerator generator, ChassisSpeeds[] commands, long[] latencies) {
+    SwerveSetpoint setpoint = stoppedSetpoint();
+    for (int step = 0; step < commands.length; step++) {
+      long start = System.nanoTime();
+      generator.generateSetpoint(LIMITS, setpoint, commands[step], LOOP_PERIOD, setpoint);
+      if (latencies != null) {
+        latencies[step] = System.nanoTime() - start;
+      }
+    }
+  }
+
+  /**
+   * Steps both solvers from the iterative solver's previous setpoint, so each step compares the
+   * solvers on identical inputs rather than on diverged trajectories.
+   */
+  private static void compareAccuracy(ChassisSpeeds[] commands) {
+    SwerveSetpointGenerator iterative =
+        new SwerveSetpointGenerator(MODULE_TRANSLATIONS, LimitSolver.ITERATIVE);
+    SwerveSetpointGenerator closedForm =
+        new SwerveSetpointGenerator(MODULE_TRANSLATIONS, LimitSolver.CLOSED_FORM);
+    SwerveSetpoint previous = stoppedSetpoint();
+    SwerveSetpoint iterativeSetpoint = stoppedSetpoint();
+    SwerveSetpoint closedFormSetpoint = stoppedSetpoint();
+    double maxDifference = 0.0;
+    double sumDifference = 0.0;
+    int differentCount = 0;
+    double[] iterativeOvershoot = new double[2];
+    double[] closedFormOvershoot = new double[2];
+
+    for (ChassisSpeeds command : commands) {
+      iterative.generateSetpoint(LIMITS, previous, command, LOOP_PERIOD, iterativeSetpoint);
+      closedForm.generateSetpoint(LIMITS, previous, command, LOOP_PERIOD, closedFormSetpoint);
+
+      double difference =
+          Math.max(
+              Math.abs(
+                  iterativeSetpoint.chassisSpeeds().vxMetersPerSecond
+                      - closedFormSetpoint.chassisSpeeds().vxMetersPerSecond),
+              Math.max(
+                  Math.abs(
+                      iterativeSetpoint.chassisSpeeds().vyMetersPerSecond
+                          - closedFormSetpoint.chassisSpeeds().vyMetersPerSecond),
+                  Math.abs(
+                      iterativeSetpoint.chassisSpeeds().omegaRadiansPerSecond
+                          - closedFormSetpoint.chassisSpeeds().omegaRadiansPerSecond)));
+      maxDifference = Math.max(maxDifference, difference);
+      sumDifference += difference;
+      if (difference > 1e-6) {
+        differentCount++;
+      }
+      accumulateOvershoot(previous, iterativeSetpoint, iterativeOvershoot);
+      accumulateOvershoot(previous, closedFormSetpoint, closedFormOvershoot);
+
+      copy(iterativeSetpoint, previous);
+    }
+
+    System.out.printf(
+        "%nChassis speed difference: max %.3g, mean %.3g, %d of %d steps differ by over 1e-6%n",
+        maxDifference, sumDifference / commands.length, differentCount, commands.length);
+    System.out.printf(
+        "%-12s %24s %24s%n", "Overshoot", "drive (m/s per loop)", "steering (rad per loop)");
+    System.out.printf(
+        "%-12s %24.3g %24.3g%n",
+        LimitSolver.ITERATIVE,
+        iterativeOvershoot[0],
+        iterativeOvershoot[1]);
+    System.out.printf(
+        "%-12s %24.3g %24.3g%n",
+        LimitSolver.CLOSED_FORM,
+        closedFormOvershoot[0],
+        closedFormOvershoot[1]);
+  }
+
+  /**
+   * Records the largest amount by which any module's speed or velocity direction changed more than
+   * the limits allow in one loop. Module states are compared as velocity vectors, so a module that
+   * flipped its angle and reversed its wheel is not counted as having steered half a turn.
+   */
+  private static void accumulateOvershoot(
+      SwerveSetpoint previous, SwerveSetpoint next, double[] overshoot) {
+    double maxSpeedStep = LIMITS.maxDriveAcceleration() * LOOP_PERIOD;
+    double maxThetaStep = LIMITS.maxSteeringVelocity() * LOOP_PERIOD;
+    for (int i = 0; i < previous.moduleStates().length; i++) {
+      SwerveModuleState before = previous.moduleStates()[i];
+      SwerveModuleState after = next.moduleStates()[i];
+      double speedBefore = Math.abs(before.speedMetersPerSecond);
+      double speedAfter = Math.abs(after.speedMetersPerSecond);
+      overshoot[0] = Math.max(overshoot[0], Math.abs(speedAfter - speedBefore) - maxSpeedStep);
+
+      if (speedBefore > MIN_STEERING_SPEED && speedAfter > MIN_STEERING_SPEED) {
+        double headingBefore =
+            before.angle.getRadians() + (before.speedMetersPerSecond < 0.0 ? Math.PI : 0.0);
+        double headingAfter =
+            after.angle.getRadians() + (after.speedMetersPerSecond < 0.0 ? Math.PI : 0.0);
+        double headingChange =
+            Math.abs(Math.IEEEremainder(headingAfter - headingBefore, 2.0 * Math.PI));
+        overshoot[1] = Math.max(overshoot[1], headingChange - maxThetaStep);
+      }
+    }
+  }
+
+  private static ChassisSpeeds[] randomCommands(Random random, int count) {
+    ChassisSpeeds[] commands = new ChassisSpeeds[count];
+    ChassisSpeeds command = new ChassisSpeeds();
+    for (int i = 0; i < count; i++) {
+      // Hold each command for a few loops so the setpoint has time to converge
+      if (random.nextInt(4) == 0) {
+        command =
+            random.nextInt(8) == 0
+                ? new ChassisSpeeds()
+                : new ChassisSpeeds(
+                    random.nextGaussian() * 3.0,
+                    random.nextGaussian() * 3.0,
+                    random.nextGaussian() * 4.0);
+      }
+      commands[i] = command;
+    }
+    return commands;
+  }
+
+  private static void copy(SwerveSetpoint from, SwerveSetpoint to) {
+    to.chassisSpeeds().vxMetersPerSecond = from.chassisSpeeds().vxMetersPerSecond;
+    to.chassisSpeeds().vyMetersPerSecond = from.chassisSpeeds().vyMetersPerSecond;
+    to.chassisSpeeds().omegaRadiansPerSecond = from.chassisSpeeds().omegaRadiansPerSecond;
+    for (int i = 0; i < from.moduleStates().length; i++) {
+      to.moduleStates()[i].speedMetersPerSecond = from.moduleStates()[i].speedMetersPerSecond;
+      to.moduleStates()[i].angle = from.moduleStates()[i].angle;
+    }
+  }
+
+  private static SwerveSetpoint stoppedSetpoint() {
+    SwerveModuleState[] states = new SwerveModuleState[MODULE_TRANSLATIONS.length];
+    for (int i = 0; i < states.length; i++) {
+      states[i] = new SwerveModuleState(0.0, new Rotation2d());
+    }
+    return new SwerveSetpoint(new ChassisSpeeds(), states);
+  }
+}
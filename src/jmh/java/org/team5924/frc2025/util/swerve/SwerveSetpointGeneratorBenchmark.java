@@ -0,0 +1,110 @@
+/*
+ * SwerveSetpointGeneratorBenchmark.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util.swerve;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.util.Units;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team5924.frc2025.util.swerve.SwerveSetpointGenerator.LimitSolver;
+
+/**
+ * One setpoint generation per loop with the primitive {@link SwerveSetpointGenerator} and the
+ * original {@link ReferenceSwerveSetpointGenerator}, with the desired speeds sweeping through a
+ * full turn so every call has to limit acceleration and steering.
+ *
+ * <p>The reference lives with the unit tests, where SwerveSetpointGeneratorTest checks the solvers
+ * against it, so a speedup is never reported for a generator that is wrong.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SwerveSetpointGeneratorBenchmark {
+  private static final double LOOP_PERIOD = 0.02;
+  private static final double HALF_TRACK = 0.29;
+  // Same as TunerConstantsGamma.moduleLimitsFree, which cannot load without the Phoenix natives
+  private static final ModuleLimits LIMITS =
+      new ModuleLimits(3.83, Units.feetToMeters(75.0), Units.degreesToRadians(1080.0));
+  private static final int DESIRED_COUNT = 64;
+
+  private static final Translation2d[] MODULE_TRANSLATIONS = {
+    new Translation2d(HALF_TRACK, HALF_TRACK),
+    new Translation2d(HALF_TRACK, -HALF_TRACK),
+    new Translation2d(-HALF_TRACK, HALF_TRACK),
+    new Translation2d(-HALF_TRACK, -HALF_TRACK)
+  };
+
+  @Param({"ITERATIVE", "CLOSED_FORM"})
+  public LimitSolver solver;
+
+  private SwerveSetpointGenerator generator;
+  private ReferenceSwerveSetpointGenerator referenceGenerator;
+  private ChassisSpeeds[] desiredSpeeds;
+  private SwerveSetpoint setpoint;
+  private SwerveSetpoint referenceSetpoint;
+  private int index = 0;
+
+  @Setup
+  public void setup() {
+    generator = new SwerveSetpointGenerator(MODULE_TRANSLATIONS, solver);
+    referenceGenerator =
+        new ReferenceSwerveSetpointGenerator(
+            new SwerveDriveKinematics(MODULE_TRANSLATIONS), MODULE_TRANSLATIONS);
+    desiredSpeeds = new ChassisSpeeds[DESIRED_COUNT];
+    for (int i = 0; i < DESIRED_COUNT; i++) {
+      double angle = 2.0 * Math.PI * i / DESIRED_COUNT;
+      desiredSpeeds[i] = new ChassisSpeeds(3.0 * Math.cos(angle), 3.0 * Math.sin(angle), 2.0);
+    }
+    setpoint = stoppedSetpoint();
+    referenceSetpoint = stoppedSetpoint();
+  }
+
+  @Benchmark
+  public SwerveSetpoint primitive() {
+    generator.generateSetpoint(LIMITS, setpoint, desiredSpeeds[index], LOOP_PERIOD, setpoint);
+    index = (index + 1) % DESIRED_COUNT;
+    return setpoint;
+  }
+
+  @Benchmark
+  public SwerveSetpoint reference() {
+    referenceSetpoint =
+        referenceGenerator.generateSetpoint(
+            LIMITS, referenceSetpoint, desiredSpeeds[index], LOOP_PERIOD);
+    index = (index + 1) % DESIRED_COUNT;
+    return referenceSetpoint;
+  }
+
+  private static SwerveSetpoint stoppedSetpoint() {
+    SwerveModuleState[] states = new SwerveModuleState[MODULE_TRANSLATIONS.length];
+    for (int i = 0; i < states.length; i++) {
+      states[i] = new SwerveModuleState(0.0, new Rotation2d());
+    }
+    return new SwerveSetpoint(new ChassisSpeeds(), states);
+  }
+}
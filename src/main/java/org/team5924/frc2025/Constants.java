@@ -131,6 +131,11 @@ public final class Constants {
   public static String APRIL_TAG_LIMELIGHT_NAME_FRONTR = "limelight-frontr";
   public static String APRIL_TAG_LIMELIGHT_NAME_BACK = "limelight-back";
 
+  // Limelight 3G/4 field of view, used to predict which tags are in frame
+  public static final double LIMELIGHT_HORIZONTAL_FOV_DEGREES = 82.0;
+  public static final double LIMELIGHT_VERTICAL_FOV_DEGREES = 56.2;
+  public static final double APRIL_TAG_SIZE_METERS = Meters.convertFrom(6.5, Inches);
+
   public static final double FRONT_LEFT_LIMELIGHT_OFF_FORWARD =
       Meters.convertFrom(7.829572, Inches);
   public static final double FRONT_LEFT_LIMELIGHT_OFF_SIDE =
@@ -155,6 +160,53 @@ public final class Constants {
   public static final double FRONT_RIGHT_LIMELIGHT_OFF_PITCH = 20.0;
   public static final double FRONT_RIGHT_LIMELIGHT_OFF_YAW = 0.0;
 
+  /** Name and robot-space mounting of one vision camera, offsets in meters and degrees. */
+  public record VisionCameraConfig(
+      String name,
+      String limelightName,
+      boolean isFront,
+      double offForward,
+      double offSide,
+      double offUp,
+      double offRoll,
+      double offPitch,
+      double offYaw) {}
+
+  /** Every vision camera on the robot, adding a camera only requires a new entry here. */
+  public static final VisionCameraConfig[] VISION_CAMERAS =
+      new VisionCameraConfig[] {
+        new VisionCameraConfig(
+            "FrontLeft",
+            APRIL_TAG_LIMELIGHT_NAME_FRONTL,
+            true,
+            FRONT_LEFT_LIMELIGHT_OFF_FORWARD,
+            FRONT_LEFT_LIMELIGHT_OFF_SIDE,
+            FRONT_LEFT_LIMELIGHT_OFF_UP,
+            FRONT_LEFT_LIMELIGHT_OFF_ROLL,
+            FRONT_LEFT_LIMELIGHT_OFF_PITCH,
+            FRONT_LEFT_LIMELIGHT_OFF_YAW),
+        new VisionCameraConfig(
+            "FrontRight",
+            APRIL_TAG_LIMELIGHT_NAME_FRONTR,
+            true,
+            FRONT_RIGHT_LIMELIGHT_OFF_FORWARD,
+            FRONT_RIGHT_LIMELIGHT_OFF_SIDE,
+            FRONT_RIGHT_LIMELIGHT_OFF_UP,
+            FRONT_RIGHT_LIMELIGHT_OFF_ROLL,
+            FRONT_RIGHT_LIMELIGHT_OFF_PITCH,
+            FRONT_RIGHT_LIMELIGHT_OFF_YAW),
+        new VisionCameraConfig(
+            "Back",
+            APRIL_TAG_LIMELIGHT_NAME_BACK,
+            false,
+            BACK_LIMELIGHT_OFF_FORWARD,
+            BACK_LIMELIGHT_OFF_SIDE,
+            BACK_LIMELIGHT_OFF_UP,
+            BACK_LIMELIGHT_OFF_ROLL,
+            BACK_LIMELIGHT_OFF_PITCH,
+            BACK_LIMELIGHT_OFF_YAW)
+      };
+
   public static final int LIMELIGHT_RED_ALLIANCE_PIPELINE = 0;
   public static final int LIMELIGHT_BLUE_ALLIANCE_PIPELINE = 0;
 
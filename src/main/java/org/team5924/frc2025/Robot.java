@@ -33,6 +33,7 @@ import org.littletonrobotics.junction.networktables.NT4Publisher;
 import org.littletonrobotics.junction.wpilog.WPILOGReader;
 import org.littletonrobotics.junction.wpilog.WPILOGWriter;
 import org.team5924.frc2025.generated.TunerConstantsGamma;
+import org.team5924.frc2025.subsystems.drive.PhoenixOdometryThread;
 import org.team5924.frc2025.util.Elastic;
 
 /**
@@ -117,6 +118,9 @@ public class Robot extends LoggedRobot {
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our autonomous chooser on the dashboard.
     robotContainer = new RobotContainer();
+
+    // Start high-rate sampling on every CAN bus with registered signals
+    PhoenixOdometryThread.startAll();
   }
 
   /** This function is called periodically during all modes. */
@@ -132,6 +136,9 @@ public class Robot extends LoggedRobot {
     // the Command-based framework to work.
     CommandScheduler.getInstance().run();
 
+    // Log high-rate sampler timing
+    PhoenixOdometryThread.logAllTiming();
+
     // Return to normal thread priority
     Threads.setCurrentThreadPriority(false, 10);
   }
@@ -55,6 +55,7 @@ import org.team5924.frc2025.subsystems.rollers.CoralInAndOut.CoralInAndOut.Coral
 import org.team5924.frc2025.subsystems.rollers.CoralInAndOut.CoralInAndOutIO;
 import org.team5924.frc2025.subsystems.rollers.CoralInAndOut.CoralInAndOutIOKrakenFOC;
 import org.team5924.frc2025.subsystems.rollers.CoralInAndOut.CoralInAndOutIOSim;
+import org.team5924.frc2025.subsystems.vision.LimelightOrientationPublisher;
 import org.team5924.frc2025.subsystems.vision.Vision;
 import org.team5924.frc2025.subsystems.vision.VisionIO;
 import org.team5924.frc2025.subsystems.vision.VisionIOLimelight;
@@ -86,9 +87,10 @@ public class RobotContainer {
     switch (Constants.currentMode) {
       case REAL:
         // Real robot, instantiate hardware IO implementations
+        GyroIOPigeon2 gyroIO = new GyroIOPigeon2();
         drive =
             new Drive(
-                new GyroIOPigeon2(),
+                gyroIO,
                 new ModuleIOTalonFX(TunerConstantsGamma.FrontLeft),
                 new ModuleIOTalonFX(TunerConstantsGamma.FrontRight),
                 new ModuleIOTalonFX(TunerConstantsGamma.BackLeft),
@@ -96,7 +98,10 @@ public class RobotContainer {
         climber = new Climber(new ClimberIOTalonFX());
         coralInAndOut = new CoralInAndOut(new CoralInAndOutIOKrakenFOC());
         elevator = new Elevator(new ElevatorIOTalonFXGamma() {});
-        vision = new Vision(new VisionIOLimelight());
+        vision = new Vision(VisionIOLimelight::new);
+        gyroIO.addYawSampleListener(
+            new LimelightOrientationPublisher(
+                Constants.VISION_CAMERAS, LimelightOrientationPublisher.DEFAULT_RATE_HZ));
         break;
 
       case SIM:
@@ -111,7 +116,7 @@ public class RobotContainer {
         climber = new Climber(new ClimberIOSim());
         coralInAndOut = new CoralInAndOut(new CoralInAndOutIOSim());
         elevator = new Elevator(new ElevatorIO() {});
-        vision = new Vision(new VisionIO() {});
+        vision = new Vision(camera -> new VisionIO() {});
         break;
 
       default:
@@ -126,7 +131,7 @@ public class RobotContainer {
         climber = new Climber(new ClimberIO() {});
         coralInAndOut = new CoralInAndOut(new CoralInAndOutIO() {});
         elevator = new Elevator(new ElevatorIO() {});
-        vision = new Vision(new VisionIO() {});
+        vision = new Vision(camera -> new VisionIO() {});
         break;
     }
 
@@ -18,6 +18,7 @@ package org.team5924.frc2025;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import lombok.Getter;
 import lombok.Setter;
 import org.littletonrobotics.junction.AutoLogOutput;
@@ -26,11 +27,14 @@ import org.team5924.frc2025.subsystems.elevator.Elevator.ElevatorState;
 import org.team5924.frc2025.subsystems.pivot.AlgaePivot.AlgaePivotState;
 import org.team5924.frc2025.subsystems.rollers.CoralInAndOut.CoralInAndOut.CoralState;
 import org.team5924.frc2025.subsystems.rollers.algae.AlgaeRoller.AlgaeRollerState;
-import org.team5924.frc2025.util.VisionFieldPoseEstimate;
+import org.team5924.frc2025.util.PoseCovarianceTracker;
+import org.team5924.frc2025.util.PoseHistory;
+import org.team5924.frc2025.util.VisionMeasurementQueue;
 
 @Getter
 public class RobotState {
   private static RobotState instance;
+  private static final int VISION_QUEUE_CAPACITY = 16;
 
   public static RobotState getInstance() {
     if (instance == null) instance = new RobotState();
@@ -43,21 +47,50 @@ public class RobotState {
   @Setter
   private Pose2d odometryPose = new Pose2d();
 
-  /* Vision Pose */
-  @AutoLogOutput(key = "RobotState/EstimatedPoseLeft")
-  @Getter
-  @Setter
-  private VisionFieldPoseEstimate estimatedPoseFrontLeft = new VisionFieldPoseEstimate();
+  /** Odometry-rate pose history owned by the drive, null until the drive is constructed. */
+  @Setter private PoseHistory poseHistory = null;
 
-  @AutoLogOutput(key = "RobotState/EstimatedPoseBack")
-  @Getter
-  @Setter
-  private VisionFieldPoseEstimate estimatedPoseBack = new VisionFieldPoseEstimate();
+  /** Approximate covariance of the fused pose, null until the drive is constructed. */
+  @Setter private PoseCovarianceTracker poseCovariance = null;
 
-  @AutoLogOutput(key = "RobotState/EstimatedPoseRight")
+  /**
+   * Returns the estimated pose at the given FPGA timestamp, or the latest odometry pose if the
+   * timestamp is outside the pose history.
+   */
+  public Pose2d getPoseAt(double timestampSeconds) {
+    if (poseHistory == null) return odometryPose;
+    return poseHistory.getPoseAt(timestampSeconds).orElse(odometryPose);
+  }
+
+  /**
+   * Returns the field-relative velocity at the given FPGA timestamp, or zero if the timestamp is
+   * outside the pose history.
+   */
+  public ChassisSpeeds getVelocityAt(double timestampSeconds) {
+    if (poseHistory == null) return new ChassisSpeeds();
+    return poseHistory.getVelocityAt(timestampSeconds).orElseGet(ChassisSpeeds::new);
+  }
+
+  /* Vision Pose */
+  /** Estimates from every camera, drained and fused in capture-time order by the drive. */
+  @Getter
+  private final VisionMeasurementQueue visionMeasurementQueue =
+      new VisionMeasurementQueue(VISION_QUEUE_CAPACITY);
+
+  /**
+   * Fused heading minus raw gyro yaw in radians. Added to the yaw sent to the cameras so MegaTag2
+   * follows heading corrections from MegaTag1 instead of the drifting gyro.
+   */
+  @Getter @Setter private volatile double headingOffsetRad = 0.0;
+
+  /**
+   * Tags the current command cares about, such as the reef face being aligned to. Cameras only
+   * detect these tags while set; empty for no focus.
+   */
   @Getter
   @Setter
-  private VisionFieldPoseEstimate estimatedPoseFrontRight = new VisionFieldPoseEstimate();
+  @AutoLogOutput(key = "RobotState/VisionFocusTagIds")
+  private int[] visionFocusTagIds = new int[] {};
 
   /* ### Climber ### */
   @Setter
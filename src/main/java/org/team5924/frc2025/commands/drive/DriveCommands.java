@@ -41,6 +41,7 @@ import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 import org.littletonrobotics.junction.Logger;
 import org.team5924.frc2025.Constants;
+import org.team5924.frc2025.RobotState;
 import org.team5924.frc2025.subsystems.drive.Drive;
 import org.team5924.frc2025.util.Pathing;
 
@@ -169,7 +170,12 @@ public class DriveCommands {
     AutoBuilder.resetOdom(drive.getPose());
     List<Pose2d> destinationPoses = Pathing.getClosestPose(drive.getPose(), isTargetLeft);
     Logger.recordOutput("Destination Pose", destinationPoses.get(1));
-    return AutoBuilder.followPath(Pathing.createPath(drive.getPose(), destinationPoses));
+    // Only the target face's tag matters while lining up, focus the cameras on it
+    int reefTagId = Pathing.getReefTagId(destinationPoses.get(1));
+    int[] focusTagIds = reefTagId >= 0 ? new int[] {reefTagId} : new int[] {};
+    return AutoBuilder.followPath(Pathing.createPath(drive.getPose(), destinationPoses))
+        .beforeStarting(() -> RobotState.getInstance().setVisionFocusTagIds(focusTagIds))
+        .finallyDo(() -> RobotState.getInstance().setVisionFocusTagIds(new int[] {}));
   }
 
   /**
@@ -48,6 +48,7 @@ public class RunVisionPoseEstimation extends Command {
 
   @Override
   public void execute() {
+    int cameraIndex = vision.getBestCameraIndex();
     MegatagPoseEstimate estimatedPose = vision.getBotPose2dBlue();
     if (estimatedPose == null) {
       Logger.recordOutput("Vision Error", "Failed to get pose estimate");
@@ -55,7 +56,7 @@ public class RunVisionPoseEstimation extends Command {
     }
     Logger.recordOutput("Vision Pose", estimatedPose.pose);
     if (isPoseValid(estimatedPose)
-        && isVisionReliable(estimatedPose)
+        && isVisionReliable(cameraIndex)
         && estimatedPose.avgTagDist < 1) {
       if (DriverStation.isDisabled()) {
         drive.setPose(estimatedPose.pose);
@@ -63,10 +64,7 @@ public class RunVisionPoseEstimation extends Command {
         Matrix<N3, N1> visionMeasurement = new Matrix<>(Nat.N3(), Nat.N1());
         drive.addVisionMeasurement(
             estimatedPose.pose,
-            Timer.getFPGATimestamp()
-                - (estimatedPose.isFrontLimelight
-                    ? vision.getLatencySecondsFrontLeft()
-                    : vision.getLatencySecondsBack()),
+            Timer.getFPGATimestamp() - vision.getLatencySeconds(cameraIndex),
             visionMeasurement);
       }
     }
@@ -76,15 +74,9 @@ public class RunVisionPoseEstimation extends Command {
     return pose.pose.getX() != 0 && pose.pose.getY() != 0;
   }
 
-  private boolean isVisionReliable(MegatagPoseEstimate pose) {
-    int fiducialsSpotted =
-        pose.isFrontLimelight
-            ? vision.getNumberFiducialsSpottedFrontLeft()
-            : vision.getNumberFiducialsSpottedBack();
-    double lowestAmbiguity =
-        pose.isFrontLimelight
-            ? vision.getLowestTagAmbiguityFrontLeft()
-            : vision.getLowestTagAmbiguityBack();
+  private boolean isVisionReliable(int cameraIndex) {
+    int fiducialsSpotted = vision.getNumberFiducialsSpotted(cameraIndex);
+    double lowestAmbiguity = vision.getLowestTagAmbiguity(cameraIndex);
 
     return (fiducialsSpotted == 1 && lowestAmbiguity < 0.2)
         || (fiducialsSpotted >= 2 && lowestAmbiguity < 0.3);
@@ -29,6 +29,7 @@ import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.MountPoseConfigs;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.configs.Slot0Configs;
+import com.ctre.phoenix6.configs.Slot1Configs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.hardware.CANcoder;
 import com.ctre.phoenix6.hardware.TalonFX;
@@ -73,6 +74,11 @@ public class TunerConstantsGamma {
   // output type specified by SwerveModuleConstants.DriveMotorClosedLoopOutput
   private static final Slot0Configs driveGains =
       new Slot0Configs().withKP(2.75).withKI(0).withKD(0).withKS(0.19489).withKV(0.94343);
+  // Drive gains used when a module is switched to torque-current control at runtime, applied from
+  // slot 1. Units are amps per rotation/sec of error, and amps to overcome static friction.
+  // Placeholders until characterized, so the switch is only honored in tuning mode.
+  public static final Slot1Configs driveTorqueCurrentGains =
+      new Slot1Configs().withKP(5.0).withKI(0).withKD(0).withKS(2.5);
 
   // The closed-loop output type to use for the steer motors;
   // This affects the PID/FF gains for the steer motors
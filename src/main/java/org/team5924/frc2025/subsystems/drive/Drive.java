@@ -20,6 +20,7 @@ import static edu.wpi.first.units.Units.MetersPerSecond;
 import static edu.wpi.first.units.Units.Volts;
 
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants.ClosedLoopOutputType;
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.config.ModuleConfig;
 import com.pathplanner.lib.config.PIDConstants;
@@ -31,12 +32,11 @@ import com.pathplanner.lib.util.PathPlannerLogging;
 import edu.wpi.first.hal.FRCNetComm.tInstances;
 import edu.wpi.first.hal.FRCNetComm.tResourceType;
 import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.Matrix;
-import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
@@ -55,8 +55,8 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Optional;
+import java.util.function.Consumer;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 import org.team5924.frc2025.Constants;
@@ -67,14 +67,22 @@ import org.team5924.frc2025.util.Elastic;
 import org.team5924.frc2025.util.Elastic.Notification;
 import org.team5924.frc2025.util.Elastic.Notification.NotificationLevel;
 import org.team5924.frc2025.util.LocalADStarAK;
+import org.team5924.frc2025.util.PoseCovarianceTracker;
+import org.team5924.frc2025.util.PoseHistory;
 import org.team5924.frc2025.util.VisionFieldPoseEstimate;
+import org.team5924.frc2025.util.VisionMeasurementQueue;
 import org.team5924.frc2025.util.swerve.SwerveSetpoint;
 import org.team5924.frc2025.util.swerve.SwerveSetpointGenerator;
+import org.team5924.frc2025.util.swerve.SwerveSetpointGenerator.LimitSolver;
 
 public class Drive extends SubsystemBase {
   // TunerConstants doesn't include these constants, so they are declared locally
   static final double ODOMETRY_FREQUENCY =
       new CANBus(TunerConstantsGamma.DrivetrainConstants.CANBusName).isNetworkFD() ? 250.0 : 100.0;
+  static final double POSE_HISTORY_SECONDS = 1.5;
+  // Pose uncertainty after an explicit reset, such as the start of an auto
+  static final double POSE_RESET_XY_STD_DEV = 0.1;
+  static final double POSE_RESET_THETA_STD_DEV = 0.05;
   public static final double DRIVE_BASE_RADIUS =
       Math.max(
           Math.max(
@@ -107,8 +115,21 @@ public class Drive extends SubsystemBase {
               TunerConstantsGamma.FrontLeft.SlipCurrent,
               1),
           getModuleTranslations());
+  // Converts a wheel force into the drive motor torque-current that produces it
+  private static final double DRIVE_TORQUE_CURRENT_PER_NEWTON =
+      TunerConstantsGamma.FrontLeft.WheelRadius
+          / (TunerConstantsGamma.FrontLeft.DriveMotorGearRatio
+              * DCMotor.getKrakenX60Foc(1).KtNMPerAmp);
+  // Whether path following setpoints are limited by the setpoint generator. Keeps the modules
+  // within their acceleration and steering limits when a path asks for more than they can do.
+  private static final boolean LIMIT_PATH_SETPOINTS = true;
+  // Whether teleop feeds forward the acceleration allowed by the setpoint generator. Off until the
+  // drive acceleration gains are characterized, so the default velocity loop is unchanged.
+  private static final boolean TELEOP_ACCELERATION_FEEDFORWARD = false;
+  // Path accelerations in meters/sec^2 below which the force is fed forward unscaled, since the
+  // ratio to the applied acceleration is dominated by noise
+  private static final double MIN_SCALED_PATH_ACCELERATION = 0.05;
 
-  static final Lock odometryLock = new ReentrantLock();
   private final GyroIO gyroIO;
   private final GyroIOInputsAutoLogged gyroInputs = new GyroIOInputsAutoLogged();
   private final Module[] modules = new Module[4]; // FL, FR, BL, BR
@@ -126,19 +147,41 @@ public class Drive extends SubsystemBase {
       DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == Alliance.Red;
 
   private SwerveDriveKinematics kinematics = new SwerveDriveKinematics(getModuleTranslations());
-  private Rotation2d rawGyroRotation = new Rotation2d(isFlipped ? 0 : Math.PI);
-  private SwerveModulePosition[] lastModulePositions = // For delta tracking
-      new SwerveModulePosition[] {
-        new SwerveModulePosition(),
-        new SwerveModulePosition(),
-        new SwerveModulePosition(),
-        new SwerveModulePosition()
-      };
-  private SwerveDrivePoseEstimator poseEstimator =
-      new SwerveDrivePoseEstimator(kinematics, rawGyroRotation, lastModulePositions, new Pose2d());
+
+  // Estimated pose and velocity at each odometry sample, for latency compensation
+  private final PoseHistory poseHistory =
+      new PoseHistory((int) Math.ceil(ODOMETRY_FREQUENCY * POSE_HISTORY_SECONDS));
+  // Approximate estimator covariance, used to gate vision measurements. Starts loose so the first
+  // vision measurements are never rejected before the pose has been set.
+  private final PoseCovarianceTracker poseCovariance =
+      new PoseCovarianceTracker(0.05, 0.02, 0.005, 0.002, 0.02, 0.005, 10.0, Math.PI);
+  private final Consumer<VisionFieldPoseEstimate> visionMeasurementConsumer =
+      this::addVisionMeasurement;
+  private final DriveOdometry odometry =
+      new DriveOdometry(
+          kinematics, new Rotation2d(isFlipped ? 0 : Math.PI), poseHistory, poseCovariance);
 
   private final SwerveSetpointGenerator setpointGenerator;
-  private SwerveSetpoint previousSetpoint;
+  private final SwerveSetpoint previousSetpoint;
+  // Copies of the setpoint states handed to the modules, which optimize them in place
+  private final SwerveModuleState[] moduleCommandStates =
+      new SwerveModuleState[] {
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState()
+      };
+  private final double[] moduleFeedforwardAmps = new double[4];
+  private final double[] moduleFeedforwardScales = new double[4];
+  private final double[] lastModuleVelocityX = new double[4];
+  private final double[] lastModuleVelocityY = new double[4];
+
+  // Path tracking error, accumulated over the active path
+  private Pose2d pathTargetPose = null;
+  private int pathTrackingSampleCount = 0;
+  private double pathTranslationErrorSumSquares = 0.0;
+  private double pathMaxTranslationError = 0.0;
+  private double pathMaxRotationError = 0.0;
 
   private final Field2d field = new Field2d();
 
@@ -157,15 +200,12 @@ public class Drive extends SubsystemBase {
     // Usage reporting for swerve template
     HAL.report(tResourceType.kResourceType_RobotDrive, tInstances.kRobotDriveSwerve_AdvantageKit);
 
-    // Start odometry thread
-    PhoenixOdometryThread.getInstance().start();
-
     // Configure AutoBuilder for PathPlanner
     AutoBuilder.configure(
         this::getPose,
         this::setPose,
         this::getChassisSpeeds,
-        this::runVelocity,
+        this::runPathVelocity,
         new PPHolonomicDriveController(
             new PIDConstants(5.0, 0.0, 0.0), new PIDConstants(5, 0, 0.3)),
         PP_CONFIG,
@@ -176,10 +216,16 @@ public class Drive extends SubsystemBase {
         (activePath) -> {
           Logger.recordOutput(
               "Odometry/Trajectory", activePath.toArray(new Pose2d[activePath.size()]));
+          if (!activePath.isEmpty()) {
+            resetPathTracking();
+          } else {
+            pathTargetPose = null;
+          }
         });
     PathPlannerLogging.setLogTargetPoseCallback(
         (targetPose) -> {
           Logger.recordOutput("Odometry/TrajectorySetpoint", targetPose);
+          pathTargetPose = targetPose;
         });
 
     // Configure SysId
@@ -193,7 +239,14 @@ public class Drive extends SubsystemBase {
             new SysIdRoutine.Mechanism(
                 (voltage) -> runCharacterization(voltage.in(Volts)), null, this));
 
-    setpointGenerator = new SwerveSetpointGenerator(kinematics, getModuleTranslations());
+    // Closed form limits keep the setpoint generator's cost constant every loop
+    setpointGenerator =
+        new SwerveSetpointGenerator(getModuleTranslations(), LimitSolver.CLOSED_FORM);
+
+    // Share pose history for latency-compensated lookups
+    RobotState.getInstance().setPoseHistory(poseHistory);
+    RobotState.getInstance().setPoseCovariance(poseCovariance);
+
     previousSetpoint = new SwerveSetpoint(getChassisSpeeds(), getModuleStates());
 
     SmartDashboard.putData("Field", field);
@@ -232,13 +285,13 @@ public class Drive extends SubsystemBase {
 
   @Override
   public void periodic() {
-    odometryLock.lock(); // Prevents odometry updates while reading data
+    // Align all odometry buffers to the same frame without blocking the odometry thread
+    PhoenixOdometryThread.getInstance().latchDrainLimit();
     gyroIO.updateInputs(gyroInputs);
     Logger.processInputs("Drive/Gyro", gyroInputs);
     for (var module : modules) {
       module.periodic();
     }
-    odometryLock.unlock();
 
     // Stop moving when disabled
     if (DriverStation.isDisabled()) {
@@ -254,36 +307,8 @@ public class Drive extends SubsystemBase {
     }
 
     // Update odometry
-    double[] sampleTimestamps =
-        modules[0].getOdometryTimestamps(); // All signals are sampled together
-    int sampleCount = sampleTimestamps.length;
-    for (int i = 0; i < sampleCount; i++) {
-      // Read wheel positions and deltas from each module
-      SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
-      SwerveModulePosition[] moduleDeltas = new SwerveModulePosition[4];
-      for (int moduleIndex = 0; moduleIndex < 4; moduleIndex++) {
-        modulePositions[moduleIndex] = modules[moduleIndex].getOdometryPositions()[i];
-        moduleDeltas[moduleIndex] =
-            new SwerveModulePosition(
-                modulePositions[moduleIndex].distanceMeters
-                    - lastModulePositions[moduleIndex].distanceMeters,
-                modulePositions[moduleIndex].angle);
-        lastModulePositions[moduleIndex] = modulePositions[moduleIndex];
-      }
-
-      // Update gyro angle
-      if (gyroInputs.connected) {
-        // Use the real gyro angle
-        rawGyroRotation = gyroInputs.odometryYawPositions[i];
-      } else {
-        // Use the angle delta from the kinematics and module deltas
-        Twist2d twist = kinematics.toTwist2d(moduleDeltas);
-        rawGyroRotation = rawGyroRotation.plus(new Rotation2d(twist.dtheta));
-      }
-
-      // Apply update
-      poseEstimator.updateWithTime(sampleTimestamps[i], rawGyroRotation, modulePositions);
-    }
+    odometry.update(modules, gyroInputs);
+    Logger.recordOutput("Odometry/WheelOnly", odometry.getWheelOnlyPose());
 
     // Update gyro alert
     gyroDisconnectedAlert.set(!gyroInputs.connected && Constants.currentMode != Mode.SIM);
@@ -296,60 +321,17 @@ public class Drive extends SubsystemBase {
 
     field.setRobotPose(getPose());
 
-    VisionFieldPoseEstimate visionPoseFrontLeft =
-        RobotState.getInstance().getEstimatedPoseFrontLeft();
-    VisionFieldPoseEstimate visionPoseFrontRight =
-        RobotState.getInstance().getEstimatedPoseFrontRight();
-    VisionFieldPoseEstimate visionPoseBack = RobotState.getInstance().getEstimatedPoseBack();
-
-    if (visionPoseFrontLeft != null && visionPoseFrontRight == null && visionPoseBack == null) {
-      addVisionMeasurement(
-          visionPoseFrontLeft.getVisionRobotPoseMeters(),
-          visionPoseFrontLeft.getTimestampSeconds(),
-          visionPoseFrontLeft.getVisionMeasurementStdDevs());
-      RobotState.getInstance().setEstimatedPoseFrontLeft(null);
-    } else if (visionPoseFrontRight != null
-        && visionPoseFrontLeft == null
-        && visionPoseBack == null) {
-      addVisionMeasurement(
-          visionPoseFrontRight.getVisionRobotPoseMeters(),
-          visionPoseFrontRight.getTimestampSeconds(),
-          visionPoseFrontRight.getVisionMeasurementStdDevs());
-      RobotState.getInstance().setEstimatedPoseFrontRight(null);
-    } else if (visionPoseBack != null
-        && visionPoseFrontLeft == null
-        && visionPoseFrontRight == null) {
-      addVisionMeasurement(
-          visionPoseBack.getVisionRobotPoseMeters(),
-          visionPoseBack.getTimestampSeconds(),
-          visionPoseBack.getVisionMeasurementStdDevs());
-      RobotState.getInstance().setEstimatedPoseBack(null);
-    } else {
-      VisionFieldPoseEstimate latestPose = visionPoseFrontLeft;
-
-      if (visionPoseFrontRight != null
-          && (latestPose == null
-              || visionPoseFrontRight.getTimestampSeconds() > latestPose.getTimestampSeconds())) {
-        latestPose = visionPoseFrontRight;
-      }
-
-      if (visionPoseBack != null
-          && (latestPose == null
-              || visionPoseBack.getTimestampSeconds() > latestPose.getTimestampSeconds())) {
-        latestPose = visionPoseBack;
-      }
-
-      if (latestPose != null) {
-        addVisionMeasurement(
-            latestPose.getVisionRobotPoseMeters(),
-            latestPose.getTimestampSeconds(),
-            latestPose.getVisionMeasurementStdDevs());
-
-        RobotState.getInstance().setEstimatedPoseFrontLeft(null);
-        RobotState.getInstance().setEstimatedPoseFrontRight(null);
-        RobotState.getInstance().setEstimatedPoseBack(null);
-      }
-    }
+    // Fuse every queued vision estimate, oldest capture first
+    VisionMeasurementQueue visionQueue = RobotState.getInstance().getVisionMeasurementQueue();
+    int visionMeasurementCount = visionQueue.drain(visionMeasurementConsumer);
+    Logger.recordOutput("Drive/VisionMeasurementsApplied", visionMeasurementCount);
+    Logger.recordOutput("Drive/VisionMeasurementsOverwritten", visionQueue.getOverwriteCount());
+
+    // Keep the heading sent to the cameras consistent with vision-corrected heading
+    RobotState.getInstance()
+        .setHeadingOffsetRad(
+            MathUtil.angleModulus(
+                getRotation().getRadians() - odometry.getRawGyroRotation().getRadians()));
   }
 
   /**
@@ -360,46 +342,185 @@ public class Drive extends SubsystemBase {
   public void runVelocity(ChassisSpeeds speeds) {
     // Calculate module setpoints
     ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(speeds, 0.02);
-    previousSetpoint =
-        setpointGenerator.generateSetpoint(
-            TunerConstantsGamma.moduleLimitsFree,
-            previousSetpoint,
-            discreteSpeeds,
-            Constants.LOOP_PERIODIC_SECONDS);
+    recordLastModuleVelocities();
+    setpointGenerator.generateSetpoint(
+        TunerConstantsGamma.moduleLimitsFree,
+        previousSetpoint,
+        discreteSpeeds,
+        Constants.LOOP_PERIODIC_SECONDS,
+        previousSetpoint);
     SwerveModuleState[] setpointStates = previousSetpoint.moduleStates();
     // SwerveDriveKinematics.desaturateWheelSpeeds(setpointStates, TunerConstants.kSpeedAt12Volts);
 
+    // Feed forward the acceleration the setpoint generator allowed this loop, measured along each
+    // wheel's new direction and shared equally between the modules
+    for (int i = 0; i < 4; i++) {
+      moduleFeedforwardAmps[i] =
+          TELEOP_ACCELERATION_FEEDFORWARD
+              ? getSetpointAcceleration(i, setpointStates[i])
+                  * ROBOT_MASS_KG
+                  / 4.0
+                  * DRIVE_TORQUE_CURRENT_PER_NEWTON
+              : 0.0;
+    }
+
     // Log unoptimized setpoints and setpoint speeds
     Logger.recordOutput("SwerveStates/Setpoints", setpointStates);
+    Logger.recordOutput("SwerveStates/FeedforwardAmps", moduleFeedforwardAmps);
     Logger.recordOutput("SwerveChassisSpeeds/Setpoints", discreteSpeeds);
 
-    // Send setpoints to modules
-    for (int i = 0; i < 4; i++) {
-      modules[i].runSetpoint(setpointStates[i]);
-    }
-
-    // Log optimized setpoints (runSetpoint mutates each state)
-    Logger.recordOutput("SwerveStates/SetpointsOptimized", setpointStates);
+    runModuleSetpoints(setpointStates);
   }
 
+  /**
+   * Runs the drive at the velocity requested by a path, with PathPlanner's per-module force
+   * feedforwards applied through the drive motors' closed loop.
+   *
+   * @param speeds Robot-relative speeds in meters/sec
+   * @param ff Module force feedforwards from the path, in FL, FR, BL, BR order
+   */
   public void runPathVelocity(ChassisSpeeds speeds, DriveFeedforwards ff) {
     // Calculate module setpoints
     ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(speeds, 0.02);
-    SwerveModuleState[] setpointStates = kinematics.toSwerveModuleStates(discreteSpeeds);
-    SwerveDriveKinematics.desaturateWheelSpeeds(
-        setpointStates, TunerConstantsGamma.kSpeedAt12Volts);
+    SwerveModuleState[] setpointStates;
+    if (LIMIT_PATH_SETPOINTS) {
+      recordLastModuleVelocities();
+      setpointGenerator.generateSetpoint(
+          TunerConstantsGamma.moduleLimitsFree,
+          previousSetpoint,
+          discreteSpeeds,
+          Constants.LOOP_PERIODIC_SECONDS,
+          previousSetpoint);
+      setpointStates = previousSetpoint.moduleStates();
+    } else {
+      setpointStates = kinematics.toSwerveModuleStates(discreteSpeeds);
+      SwerveDriveKinematics.desaturateWheelSpeeds(
+          setpointStates, TunerConstantsGamma.kSpeedAt12Volts);
+    }
+
+    // Project each module's force onto its wheel direction. This also covers modules that the
+    // setpoint has reversed or that have not finished steering to the path's heading.
+    double[] forcesX = ff.robotRelativeForcesXNewtons();
+    double[] forcesY = ff.robotRelativeForcesYNewtons();
+    for (int i = 0; i < 4; i++) {
+      double wheelForce =
+          forcesX[i] * setpointStates[i].angle.getCos()
+              + forcesY[i] * setpointStates[i].angle.getSin();
+      // The path's force assumes its full acceleration. Scale it by the fraction of that
+      // acceleration the limited setpoint actually applies along this wheel, using the same
+      // equal-share mass model as runVelocity. This is not the fraction of the velocity gap the
+      // generator closed, which is unrelated to the path's acceleration when it is not limiting.
+      moduleFeedforwardScales[i] = 1.0;
+      double pathAcceleration = wheelForce / (ROBOT_MASS_KG / 4.0);
+      if (LIMIT_PATH_SETPOINTS && Math.abs(pathAcceleration) > MIN_SCALED_PATH_ACCELERATION) {
+        double appliedAcceleration = getSetpointAcceleration(i, setpointStates[i]);
+        moduleFeedforwardScales[i] =
+            MathUtil.clamp(appliedAcceleration / pathAcceleration, 0.0, 1.0);
+      }
+      moduleFeedforwardAmps[i] =
+          wheelForce * DRIVE_TORQUE_CURRENT_PER_NEWTON * moduleFeedforwardScales[i];
+    }
 
     // Log unoptimized setpoints and setpoint speeds
     Logger.recordOutput("SwerveStates/Setpoints", setpointStates);
     Logger.recordOutput("SwerveChassisSpeeds/Setpoints", discreteSpeeds);
+    Logger.recordOutput("PathTracking/FeedforwardAmps", moduleFeedforwardAmps);
+    Logger.recordOutput("PathTracking/FeedforwardScales", moduleFeedforwardScales);
 
-    // Send setpoints to modules
+    runModuleSetpoints(setpointStates);
+
+    logPathTracking(speeds);
+  }
+
+  /** Keeps each module's velocity vector, the new setpoint is written over the previous one. */
+  private void recordLastModuleVelocities() {
+    SwerveModuleState[] lastStates = previousSetpoint.moduleStates();
+    for (int i = 0; i < 4; i++) {
+      lastModuleVelocityX[i] = lastStates[i].speedMetersPerSecond * lastStates[i].angle.getCos();
+      lastModuleVelocityY[i] = lastStates[i].speedMetersPerSecond * lastStates[i].angle.getSin();
+    }
+  }
+
+  /**
+   * Returns the acceleration the setpoint applies to a module this loop, measured along its new
+   * wheel direction from the velocity saved by {@link #recordLastModuleVelocities()}.
+   */
+  private double getSetpointAcceleration(int moduleIndex, SwerveModuleState setpoint) {
+    double lastWheelVelocity =
+        lastModuleVelocityX[moduleIndex] * setpoint.angle.getCos()
+            + lastModuleVelocityY[moduleIndex] * setpoint.angle.getSin();
+    return (setpoint.speedMetersPerSecond - lastWheelVelocity) / Constants.LOOP_PERIODIC_SECONDS;
+  }
+
+  /**
+   * Sends setpoints and the current feedforwards to the modules. The modules receive copies, so
+   * the setpoint states, which the generator reads back as the previous setpoint, stay as
+   * generated.
+   */
+  private void runModuleSetpoints(SwerveModuleState[] setpointStates) {
     for (int i = 0; i < 4; i++) {
-      modules[i].runSetpoint(setpointStates[i]);
+      moduleCommandStates[i].speedMetersPerSecond = setpointStates[i].speedMetersPerSecond;
+      moduleCommandStates[i].angle = setpointStates[i].angle;
+      modules[i].runSetpoint(moduleCommandStates[i], moduleFeedforwardAmps[i]);
     }
 
     // Log optimized setpoints (runSetpoint mutates each state)
-    Logger.recordOutput("SwerveStates/SetpointsOptimized", setpointStates);
+    Logger.recordOutput("SwerveStates/SetpointsOptimized", moduleCommandStates);
+  }
+
+  /** Clears the path tracking error statistics, called when a new path starts. */
+  private void resetPathTracking() {
+    pathTrackingSampleCount = 0;
+    pathTranslationErrorSumSquares = 0.0;
+    pathMaxTranslationError = 0.0;
+    pathMaxRotationError = 0.0;
+  }
+
+  /**
+   * Logs how closely the robot is following the active path, both this loop and over the whole
+   * path so that path constraints can be compared between runs.
+   */
+  private void logPathTracking(ChassisSpeeds commandedSpeeds) {
+    ChassisSpeeds measuredSpeeds = getChassisSpeeds();
+    Logger.recordOutput(
+        "PathTracking/VelocityErrorMetersPerSec",
+        Math.hypot(
+            commandedSpeeds.vxMetersPerSecond - measuredSpeeds.vxMetersPerSecond,
+            commandedSpeeds.vyMetersPerSecond - measuredSpeeds.vyMetersPerSecond));
+    Logger.recordOutput(
+        "PathTracking/OmegaErrorRadPerSec",
+        commandedSpeeds.omegaRadiansPerSecond - measuredSpeeds.omegaRadiansPerSecond);
+
+    if (pathTargetPose == null) {
+      return;
+    }
+    Pose2d pose = getPose();
+    double translationError = pose.getTranslation().getDistance(pathTargetPose.getTranslation());
+    double rotationError =
+        MathUtil.angleModulus(
+            pose.getRotation().getRadians() - pathTargetPose.getRotation().getRadians());
+    pathTrackingSampleCount++;
+    pathTranslationErrorSumSquares += translationError * translationError;
+    pathMaxTranslationError = Math.max(pathMaxTranslationError, translationError);
+    pathMaxRotationError = Math.max(pathMaxRotationError, Math.abs(rotationError));
+
+    Logger.recordOutput("PathTracking/TranslationErrorMeters", translationError);
+    Logger.recordOutput("PathTracking/RotationErrorRad", rotationError);
+    Logger.recordOutput(
+        "PathTracking/RmsTranslationErrorMeters",
+        Math.sqrt(pathTranslationErrorSumSquares / pathTrackingSampleCount));
+    Logger.recordOutput("PathTracking/MaxTranslationErrorMeters", pathMaxTranslationError);
+    Logger.recordOutput("PathTracking/MaxRotationErrorRad", pathMaxRotationError);
+  }
+
+  /**
+   * Selects whether every module's drive velocity loop outputs voltage or torque-current. Only
+   * takes effect in tuning mode.
+   */
+  public void setDriveClosedLoopOutput(ClosedLoopOutputType outputType) {
+    for (var module : modules) {
+      module.setDriveClosedLoopOutput(outputType);
+    }
   }
 
   /** Runs the drive in a straight line with the specified drive output. */
@@ -485,7 +606,7 @@ public class Drive extends SubsystemBase {
   /** Returns the current odometry pose. */
   @AutoLogOutput(key = "Odometry/Robot")
   public Pose2d getPose() {
-    return poseEstimator.getEstimatedPosition();
+    return odometry.getEstimatedPose();
   }
 
   /** Returns the current odometry rotation. */
@@ -495,7 +616,33 @@ public class Drive extends SubsystemBase {
 
   /** Resets the current odometry pose. */
   public void setPose(Pose2d pose) {
-    poseEstimator.resetPosition(rawGyroRotation, getModulePositions(), pose);
+    odometry.resetPose(getModulePositions(), pose);
+    poseHistory.clear();
+    poseCovariance.reset(POSE_RESET_XY_STD_DEV, POSE_RESET_THETA_STD_DEV);
+  }
+
+  /**
+   * Returns the estimated pose at the given FPGA timestamp, interpolated from the odometry-rate
+   * history. Empty if the timestamp is older than the history.
+   */
+  public Optional<Pose2d> getPoseAt(double timestampSeconds) {
+    return poseHistory.getPoseAt(timestampSeconds);
+  }
+
+  /**
+   * Returns the field-relative velocity at the given FPGA timestamp, interpolated from the
+   * odometry-rate history. Empty if the timestamp is older than the history.
+   */
+  public Optional<ChassisSpeeds> getVelocityAt(double timestampSeconds) {
+    return poseHistory.getVelocityAt(timestampSeconds);
+  }
+
+  /** Adds a queued vision estimate. */
+  private void addVisionMeasurement(VisionFieldPoseEstimate estimate) {
+    addVisionMeasurement(
+        estimate.getVisionRobotPoseMeters(),
+        estimate.getTimestampSeconds(),
+        estimate.getVisionMeasurementStdDevs());
   }
 
   /** Adds a new timestamped vision measurement. */
@@ -503,8 +650,9 @@ public class Drive extends SubsystemBase {
       Pose2d visionRobotPoseMeters,
       double timestampSeconds,
       Matrix<N3, N1> visionMeasurementStdDevs) {
-    poseEstimator.addVisionMeasurement(
+    odometry.addVisionMeasurement(
         visionRobotPoseMeters, timestampSeconds, visionMeasurementStdDevs);
+    poseCovariance.correct(visionMeasurementStdDevs);
   }
 
   /** Returns the maximum linear speed in meters per sec. */
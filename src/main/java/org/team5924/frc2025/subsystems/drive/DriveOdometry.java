@@ -0,0 +1,210 @@
+/*
+ * DriveOdometry.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import org.team5924.frc2025.subsystems.drive.GyroIO.GyroIOInputs;
+import org.team5924.frc2025.util.PoseCovarianceTracker;
+import org.team5924.frc2025.util.PoseHistory;
+
+/**
+ * Feeds every odometry frame received in a cycle into the pose estimator, one frame at a time, and
+ * keeps the wheel-only odometry, the pose history and the covariance estimate in step with it.
+ *
+ * <p>Module positions, the raw heading and the history are all updated in place, so the only
+ * per-frame allocations left are the ones inside WPILib's estimator and odometry.
+ */
+class DriveOdometry {
+  private final OdometryHeading rawGyroHeading;
+  private final SwerveModulePosition[] lastModulePositions = // For delta tracking
+      new SwerveModulePosition[] {
+        new SwerveModulePosition(),
+        new SwerveModulePosition(),
+        new SwerveModulePosition(),
+        new SwerveModulePosition()
+      };
+  // Reused for every odometry sample, the estimator copies positions it keeps
+  private final SwerveModulePosition[] odometryModulePositions = new SwerveModulePosition[4];
+  // Heading change per meter of each module's x and y travel, the dtheta row of the kinematics
+  private final double[] headingPerModuleX = new double[4];
+  private final double[] headingPerModuleY = new double[4];
+
+  private final SwerveDrivePoseEstimator poseEstimator;
+  // Wheel and gyro odometry that vision never corrects, logged as an unbiased reference for
+  // fitting the vision noise model
+  private final SwerveDriveOdometry wheelOdometry;
+
+  private final PoseHistory poseHistory;
+  private final PoseCovarianceTracker poseCovariance;
+  private boolean hasLastOdometryTimestamp = false;
+  private double lastOdometryTimestamp = 0.0;
+
+  /**
+   * @param kinematics Drive kinematics, modules in FL, FR, BL, BR order
+   * @param initialHeading Raw heading before the first gyro sample
+   * @param poseHistory Receives the estimated pose and velocity at each frame
+   * @param poseCovariance Predicted forward at each frame
+   */
+  DriveOdometry(
+      SwerveDriveKinematics kinematics,
+      Rotation2d initialHeading,
+      PoseHistory poseHistory,
+      PoseCovarianceTracker poseCovariance) {
+    this.poseHistory = poseHistory;
+    this.poseCovariance = poseCovariance;
+    rawGyroHeading = new OdometryHeading(initialHeading);
+    poseEstimator =
+        new SwerveDrivePoseEstimator(
+            kinematics, rawGyroHeading.get(), lastModulePositions, new Pose2d());
+    wheelOdometry =
+        new SwerveDriveOdometry(
+            kinematics, rawGyroHeading.get(), lastModulePositions, new Pose2d());
+
+    // The forward kinematics are linear, so the gyro fallback can apply the heading row directly
+    // instead of building delta positions and a full twist every sample
+    for (int moduleIndex = 0; moduleIndex < 4; moduleIndex++) {
+      SwerveModulePosition[] unitDeltas = new SwerveModulePosition[4];
+      for (int i = 0; i < 4; i++) {
+        unitDeltas[i] = new SwerveModulePosition();
+      }
+      unitDeltas[moduleIndex] = new SwerveModulePosition(1.0, Rotation2d.kZero);
+      headingPerModuleX[moduleIndex] = kinematics.toTwist2d(unitDeltas).dtheta;
+      unitDeltas[moduleIndex] = new SwerveModulePosition(1.0, new Rotation2d(0.0, 1.0));
+      headingPerModuleY[moduleIndex] = kinematics.toTwist2d(unitDeltas).dtheta;
+    }
+  }
+
+  /**
+   * Applies this cycle's odometry frames. Call after every module's periodic.
+   *
+   * @param modules Modules in FL, FR, BL, BR order
+   * @param gyroInputs This cycle's gyro inputs
+   */
+  void update(Module[] modules, GyroIOInputs gyroInputs) {
+    double[] sampleTimestamps =
+        modules[0].getOdometryTimestamps(); // All signals are sampled together
+    int sampleCount = sampleTimestamps.length;
+    for (int i = 0; i < sampleCount; i++) {
+      // Read wheel positions from each module and accumulate the kinematic heading change
+      double kinematicDeltaTheta = 0.0;
+      for (int moduleIndex = 0; moduleIndex < 4; moduleIndex++) {
+        SwerveModulePosition position = modules[moduleIndex].getOdometryPositions()[i];
+        SwerveModulePosition lastPosition = lastModulePositions[moduleIndex];
+        double deltaMeters = position.distanceMeters - lastPosition.distanceMeters;
+        kinematicDeltaTheta +=
+            deltaMeters
+                * (headingPerModuleX[moduleIndex] * position.angle.getCos()
+                    + headingPerModuleY[moduleIndex] * position.angle.getSin());
+        odometryModulePositions[moduleIndex] = position;
+        lastPosition.distanceMeters = position.distanceMeters;
+        lastPosition.angle = position.angle;
+      }
+
+      // Update gyro angle
+      Rotation2d rawGyroRotation;
+      if (gyroInputs.connected
+          && gyroInputs.odometryYawTimestamps.length == sampleCount
+          && gyroInputs.odometryYawPositions.length == sampleCount) {
+        // Use the real gyro angle, interpolated to the frame timestamp
+        rawGyroRotation =
+            rawGyroHeading.updateFromGyro(
+                gyroInputs.odometryYawPositions[i],
+                gyroInputs.odometryYawTimestamps[i],
+                sampleTimestamps[i]);
+      } else if (gyroInputs.connected && i < gyroInputs.odometryYawPositions.length) {
+        // The gyro queue drifted from the module queues, so take its sample as is
+        rawGyroRotation = rawGyroHeading.updateFromGyro(gyroInputs.odometryYawPositions[i]);
+      } else {
+        // Use the angle delta from the kinematics and module deltas, also covering samples
+        // without a matching gyro reading
+        rawGyroRotation = rawGyroHeading.updateFromKinematics(kinematicDeltaTheta);
+      }
+
+      // Apply update
+      Pose2d previousPose = poseEstimator.getEstimatedPosition();
+      Pose2d currentPose =
+          poseEstimator.updateWithTime(
+              sampleTimestamps[i], rawGyroRotation, odometryModulePositions);
+      wheelOdometry.update(rawGyroRotation, odometryModulePositions);
+
+      // Record history, with velocity from this sample's odometry step only so that vision
+      // corrections applied between cycles do not appear as motion
+      double dt = sampleTimestamps[i] - lastOdometryTimestamp;
+      if (hasLastOdometryTimestamp && dt > 0.0) {
+        poseCovariance.predict(
+            currentPose.getTranslation().getDistance(previousPose.getTranslation()),
+            Math.abs(
+                MathUtil.angleModulus(
+                    currentPose.getRotation().getRadians()
+                        - previousPose.getRotation().getRadians())),
+            dt);
+        poseHistory.addSample(
+            sampleTimestamps[i],
+            currentPose,
+            (currentPose.getX() - previousPose.getX()) / dt,
+            (currentPose.getY() - previousPose.getY()) / dt,
+            MathUtil.angleModulus(
+                    currentPose.getRotation().getRadians()
+                        - previousPose.getRotation().getRadians())
+                / dt);
+      } else {
+        poseHistory.addSample(sampleTimestamps[i], currentPose, 0.0, 0.0, 0.0);
+      }
+      hasLastOdometryTimestamp = true;
+      lastOdometryTimestamp = sampleTimestamps[i];
+    }
+  }
+
+  /** Returns the fused pose estimate. */
+  Pose2d getEstimatedPose() {
+    return poseEstimator.getEstimatedPosition();
+  }
+
+  /** Returns the pose from wheel and gyro odometry alone. */
+  Pose2d getWheelOnlyPose() {
+    return wheelOdometry.getPoseMeters();
+  }
+
+  /** Returns the raw heading fed to the estimator at the last frame. */
+  Rotation2d getRawGyroRotation() {
+    return rawGyroHeading.get();
+  }
+
+  /** Resets the fused and wheel-only poses, keeping the raw heading. */
+  void resetPose(SwerveModulePosition[] modulePositions, Pose2d pose) {
+    poseEstimator.resetPosition(rawGyroHeading.get(), modulePositions, pose);
+    wheelOdometry.resetPosition(rawGyroHeading.get(), modulePositions, pose);
+  }
+
+  /** Fuses a vision measurement into the pose estimate. */
+  void addVisionMeasurement(
+      Pose2d visionRobotPoseMeters,
+      double timestampSeconds,
+      Matrix<N3, N1> visionMeasurementStdDevs) {
+    poseEstimator.addVisionMeasurement(
+        visionRobotPoseMeters, timestampSeconds, visionMeasurementStdDevs);
+  }
+}
@@ -27,6 +27,7 @@ public interface GyroIO {
     public double yawVelocityRadPerSec = 0.0;
     public double[] odometryYawTimestamps = new double[] {};
     public Rotation2d[] odometryYawPositions = new Rotation2d[] {};
+    public long odometryDroppedSamples = 0;
   }
 
   public default void updateInputs(GyroIOInputs inputs) {}
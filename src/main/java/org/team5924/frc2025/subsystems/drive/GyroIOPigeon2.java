@@ -25,7 +25,7 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
-import java.util.Queue;
+import java.util.Arrays;
 import org.team5924.frc2025.RobotState;
 import org.team5924.frc2025.generated.TunerConstantsGamma;
 
@@ -36,18 +36,36 @@ public class GyroIOPigeon2 implements GyroIO {
           TunerConstantsGamma.DrivetrainConstants.Pigeon2Id,
           TunerConstantsGamma.DrivetrainConstants.CANBusName);
   private final StatusSignal<Angle> yaw = pigeon.getYaw();
-  private final Queue<Double> yawPositionQueue;
-  private final Queue<Double> yawTimestampQueue;
+  private final OdometrySampleBuffer yawBuffer;
+  private final double[] yawTimestamps = new double[PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+  private final double[][] yawValues = new double[1][PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+  private final double[][] yawValueTimestamps =
+      new double[1][PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
   private final StatusSignal<AngularVelocity> yawVelocity = pigeon.getAngularVelocityZWorld();
 
   public GyroIOPigeon2() {
     pigeon.getConfigurator().apply(new Pigeon2Configuration());
     pigeon.getConfigurator().setYaw(0);
     yaw.setUpdateFrequency(Drive.ODOMETRY_FREQUENCY);
-    yawVelocity.setUpdateFrequency(50.0);
+    yawVelocity.setUpdateFrequency(Drive.ODOMETRY_FREQUENCY);
     pigeon.optimizeBusUtilization();
-    yawTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
-    yawPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(pigeon.getYaw());
+    yawBuffer = PhoenixOdometryThread.getInstance().registerSignals(pigeon.getYaw());
+  }
+
+  /** Receives high-rate yaw samples on the odometry thread. */
+  @FunctionalInterface
+  public interface YawSampleListener {
+    void onYawSample(double timestampSeconds, double yawDegrees, double yawRateDegreesPerSec);
+  }
+
+  /** Streams every yaw sample to the listener from the odometry thread, bypassing the main loop. */
+  public void addYawSampleListener(YawSampleListener listener) {
+    PhoenixOdometryThread.getInstance()
+        .addFrameListener(
+            timestamp ->
+                listener.onYawSample(
+                    timestamp, yaw.getValueAsDouble(), yawVelocity.getValueAsDouble()),
+            yawVelocity);
   }
 
   @Override
@@ -59,13 +77,17 @@ public class GyroIOPigeon2 implements GyroIO {
     RobotState.getInstance().setYawPosition(inputs.yawPosition);
     RobotState.getInstance().setYawVelocityRadPerSec(inputs.yawVelocityRadPerSec);
 
-    inputs.odometryYawTimestamps =
-        yawTimestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryYawPositions =
-        yawPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromDegrees(value))
-            .toArray(Rotation2d[]::new);
-    yawTimestampQueue.clear();
-    yawPositionQueue.clear();
+    int sampleCount =
+        yawBuffer.drain(
+            PhoenixOdometryThread.getInstance().getDrainLimit(),
+            yawTimestamps,
+            yawValues,
+            yawValueTimestamps);
+    inputs.odometryYawTimestamps = Arrays.copyOf(yawValueTimestamps[0], sampleCount);
+    inputs.odometryYawPositions = new Rotation2d[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.odometryYawPositions[i] = Rotation2d.fromDegrees(yawValues[0][i]);
+    }
+    inputs.odometryDroppedSamples = yawBuffer.getDroppedCount();
   }
 }
@@ -19,6 +19,7 @@ package org.team5924.frc2025.subsystems.drive;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.swerve.SwerveModuleConstants;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants.ClosedLoopOutputType;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
@@ -26,11 +27,13 @@ import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.Alert;
 import edu.wpi.first.wpilibj.Alert.AlertType;
 import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.networktables.LoggedNetworkBoolean;
+import org.team5924.frc2025.Constants;
 
 public class Module {
   private final ModuleIO io;
   private final ModuleIOInputsAutoLogged inputs = new ModuleIOInputsAutoLogged();
-  private final int index;
+  private final String inputsKey;
   private final SwerveModuleConstants<
           TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration>
       constants;
@@ -38,7 +41,14 @@ public class Module {
   private final Alert driveDisconnectedAlert;
   private final Alert turnDisconnectedAlert;
   private final Alert turnEncoderDisconnectedAlert;
-  private SwerveModulePosition[] odometryPositions = new SwerveModulePosition[] {};
+
+  // Drive closed-loop output mode, switchable from the dashboard while tuning. The torque-current
+  // gains are not characterized yet, so outside tuning mode the module constants decide.
+  private final LoggedNetworkBoolean torqueCurrentDrive;
+  private ClosedLoopOutputType driveClosedLoopOutput = null;
+
+  // Interpolates odometry samples to frame timestamps without allocating
+  private final ModuleOdometrySampler odometrySampler;
 
   public Module(
       ModuleIO io,
@@ -46,8 +56,11 @@ public class Module {
       SwerveModuleConstants<TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration>
           constants) {
     this.io = io;
-    this.index = index;
+    inputsKey = "Drive/Module" + Integer.toString(index);
     this.constants = constants;
+    odometrySampler =
+        new ModuleOdometrySampler(
+            constants.WheelRadius, PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY);
     driveDisconnectedAlert =
         new Alert(
             "Disconnected drive motor on module " + Integer.toString(index) + ".",
@@ -59,35 +72,71 @@ public class Module {
         new Alert(
             "Disconnected turn encoder on module " + Integer.toString(index) + ".",
             AlertType.kError);
+    torqueCurrentDrive =
+        new LoggedNetworkBoolean(
+            "/Drive/Module" + Integer.toString(index) + "/TorqueCurrentDrive",
+            constants.DriveMotorClosedLoopOutput == ClosedLoopOutputType.TorqueCurrentFOC);
   }
 
   public void periodic() {
     io.updateInputs(inputs);
-    Logger.processInputs("Drive/Module" + Integer.toString(index), inputs);
-
-    // Calculate positions for odometry
-    int sampleCount = inputs.odometryTimestamps.length; // All signals are sampled together
-    odometryPositions = new SwerveModulePosition[sampleCount];
-    for (int i = 0; i < sampleCount; i++) {
-      double positionMeters = inputs.odometryDrivePositionsRad[i] * constants.WheelRadius;
-      Rotation2d angle = inputs.odometryTurnPositions[i];
-      odometryPositions[i] = new SwerveModulePosition(positionMeters, angle);
+    Logger.processInputs(inputsKey, inputs);
+
+    // Apply the drive output mode on the first cycle and whenever it is switched
+    ClosedLoopOutputType outputType =
+        !Constants.TUNING_MODE
+            ? constants.DriveMotorClosedLoopOutput
+            : torqueCurrentDrive.get()
+                ? ClosedLoopOutputType.TorqueCurrentFOC
+                : ClosedLoopOutputType.Voltage;
+    if (outputType != driveClosedLoopOutput) {
+      driveClosedLoopOutput = outputType;
+      io.setDriveClosedLoopOutput(outputType);
     }
 
+    // Calculate positions for odometry at each frame timestamp
+    odometrySampler.update(inputs);
+
     // Update alerts
     driveDisconnectedAlert.set(!inputs.driveConnected);
     turnDisconnectedAlert.set(!inputs.turnConnected);
     turnEncoderDisconnectedAlert.set(!inputs.turnEncoderConnected);
   }
 
+  /**
+   * Selects whether the drive velocity loop outputs voltage or torque-current. Only takes effect in
+   * tuning mode.
+   */
+  public void setDriveClosedLoopOutput(ClosedLoopOutputType outputType) {
+    torqueCurrentDrive.set(outputType == ClosedLoopOutputType.TorqueCurrentFOC);
+  }
+
   /** Runs the module with the specified setpoint state. Mutates the state to optimize it. */
   public void runSetpoint(SwerveModuleState state) {
-    // Optimize velocity setpoint
+    runSetpoint(state, 0.0);
+  }
+
+  /**
+   * Runs the module with the specified setpoint state and drive feedforward. Mutates the state to
+   * optimize it.
+   *
+   * @param state Module setpoint
+   * @param torqueCurrentFFAmps Drive torque-current feedforward, positive to accelerate the wheel
+   *     in the direction of the state's angle
+   */
+  public void runSetpoint(SwerveModuleState state, double torqueCurrentFFAmps) {
+    // Optimize velocity setpoint, reversing the feedforward along with the wheel
+    if (Math.abs(state.angle.minus(getAngle()).getRadians()) > Math.PI / 2.0) {
+      torqueCurrentFFAmps = -torqueCurrentFFAmps;
+    }
     state.optimize(getAngle());
+    // Only the component of the feedforward along the current wheel direction pushes the robot
+    double cosineScale = state.angle.minus(inputs.turnPosition).getCos();
     state.cosineScale(inputs.turnPosition);
 
     // Apply setpoints
-    io.setDriveVelocity(state.speedMetersPerSecond / constants.WheelRadius);
+    io.setDriveVelocity(
+        state.speedMetersPerSecond / constants.WheelRadius, torqueCurrentFFAmps * cosineScale);
     io.setTurnPosition(state.angle);
   }
 
@@ -128,9 +177,17 @@ public class Module {
     return new SwerveModuleState(getVelocityMetersPerSec(), getAngle());
   }
 
-  /** Returns the module positions received this cycle. */
+  /**
+   * Returns the module positions received this cycle. The array and its entries are reused every
+   * cycle, and only the first {@link #getOdometrySampleCount()} entries are valid.
+   */
   public SwerveModulePosition[] getOdometryPositions() {
-    return odometryPositions;
+    return odometrySampler.getPositions();
+  }
+
+  /** Returns the number of odometry samples received this cycle. */
+  public int getOdometrySampleCount() {
+    return odometrySampler.getSampleCount();
   }
 
   /** Returns the timestamps of the samples received this cycle. */
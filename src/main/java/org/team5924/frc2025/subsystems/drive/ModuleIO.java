@@ -16,6 +16,7 @@
 
 package org.team5924.frc2025.subsystems.drive;
 
+import com.ctre.phoenix6.swerve.SwerveModuleConstants.ClosedLoopOutputType;
 import edu.wpi.first.math.geometry.Rotation2d;
 import org.littletonrobotics.junction.AutoLog;
 
@@ -39,6 +40,9 @@ public interface ModuleIO {
     public double[] odometryTimestamps = new double[] {};
     public double[] odometryDrivePositionsRad = new double[] {};
     public Rotation2d[] odometryTurnPositions = new Rotation2d[] {};
+    public double[] odometryDriveTimestamps = new double[] {};
+    public double[] odometryTurnTimestamps = new double[] {};
+    public long odometryDroppedSamples = 0;
   }
 
   /** Updates the set of loggable inputs. */
@@ -50,8 +54,17 @@ public interface ModuleIO {
   /** Run the turn motor at the specified open loop value. */
   public default void setTurnOpenLoop(double output) {}
 
-  /** Run the drive motor at the specified velocity. */
-  public default void setDriveVelocity(double velocityRadPerSec) {}
+  /**
+   * Run the drive motor at the specified velocity.
+   *
+   * @param velocityRadPerSec Wheel velocity setpoint
+   * @param torqueCurrentFFAmps Feedforward for the motor torque needed to accelerate, as a
+   *     torque-producing current. Converted to volts when the drive runs in voltage mode.
+   */
+  public default void setDriveVelocity(double velocityRadPerSec, double torqueCurrentFFAmps) {}
+
+  /** Selects whether drive velocity control outputs voltage or torque-current. */
+  public default void setDriveClosedLoopOutput(ClosedLoopOutputType outputType) {}
 
   /** Run the turn motor to the specified rotation. */
   public default void setTurnPosition(Rotation2d rotation) {}
@@ -116,6 +116,8 @@ public class ModuleIOSim implements ModuleIO {
     inputs.odometryTimestamps = new double[] {Timer.getFPGATimestamp()};
     inputs.odometryDrivePositionsRad = new double[] {inputs.drivePositionRad};
     inputs.odometryTurnPositions = new Rotation2d[] {inputs.turnPosition};
+    inputs.odometryDriveTimestamps = inputs.odometryTimestamps;
+    inputs.odometryTurnTimestamps = inputs.odometryTimestamps;
   }
 
   @Override
@@ -131,9 +133,12 @@ public class ModuleIOSim implements ModuleIO {
   }
 
   @Override
-  public void setDriveVelocity(double velocityRadPerSec) {
+  public void setDriveVelocity(double velocityRadPerSec, double torqueCurrentFFAmps) {
     driveClosedLoop = true;
-    driveFFVolts = DRIVE_KS * Math.signum(velocityRadPerSec) + DRIVE_KV * velocityRadPerSec;
+    driveFFVolts =
+        DRIVE_KS * Math.signum(velocityRadPerSec)
+            + DRIVE_KV * velocityRadPerSec
+            + torqueCurrentFFAmps * DRIVE_GEARBOX.rOhms;
     driveController.setSetpoint(velocityRadPerSec);
   }
 
@@ -36,14 +36,16 @@ import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import com.ctre.phoenix6.signals.SensorDirectionValue;
 import com.ctre.phoenix6.swerve.SwerveModuleConstants;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants.ClosedLoopOutputType;
 import edu.wpi.first.math.filter.Debouncer;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
 import edu.wpi.first.units.measure.Voltage;
-import java.util.Queue;
+import java.util.Arrays;
 import org.team5924.frc2025.generated.TunerConstantsGamma;
 
 /**
@@ -53,6 +55,9 @@ import org.team5924.frc2025.generated.TunerConstantsGamma;
  * <p>Device configuration and other behaviors not exposed by TunerConstants can be customized here.
  */
 public class ModuleIOTalonFX implements ModuleIO {
+  // Used to convert torque-current feedforwards to volts, matching the PathPlanner module config
+  private static final DCMotor DRIVE_GEARBOX = DCMotor.getKrakenX60Foc(1);
+
   private final SwerveModuleConstants<
           TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration>
       constants;
@@ -73,14 +78,23 @@ public class ModuleIOTalonFX implements ModuleIO {
   private final PositionTorqueCurrentFOC positionTorqueCurrentRequest =
       new PositionTorqueCurrentFOC(0.0);
   private final VelocityTorqueCurrentFOC velocityTorqueCurrentRequest =
-      new VelocityTorqueCurrentFOC(0.0);
+      new VelocityTorqueCurrentFOC(0.0).withSlot(1);
+
+  // Drive velocity output mode, selectable at runtime. Voltage gains are in slot 0 and
+  // torque-current gains in slot 1, so switching never needs a config write.
+  private ClosedLoopOutputType driveClosedLoopOutput = ClosedLoopOutputType.Voltage;
 
-  // Timestamp inputs from Phoenix thread
-  private final Queue<Double> timestampQueue;
+  // Odometry samples from Phoenix thread (columns: drive position, turn position)
+  private final OdometrySampleBuffer odometryBuffer;
+  private final double[] odometryTimestamps =
+      new double[PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+  private final double[][] odometryValues =
+      new double[2][PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+  private final double[][] odometryValueTimestamps =
+      new double[2][PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
 
   // Inputs from drive motor
   private final StatusSignal<Angle> drivePosition;
-  private final Queue<Double> drivePositionQueue;
   private final StatusSignal<AngularVelocity> driveVelocity;
   private final StatusSignal<Voltage> driveAppliedVolts;
   private final StatusSignal<Current> driveCurrent;
@@ -88,7 +102,6 @@ public class ModuleIOTalonFX implements ModuleIO {
   // Inputs from turn motor
   private final StatusSignal<Angle> turnAbsolutePosition;
   private final StatusSignal<Angle> turnPosition;
-  private final Queue<Double> turnPositionQueue;
   private final StatusSignal<AngularVelocity> turnVelocity;
   private final StatusSignal<Voltage> turnAppliedVolts;
   private final StatusSignal<Current> turnCurrent;
@@ -113,6 +126,7 @@ public class ModuleIOTalonFX implements ModuleIO {
     var driveConfig = constants.DriveMotorInitialConfigs;
     driveConfig.MotorOutput.NeutralMode = NeutralModeValue.Brake;
     driveConfig.Slot0 = constants.DriveMotorGains;
+    driveConfig.Slot1 = TunerConstantsGamma.driveTorqueCurrentGains;
     driveConfig.Feedback.SensorToMechanismRatio = constants.DriveMotorGearRatio;
     driveConfig.TorqueCurrent.PeakForwardTorqueCurrent = constants.SlipCurrent;
     driveConfig.TorqueCurrent.PeakReverseTorqueCurrent = -constants.SlipCurrent;
@@ -161,13 +175,8 @@ public class ModuleIOTalonFX implements ModuleIO {
             : SensorDirectionValue.CounterClockwise_Positive;
     cancoder.getConfigurator().apply(cancoderConfig);
 
-    // Create timestamp queue
-    timestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
-
     // Create drive status signals
     drivePosition = driveTalon.getPosition();
-    drivePositionQueue =
-        PhoenixOdometryThread.getInstance().registerSignal(driveTalon.getPosition());
     driveVelocity = driveTalon.getVelocity();
     driveAppliedVolts = driveTalon.getMotorVoltage();
     driveCurrent = driveTalon.getStatorCurrent();
@@ -175,11 +184,15 @@ public class ModuleIOTalonFX implements ModuleIO {
     // Create turn status signals
     turnAbsolutePosition = cancoder.getAbsolutePosition();
     turnPosition = turnTalon.getPosition();
-    turnPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(turnTalon.getPosition());
     turnVelocity = turnTalon.getVelocity();
     turnAppliedVolts = turnTalon.getMotorVoltage();
     turnCurrent = turnTalon.getStatorCurrent();
 
+    // Register odometry signals with the Phoenix thread
+    odometryBuffer =
+        PhoenixOdometryThread.getInstance()
+            .registerSignals(driveTalon.getPosition(), turnTalon.getPosition());
+
     // Configure periodic frames
     BaseStatusSignal.setUpdateFrequencyForAll(
         Drive.ODOMETRY_FREQUENCY, drivePosition, turnPosition);
@@ -221,19 +234,20 @@ public class ModuleIOTalonFX implements ModuleIO {
     inputs.turnCurrentAmps = turnCurrent.getValueAsDouble();
 
     // Update odometry inputs
-    inputs.odometryTimestamps =
-        timestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryDrivePositionsRad =
-        drivePositionQueue.stream()
-            .mapToDouble((Double value) -> Units.rotationsToRadians(value))
-            .toArray();
-    inputs.odometryTurnPositions =
-        turnPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromRotations(value))
-            .toArray(Rotation2d[]::new);
-    timestampQueue.clear();
-    drivePositionQueue.clear();
-    turnPositionQueue.clear();
+    long drainLimit = PhoenixOdometryThread.getInstance().getDrainLimit();
+    int sampleCount =
+        odometryBuffer.drain(
+            drainLimit, odometryTimestamps, odometryValues, odometryValueTimestamps);
+    inputs.odometryTimestamps = Arrays.copyOf(odometryTimestamps, sampleCount);
+    inputs.odometryDrivePositionsRad = new double[sampleCount];
+    inputs.odometryTurnPositions = new Rotation2d[sampleCount];
+    inputs.odometryDriveTimestamps = Arrays.copyOf(odometryValueTimestamps[0], sampleCount);
+    inputs.odometryTurnTimestamps = Arrays.copyOf(odometryValueTimestamps[1], sampleCount);
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.odometryDrivePositionsRad[i] = Units.rotationsToRadians(odometryValues[0][i]);
+      inputs.odometryTurnPositions[i] = Rotation2d.fromRotations(odometryValues[1][i]);
+    }
+    inputs.odometryDroppedSamples = odometryBuffer.getDroppedCount();
   }
 
   @Override
@@ -255,15 +269,26 @@ public class ModuleIOTalonFX implements ModuleIO {
   }
 
   @Override
-  public void setDriveVelocity(double velocityRadPerSec) {
+  public void setDriveVelocity(double velocityRadPerSec, double torqueCurrentFFAmps) {
     double velocityRotPerSec = Units.radiansToRotations(velocityRadPerSec);
     driveTalon.setControl(
-        switch (constants.DriveMotorClosedLoopOutput) {
-          case Voltage -> velocityVoltageRequest.withVelocity(velocityRotPerSec);
-          case TorqueCurrentFOC -> velocityTorqueCurrentRequest.withVelocity(velocityRotPerSec);
+        switch (driveClosedLoopOutput) {
+          case Voltage ->
+              velocityVoltageRequest
+                  .withVelocity(velocityRotPerSec)
+                  .withFeedForward(torqueCurrentFFAmps * DRIVE_GEARBOX.rOhms);
+          case TorqueCurrentFOC ->
+              velocityTorqueCurrentRequest
+                  .withVelocity(velocityRotPerSec)
+                  .withFeedForward(torqueCurrentFFAmps);
         });
   }
 
+  @Override
+  public void setDriveClosedLoopOutput(ClosedLoopOutputType outputType) {
+    driveClosedLoopOutput = outputType;
+  }
+
   @Override
   public void setTurnPosition(Rotation2d rotation) {
     turnTalon.setControl(
@@ -0,0 +1,124 @@
+/*
+ * ModuleOdometrySampler.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+
+package org.team5924.frc2025.subsystems.drive;
+
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import org.team5924.frc2025.subsystems.drive.ModuleIO.ModuleIOInputs;
+import org.team5924.frc2025.util.MathHelpers;
+
+/**
+ * Converts a module's raw odometry samples into module positions at each frame timestamp. Each
+ * signal carries its own hardware timestamp, so the drive and turn positions are interpolated from
+ * the previous sample to the common frame instant.
+ *
+ * <p>Positions are written into a reused array. The sampled turn Rotation2d is reused whenever
+ * interpolation moves it by less than the encoder's resolution, so a new one is only built while
+ * the module is steering quickly.
+ */
+class ModuleOdometrySampler {
+  /** Interpolated turn angles within one CANcoder count of the sample reuse the sample. */
+  static final double TURN_TOLERANCE_RAD = 2.0 * Math.PI / 4096.0;
+
+  private final double wheelRadiusMeters;
+
+  // Only the first sample count entries are valid
+  private SwerveModulePosition[] positions;
+  private int sampleCount = 0;
+
+  // Previous raw sample, used to interpolate to each frame timestamp
+  private boolean hasLastSample = false;
+  private double lastDrivePositionRad = 0.0;
+  private double lastDriveTimestamp = 0.0;
+  private double lastTurnPositionRad = 0.0;
+  private double lastTurnTimestamp = 0.0;
+
+  /**
+   * @param wheelRadiusMeters Drive wheel radius
+   * @param capacity Number of samples expected per cycle, larger batches grow the array
+   */
+  ModuleOdometrySampler(double wheelRadiusMeters, int capacity) {
+    this.wheelRadiusMeters = wheelRadiusMeters;
+    positions = allocatePositions(capacity);
+  }
+
+  /** Updates the module positions from this cycle's odometry inputs. */
+  void update(ModuleIOInputs inputs) {
+    int count = inputs.odometryTimestamps.length; // All signals are sampled together
+    boolean hasSignalTimestamps =
+        inputs.odometryDriveTimestamps.length == count
+            && inputs.odometryTurnTimestamps.length == count;
+    if (count > positions.length) {
+      // Only possible when replaying logs recorded with a larger buffer
+      positions = allocatePositions(count);
+    }
+    sampleCount = count;
+    for (int i = 0; i < count; i++) {
+      double drivePositionRad = inputs.odometryDrivePositionsRad[i];
+      positions[i].angle = inputs.odometryTurnPositions[i];
+      if (hasSignalTimestamps) {
+        double frameTimestamp = inputs.odometryTimestamps[i];
+        double driveTimestamp = inputs.odometryDriveTimestamps[i];
+        double turnTimestamp = inputs.odometryTurnTimestamps[i];
+        if (hasLastSample) {
+          drivePositionRad =
+              MathHelpers.interpolateSample(
+                  lastDriveTimestamp,
+                  lastDrivePositionRad,
+                  driveTimestamp,
+                  inputs.odometryDrivePositionsRad[i],
+                  frameTimestamp);
+          positions[i].angle =
+              MathHelpers.interpolateRotationSample(
+                  lastTurnTimestamp,
+                  lastTurnPositionRad,
+                  turnTimestamp,
+                  inputs.odometryTurnPositions[i],
+                  frameTimestamp,
+                  TURN_TOLERANCE_RAD);
+        }
+        hasLastSample = true;
+        lastDrivePositionRad = inputs.odometryDrivePositionsRad[i];
+        lastDriveTimestamp = driveTimestamp;
+        lastTurnPositionRad = inputs.odometryTurnPositions[i].getRadians();
+        lastTurnTimestamp = turnTimestamp;
+      }
+      positions[i].distanceMeters = drivePositionRad * wheelRadiusMeters;
+    }
+  }
+
+  /**
+   * Returns the module positions from the last update. The array and its entries are reused, and
+   * only the first {@link #getSampleCount()} entries are valid.
+   */
+  SwerveModulePosition[] getPositions() {
+    return positions;
+  }
+
+  /** Returns the number of samples in the last update. */
+  int getSampleCount() {
+    return sampleCount;
+  }
+
+  private static SwerveModulePosition[] allocatePositions(int length) {
+    SwerveModulePosition[] positions = new SwerveModulePosition[length];
+    for (int i = 0; i < length; i++) {
+      positions[i] = new SwerveModulePosition();
+    }
+    return positions;
+  }
+}
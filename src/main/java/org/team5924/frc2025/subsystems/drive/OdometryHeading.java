@@ -0,0 +1,88 @@
+/*
+ * OdometryHeading.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+
+package org.team5924.frc2025.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import org.team5924.frc2025.util.MathHelpers;
+
+/**
+ * Raw robot heading fed to the pose estimator at each odometry frame, from the gyro when it is
+ * connected and from module kinematics otherwise. Interpolation and integration are done in
+ * radians, and a new Rotation2d is only built when the heading differs from a rotation already in
+ * hand, so a stationary or slowly turning robot does not allocate.
+ */
+class OdometryHeading {
+  /** Interpolated gyro yaws within this of the sampled yaw reuse the sample. */
+  static final double GYRO_TOLERANCE_RAD = 1e-4;
+
+  private Rotation2d rotation;
+
+  // Previous raw gyro sample, used to interpolate yaw to each frame timestamp
+  private boolean hasLastGyroSample = false;
+  private double lastGyroYawRad = 0.0;
+  private double lastGyroTimestamp = 0.0;
+
+  OdometryHeading(Rotation2d initialRotation) {
+    rotation = initialRotation;
+  }
+
+  /** Returns the current raw heading. */
+  Rotation2d get() {
+    return rotation;
+  }
+
+  /** Uses a gyro sample as-is, for gyros without per-sample timestamps. */
+  Rotation2d updateFromGyro(Rotation2d yaw) {
+    rotation = yaw;
+    return rotation;
+  }
+
+  /**
+   * Uses a gyro sample interpolated from its own timestamp to the frame timestamp.
+   *
+   * @param yaw Sampled gyro yaw
+   * @param yawTimestamp Hardware timestamp of the sample
+   * @param frameTimestamp Common timestamp of the odometry frame
+   */
+  Rotation2d updateFromGyro(Rotation2d yaw, double yawTimestamp, double frameTimestamp) {
+    double yawRad = yaw.getRadians();
+    rotation =
+        hasLastGyroSample
+            ? MathHelpers.interpolateRotationSample(
+                lastGyroTimestamp,
+                lastGyroYawRad,
+                yawTimestamp,
+                yaw,
+                frameTimestamp,
+                GYRO_TOLERANCE_RAD)
+            : yaw;
+    hasLastGyroSample = true;
+    lastGyroYawRad = yawRad;
+    lastGyroTimestamp = yawTimestamp;
+    return rotation;
+  }
+
+  /** Advances the heading by the modules' kinematic heading change, for a disconnected gyro. */
+  Rotation2d updateFromKinematics(double deltaThetaRad) {
+    if (deltaThetaRad != 0.0) {
+      rotation = new Rotation2d(MathUtil.angleModulus(rotation.getRadians() + deltaThetaRad));
+    }
+    return rotation;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * OdometrySampleBuffer.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.drive;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import java.util.function.DoubleSupplier;
+import org.team5924.frc2025.util.ClockOffsetEstimator;
+
+/**
+ * Fixed-capacity, single-producer/single-consumer ring buffer of odometry samples. Each sample
+ * frame holds a common frame timestamp plus one value and one hardware timestamp per registered
+ * signal, stored in primitive arrays so the odometry thread never boxes a value. Hardware
+ * timestamps are already mapped into the FPGA timebase; generic signals without one use the frame
+ * timestamp.
+ *
+ * <p>The odometry thread is the only writer and the owning IO implementation is the only reader.
+ * Neither side ever blocks: a frame becomes visible to the reader only after it is fully written,
+ * and the writer never touches a slot that has not been drained. When the reader falls behind and
+ * the buffer is full, new samples are dropped and counted rather than overwriting unread data.
+ *
+ * <p>Every frame is tagged with the odometry thread's frame sequence number so that several buffers
+ * can be drained up to the same frame, keeping samples aligned across devices without a lock.
+ */
+public class OdometrySampleBuffer {
+  private final BaseStatusSignal[] signals;
+  private final DoubleSupplier[] sources;
+  private final int capacity;
+  private final long[] frames;
+  private final double[] timestamps;
+  private final double[][] values;
+  private final double[][] valueTimestamps;
+
+  // Only ever advanced by the writer and reader respectively; volatile for cross-thread visibility
+  private volatile long writeIndex = 0;
+  private volatile long readIndex = 0;
+  private volatile long droppedCount = 0;
+
+  /**
+   * @param capacity Number of frames held between drains
+   * @param signals Phoenix signal backing each column, or null for generic columns
+   * @param sources Value source for each column
+   */
+  OdometrySampleBuffer(int capacity, BaseStatusSignal[] signals, DoubleSupplier[] sources) {
+    this.signals = signals;
+    this.sources = sources;
+    this.capacity = capacity;
+    frames = new long[capacity];
+    timestamps = new double[capacity];
+    values = new double[sources.length][capacity];
+    valueTimestamps = new double[sources.length][capacity];
+  }
+
+  /** Returns the number of signal columns in each sample frame. */
+  public int getColumnCount() {
+    return sources.length;
+  }
+
+  /** Returns the maximum number of samples held between drains. */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /** Returns the total number of samples dropped because the buffer was full. */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Samples every source and appends a new frame. Called only from the odometry thread.
+   *
+   * @param frame Frame sequence number
+   * @param timestamp Common frame timestamp in FPGA seconds
+   * @param clock Maps Phoenix signal timestamps into the FPGA timebase
+   * @return false if the buffer was full and the sample was dropped
+   */
+  boolean record(long frame, double timestamp, ClockOffsetEstimator clock) {
+    long write = writeIndex;
+    if (write - readIndex >= capacity) {
+      droppedCount++;
+      return false;
+    }
+    int slot = (int) (write % capacity);
+    frames[slot] = frame;
+    timestamps[slot] = timestamp;
+    for (int i = 0; i < sources.length; i++) {
+      values[i][slot] = sources[i].getAsDouble();
+      valueTimestamps[i][slot] =
+          signals[i] != null ? clock.toReference(signals[i].getTimestamp().getTime()) : timestamp;
+    }
+    writeIndex = write + 1; // Publish the frame only after it is fully written
+    return true;
+  }
+
+  /**
+   * Copies pending samples up to and including the given frame into the caller's arrays and marks
+   * them as consumed. Samples from later frames are left for the next drain.
+   *
+   * @param maxFrame Last frame sequence number to drain, see {@link
+   *     PhoenixOdometryThread#getDrainLimit()}
+   * @param timestampsOut Destination for frame timestamps, at least {@link #getCapacity()} long
+   * @param valuesOut One destination per column, each at least {@link #getCapacity()} long
+   * @param valueTimestampsOut One destination per column for the hardware timestamp of each value,
+   *     each at least {@link #getCapacity()} long
+   * @return The number of samples copied
+   */
+  public int drain(
+      long maxFrame, double[] timestampsOut, double[][] valuesOut, double[][] valueTimestampsOut) {
+    long read = readIndex;
+    long available = writeIndex - read;
+    int count = 0;
+    while (count < available) {
+      int slot = (int) ((read + count) % capacity);
+      if (frames[slot] > maxFrame) break;
+      timestampsOut[count] = timestamps[slot];
+      for (int column = 0; column < sources.length; column++) {
+        valuesOut[column][count] = values[column][slot];
+        valueTimestampsOut[column][count] = valueTimestamps[column][slot];
+      }
+      count++;
+    }
+    readIndex = read + count;
+    return count;
+  }
+
+  /**
+   * Copies every pending sample into the caller's arrays. For consumers that do not need their
+   * samples aligned with other buffers on the same thread.
+   */
+  public int drain(double[] timestampsOut, double[][] valuesOut, double[][] valueTimestampsOut) {
+    return drain(Long.MAX_VALUE, timestampsOut, valuesOut, valueTimestampsOut);
+  }
+}
@@ -18,152 +18,413 @@ package org.team5924.frc2025.subsystems.drive;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
-import edu.wpi.first.units.measure.Angle;
+import com.ctre.phoenix6.Utils;
 import edu.wpi.first.wpilibj.RobotController;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.DoubleSupplier;
+import org.littletonrobotics.junction.Logger;
 import org.team5924.frc2025.generated.TunerConstantsGamma;
+import org.team5924.frc2025.util.ClockOffsetEstimator;
+import org.team5924.frc2025.util.FixedRateScheduler;
+import org.team5924.frc2025.util.TimingHistogram;
 
 /**
- * Provides an interface for asynchronously reading high-frequency measurements to a set of queues.
+ * Provides an interface for asynchronously reading high-frequency measurements to a set of sample
+ * buffers.
+ *
+ * <p>There is one thread per CAN bus, created on first use through {@link #forBus(String)}. The
+ * drivetrain's thread is returned by {@link #getInstance()}; any other IO implementation can
+ * register signals of any type with the thread for its own bus and drain primitive sample batches
+ * the same way the drive modules do.
  *
  * <p>This version is intended for Phoenix 6 devices on both the RIO and CANivore buses. When using
  * a CANivore, the thread uses the "waitForAll" blocking method to enable more consistent sampling.
  * This also allows Phoenix Pro users to benefit from lower latency between devices using CANivore
  * time synchronization.
+ *
+ * <p>The thread and the main loop never wait on each other. Each sample frame is written to every
+ * buffer before the frame sequence number is published, and the main loop latches that number once
+ * per cycle with {@link #latchDrainLimit()} so all buffers drain the same frames.
+ *
+ * <p>Every Phoenix value is stored with its own hardware timestamp, mapped from the Phoenix
+ * timebase into the FPGA timebase by an online clock offset estimate. The frame timestamp is the
+ * mean of those per-signal timestamps, giving consumers a common instant to interpolate each
+ * device to.
+ *
+ * <p>The thread also records its own timing into preallocated histograms (inter-sample period,
+ * signal wait duration and signal lock wait) along with wait timeouts, dropped samples and the
+ * achieved sample rate. Recording never allocates; {@link #logAllTiming()} publishes the results
+ * from the main loop.
  */
 public class PhoenixOdometryThread extends Thread {
+  /** Number of samples each buffer holds between main loop drains. */
+  public static final int SAMPLE_BUFFER_CAPACITY = 20;
+
+  /** Default sample rates on CAN FD and non-FD buses. */
+  public static final double CAN_FD_FREQUENCY = 250.0;
+
+  public static final double NON_FD_FREQUENCY = 100.0;
+
+  /** Clock reads tried per frame before the first Phoenix to FPGA offset is accepted. */
+  private static final int CLOCK_INIT_ATTEMPTS = 5;
+
+  /** Busy-spin tail before each deadline when polling a non-FD bus. */
+  private static final double NON_FD_SPIN_SECONDS = 0.0002;
+
+  private static final Map<String, PhoenixOdometryThread> instances = new LinkedHashMap<>();
+
+  private final String canBusName;
+  private final double frequencyHz;
+  private final boolean isCANFD;
+  private final String logPrefix;
+
   private final Lock signalsLock =
       new ReentrantLock(); // Prevents conflicts when registering signals
-  private BaseStatusSignal[] phoenixSignals = new BaseStatusSignal[0];
-  private final List<DoubleSupplier> genericSignals = new ArrayList<>();
-  private final List<Queue<Double>> phoenixQueues = new ArrayList<>();
-  private final List<Queue<Double>> genericQueues = new ArrayList<>();
-  private final List<Queue<Double>> timestampQueues = new ArrayList<>();
+  private volatile BaseStatusSignal[] phoenixSignals = new BaseStatusSignal[0];
+  private volatile OdometrySampleBuffer[] buffers = new OdometrySampleBuffer[0];
+  private volatile FrameListener[] frameListeners = new FrameListener[0];
+
+  // Frame sequence numbers; frames start at 1 so a limit of 0 drains nothing
+  private volatile long publishedFrame = 0;
+  private volatile long drainLimit = 0;
+
+  // Maps Phoenix timestamps into the FPGA timebase, only touched by this thread after start
+  private final ClockOffsetEstimator phoenixClock = new ClockOffsetEstimator(0.01, 100e-6);
+
+  // Timing instrumentation, written only by this thread
+  private final TimingHistogram periodHistogram = new TimingHistogram(0.0005, 40);
+  private final TimingHistogram waitHistogram = new TimingHistogram(0.0005, 40);
+  private final TimingHistogram lockWaitHistogram = new TimingHistogram(0.00005, 40);
+  private volatile long waitTimeoutCount = 0;
+  private volatile long droppedSampleCount = 0;
+  private volatile double sampleRateHz = 0.0;
+  private long lastSampleNanos = 0;
+  private long rateWindowStartNanos = 0;
+  private long rateWindowSamples = 0;
 
-  private static boolean isCANFD =
-      new CANBus(TunerConstantsGamma.DrivetrainConstants.CANBusName).isNetworkFD();
-  private static PhoenixOdometryThread instance = null;
+  // Preallocated snapshots for logging from the main loop
+  private final long[] periodCounts = new long[periodHistogram.getBinCount()];
+  private final long[] waitCounts = new long[waitHistogram.getBinCount()];
+  private final long[] lockWaitCounts = new long[lockWaitHistogram.getBinCount()];
+  private final double[] histogramBinWidths =
+      new double[] {
+        periodHistogram.getBinWidthSeconds(),
+        waitHistogram.getBinWidthSeconds(),
+        lockWaitHistogram.getBinWidthSeconds()
+      };
 
+  // Paces refreshes on buses where "waitForAll" cannot block
+  private final FixedRateScheduler nonFDScheduler;
+
+  /** Returns the thread sampling the drivetrain's CAN bus. */
   public static PhoenixOdometryThread getInstance() {
-    if (instance == null) {
-      instance = new PhoenixOdometryThread();
+    return forBus(TunerConstantsGamma.DrivetrainConstants.CANBusName);
+  }
+
+  /**
+   * Returns the thread sampling the given CAN bus, creating it at the bus's default rate if needed.
+   */
+  public static PhoenixOdometryThread forBus(String canBusName) {
+    return forBus(canBusName, 0.0);
+  }
+
+  /**
+   * Returns the thread sampling the given CAN bus, creating it at the requested rate if needed. The
+   * rate is fixed by whichever caller creates the thread first.
+   *
+   * @param canBusName Name of the CAN bus, with "" and "rio" both meaning the roboRIO bus
+   * @param frequencyHz Sample rate, or 0 to use the bus default
+   */
+  public static synchronized PhoenixOdometryThread forBus(String canBusName, double frequencyHz) {
+    String key = canBusName.isEmpty() ? "rio" : canBusName;
+    PhoenixOdometryThread thread = instances.get(key);
+    if (thread == null) {
+      thread = new PhoenixOdometryThread(key, frequencyHz);
+      instances.put(key, thread);
     }
-    return instance;
+    return thread;
+  }
+
+  /** Starts every sampler thread that has signals registered and is not yet running. */
+  public static synchronized void startAll() {
+    for (PhoenixOdometryThread thread : instances.values()) {
+      thread.start();
+    }
+  }
+
+  /** Logs the timing statistics of every sampler thread. */
+  public static synchronized void logAllTiming() {
+    for (PhoenixOdometryThread thread : instances.values()) {
+      thread.logTiming();
+    }
+  }
+
+  private PhoenixOdometryThread(String canBusName, double frequencyHz) {
+    this(canBusName, frequencyHz, new CANBus(canBusName).isNetworkFD());
   }
 
-  private PhoenixOdometryThread() {
-    setName("PhoenixOdometryThread");
+  /** Creates a thread without querying the bus, for tests that publish frames themselves. */
+  PhoenixOdometryThread(String canBusName, double frequencyHz, boolean isCANFD) {
+    this.canBusName = canBusName;
+    this.isCANFD = isCANFD;
+    this.frequencyHz =
+        frequencyHz > 0.0 ? frequencyHz : (isCANFD ? CAN_FD_FREQUENCY : NON_FD_FREQUENCY);
+    nonFDScheduler = new FixedRateScheduler(1.0 / this.frequencyHz, NON_FD_SPIN_SECONDS);
+    logPrefix = "PhoenixSamplers/" + canBusName + "/";
+    setName("PhoenixOdometryThread-" + canBusName);
     setDaemon(true);
   }
 
   @Override
-  public void start() {
-    if (timestampQueues.size() > 0) {
+  public synchronized void start() {
+    if ((buffers.length > 0 || frameListeners.length > 0) && getState() == State.NEW) {
       super.start();
     }
   }
 
-  /** Registers a Phoenix signal to be read from the thread. */
-  public Queue<Double> registerSignal(StatusSignal<Angle> signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+  /** Returns the name of the CAN bus this thread samples. */
+  public String getCANBusName() {
+    return canBusName;
+  }
+
+  /** Returns the rate this thread samples at, which registered signals should update at. */
+  public double getFrequencyHz() {
+    return frequencyHz;
+  }
+
+  /** Registers a single Phoenix signal of any type, returning a one-column buffer. */
+  public OdometrySampleBuffer registerSignal(StatusSignal<?> signal) {
+    return registerSignals(signal);
+  }
+
+  /**
+   * Registers a set of Phoenix signals to be read from the thread. Each signal becomes one column
+   * of the returned buffer, in the order given.
+   */
+  public OdometrySampleBuffer registerSignals(BaseStatusSignal... signals) {
+    DoubleSupplier[] sources = new DoubleSupplier[signals.length];
+    for (int i = 0; i < signals.length; i++) {
+      sources[i] = signals[i]::getValueAsDouble;
+    }
+    OdometrySampleBuffer buffer =
+        new OdometrySampleBuffer(SAMPLE_BUFFER_CAPACITY, signals, sources);
     signalsLock.lock();
-    Drive.odometryLock.lock();
     try {
-      BaseStatusSignal[] newSignals = new BaseStatusSignal[phoenixSignals.length + 1];
+      BaseStatusSignal[] newSignals = new BaseStatusSignal[phoenixSignals.length + signals.length];
       System.arraycopy(phoenixSignals, 0, newSignals, 0, phoenixSignals.length);
-      newSignals[phoenixSignals.length] = signal;
+      System.arraycopy(signals, 0, newSignals, phoenixSignals.length, signals.length);
       phoenixSignals = newSignals;
-      phoenixQueues.add(queue);
+      addBuffer(buffer);
     } finally {
       signalsLock.unlock();
-      Drive.odometryLock.unlock();
     }
-    return queue;
+    return buffer;
   }
 
-  /** Registers a generic signal to be read from the thread. */
-  public Queue<Double> registerSignal(DoubleSupplier signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+  /** Registers a set of generic signals to be read from the thread. */
+  public OdometrySampleBuffer registerSignals(DoubleSupplier... signals) {
+    OdometrySampleBuffer buffer =
+        new OdometrySampleBuffer(
+            SAMPLE_BUFFER_CAPACITY, new BaseStatusSignal[signals.length], signals);
     signalsLock.lock();
-    Drive.odometryLock.lock();
     try {
-      genericSignals.add(signal);
-      genericQueues.add(queue);
+      addBuffer(buffer);
     } finally {
       signalsLock.unlock();
-      Drive.odometryLock.unlock();
     }
-    return queue;
+    return buffer;
+  }
+
+  /** Receives every frame on the sampling thread, as soon as it is recorded. */
+  @FunctionalInterface
+  public interface FrameListener {
+    /**
+     * Called after each frame. Must return quickly, as it delays the next sample.
+     *
+     * @param timestamp Frame timestamp in FPGA seconds
+     */
+    void onFrame(double timestamp);
   }
 
-  /** Returns a new queue that returns timestamp values for each sample. */
-  public Queue<Double> makeTimestampQueue() {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    Drive.odometryLock.lock();
+  /**
+   * Registers a listener to run on the sampling thread after every frame. The given signals are
+   * refreshed with the frame but not buffered, so the listener can read their latest values
+   * directly.
+   */
+  public void addFrameListener(FrameListener listener, BaseStatusSignal... signals) {
+    signalsLock.lock();
     try {
-      timestampQueues.add(queue);
+      BaseStatusSignal[] newSignals = new BaseStatusSignal[phoenixSignals.length + signals.length];
+      System.arraycopy(phoenixSignals, 0, newSignals, 0, phoenixSignals.length);
+      System.arraycopy(signals, 0, newSignals, phoenixSignals.length, signals.length);
+      phoenixSignals = newSignals;
+
+      FrameListener[] newListeners = new FrameListener[frameListeners.length + 1];
+      System.arraycopy(frameListeners, 0, newListeners, 0, frameListeners.length);
+      newListeners[frameListeners.length] = listener;
+      frameListeners = newListeners;
     } finally {
-      Drive.odometryLock.unlock();
+      signalsLock.unlock();
+    }
+  }
+
+  /** Publishes a copy of the buffer list with the new buffer appended. Requires signalsLock. */
+  private void addBuffer(OdometrySampleBuffer buffer) {
+    OdometrySampleBuffer[] newBuffers = new OdometrySampleBuffer[buffers.length + 1];
+    System.arraycopy(buffers, 0, newBuffers, 0, buffers.length);
+    newBuffers[buffers.length] = buffer;
+    buffers = newBuffers;
+  }
+
+  /**
+   * Latches the most recently published frame as the drain limit for this cycle. Called once per
+   * main loop before any odometry inputs are updated.
+   */
+  public void latchDrainLimit() {
+    drainLimit = publishedFrame;
+  }
+
+  /** Returns the last frame that odometry inputs should drain this cycle. */
+  public long getDrainLimit() {
+    return drainLimit;
+  }
+
+  /**
+   * Logs the thread's timing statistics. Histogram counts are cumulative since boot, with bin
+   * widths logged alongside so the arrays can be decoded.
+   */
+  public void logTiming() {
+    periodHistogram.copyCounts(periodCounts);
+    waitHistogram.copyCounts(waitCounts);
+    lockWaitHistogram.copyCounts(lockWaitCounts);
+    Logger.recordOutput(logPrefix + "PeriodHistogram", periodCounts);
+    Logger.recordOutput(logPrefix + "WaitHistogram", waitCounts);
+    Logger.recordOutput(logPrefix + "LockWaitHistogram", lockWaitCounts);
+    Logger.recordOutput(logPrefix + "HistogramBinWidthsSeconds", histogramBinWidths);
+    Logger.recordOutput(logPrefix + "MaxPeriodSeconds", periodHistogram.getMaxSeconds());
+    Logger.recordOutput(logPrefix + "WaitTimeouts", waitTimeoutCount);
+    Logger.recordOutput(logPrefix + "DeadlineOverruns", nonFDScheduler.getOverrunCount());
+    Logger.recordOutput(logPrefix + "DroppedSamples", droppedSampleCount);
+    Logger.recordOutput(logPrefix + "SampleRateHz", sampleRateHz);
+  }
+
+  /**
+   * Adds a Phoenix clock observation to the offset estimate.
+   *
+   * @return The FPGA time in seconds after the Phoenix clock read
+   */
+  private double observePhoenixClock() {
+    // Default timestamps from Phoenix are NOT compatible with
+    // FPGA timestamps, so bracket a Phoenix clock read with FPGA reads
+    double fpgaBefore = RobotController.getFPGATime() / 1e6;
+    double phoenixNow = Utils.getCurrentTimeSeconds();
+    double fpgaAfter = RobotController.getFPGATime() / 1e6;
+    phoenixClock.addObservation(fpgaBefore, phoenixNow, fpgaAfter);
+    return fpgaAfter;
+  }
+
+  /** Records the inter-sample period and updates the achieved sample rate once per second. */
+  private void recordSampleTiming(long nowNanos) {
+    if (lastSampleNanos != 0) {
+      periodHistogram.record(nowNanos - lastSampleNanos);
+    } else {
+      rateWindowStartNanos = nowNanos;
+    }
+    lastSampleNanos = nowNanos;
+
+    rateWindowSamples++;
+    long windowNanos = nowNanos - rateWindowStartNanos;
+    if (windowNanos >= 1_000_000_000L) {
+      sampleRateHz = rateWindowSamples * 1e9 / windowNanos;
+      rateWindowStartNanos = nowNanos;
+      rateWindowSamples = 0;
     }
-    return queue;
   }
 
   @Override
   public void run() {
     while (true) {
       // Wait for updates from all signals
+      long lockStartNanos = System.nanoTime();
       signalsLock.lock();
+      long waitStartNanos = System.nanoTime();
+      lockWaitHistogram.record(waitStartNanos - lockStartNanos);
       try {
+        StatusCode status = StatusCode.OK;
         if (isCANFD && phoenixSignals.length > 0) {
-          BaseStatusSignal.waitForAll(2.0 / Drive.ODOMETRY_FREQUENCY, phoenixSignals);
+          status = BaseStatusSignal.waitForAll(2.0 / frequencyHz, phoenixSignals);
         } else {
           // "waitForAll" does not support blocking on multiple signals with a bus
           // that is not CAN FD, regardless of Pro licensing. No reasoning for this
-          // behavior is provided by the documentation.
-          Thread.sleep((long) (1000.0 / Drive.ODOMETRY_FREQUENCY));
-          if (phoenixSignals.length > 0) BaseStatusSignal.refreshAll(phoenixSignals);
+          // behavior is provided by the documentation. Refresh against absolute
+          // deadlines so the refresh time does not stretch the period.
+          nonFDScheduler.waitForNextTick();
+          if (phoenixSignals.length > 0) status = BaseStatusSignal.refreshAll(phoenixSignals);
+        }
+        if (status == StatusCode.RxTimeout) {
+          waitTimeoutCount++;
         }
-      } catch (InterruptedException e) {
-        e.printStackTrace();
       } finally {
         signalsLock.unlock();
       }
+      long sampleNanos = System.nanoTime();
+      waitHistogram.record(sampleNanos - waitStartNanos);
+      recordSampleTiming(sampleNanos);
 
-      // Save new data to queues
-      Drive.odometryLock.lock();
-      try {
-        // Sample timestamp is current FPGA time minus average CAN latency
-        //     Default timestamps from Phoenix are NOT compatible with
-        //     FPGA timestamps, this solution is imperfect but close
-        double timestamp = RobotController.getFPGATime() / 1e6;
-        double totalLatency = 0.0;
-        for (BaseStatusSignal signal : phoenixSignals) {
-          totalLatency += signal.getTimestamp().getLatency();
-        }
-        if (phoenixSignals.length > 0) {
-          timestamp -= totalLatency / phoenixSignals.length;
-        }
+      // Update the Phoenix to FPGA clock offset. Until a read with a tight enough bracket is
+      // accepted there is no offset, so retry a few times and skip the frame rather than publish
+      // timestamps in the wrong timebase.
+      double fpgaAfter = observePhoenixClock();
+      for (int attempt = 1;
+          attempt < CLOCK_INIT_ATTEMPTS && !phoenixClock.isInitialized();
+          attempt++) {
+        fpgaAfter = observePhoenixClock();
+      }
+      if (!phoenixClock.isInitialized()) {
+        continue;
+      }
 
-        // Add new samples to queues
-        for (int i = 0; i < phoenixSignals.length; i++) {
-          phoenixQueues.get(i).offer(phoenixSignals[i].getValueAsDouble());
-        }
-        for (int i = 0; i < genericSignals.size(); i++) {
-          genericQueues.get(i).offer(genericSignals.get(i).getAsDouble());
+      // Frame timestamp is the mean hardware timestamp of all signals in FPGA time
+      BaseStatusSignal[] signals = phoenixSignals;
+      double timestamp = fpgaAfter;
+      if (signals.length > 0) {
+        double totalTimestamp = 0.0;
+        for (BaseStatusSignal signal : signals) {
+          totalTimestamp += phoenixClock.toReference(signal.getTimestamp().getTime());
         }
-        for (int i = 0; i < timestampQueues.size(); i++) {
-          timestampQueues.get(i).offer(timestamp);
-        }
-      } finally {
-        Drive.odometryLock.unlock();
+        timestamp = totalTimestamp / signals.length;
       }
+
+      publishFrame(timestamp);
+    }
+  }
+
+  /**
+   * Samples every buffer into a new frame, publishes it to the main loop and then notifies the
+   * listeners. Called only from the sampling thread.
+   *
+   * @param timestamp Frame timestamp in FPGA seconds
+   */
+  void publishFrame(double timestamp) {
+    // Add new samples to every buffer, then publish the frame
+    long frame = publishedFrame + 1;
+    OdometrySampleBuffer[] currentBuffers = buffers;
+    for (int i = 0; i < currentBuffers.length; i++) {
+      if (!currentBuffers[i].record(frame, timestamp, phoenixClock)) {
+        droppedSampleCount++;
+      }
+    }
+    publishedFrame = frame;
+
+    // Notify listeners after the frame is available to the main loop
+    FrameListener[] currentListeners = frameListeners;
+    for (int i = 0; i < currentListeners.length; i++) {
+      currentListeners[i].onFrame(timestamp);
     }
   }
 }
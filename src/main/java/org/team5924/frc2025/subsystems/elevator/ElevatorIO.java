@@ -51,6 +51,12 @@ public interface ElevatorIO {
 
     public boolean minSoftStop = false;
     public boolean maxSoftStop = false;
+
+    // High-rate samples of the leader since the last loop
+    public double[] sampleTimestamps = new double[] {};
+    public double[] samplePositionMeters = new double[] {};
+    public double[] sampleVelocityMetersPerSec = new double[] {};
+    public long droppedSamples = 0;
   }
 
   public default void updateInputs(ElevatorIOInputs inputs) {}
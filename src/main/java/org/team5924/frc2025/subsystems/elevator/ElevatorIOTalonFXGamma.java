@@ -59,8 +59,11 @@ import edu.wpi.first.units.measure.Temperature;
 import edu.wpi.first.units.measure.Voltage;
 import edu.wpi.first.wpilibj.Alert;
 import edu.wpi.first.wpilibj.DriverStation;
+import java.util.Arrays;
 import org.littletonrobotics.junction.Logger;
 import org.team5924.frc2025.Constants;
+import org.team5924.frc2025.subsystems.drive.OdometrySampleBuffer;
+import org.team5924.frc2025.subsystems.drive.PhoenixOdometryThread;
 import org.team5924.frc2025.util.LoggedTunableNumber;
 
 /** TODO: Need to rezero elevator on min height. */
@@ -123,6 +126,16 @@ public class ElevatorIOTalonFXGamma implements ElevatorIO {
   double prevClosedLoopReferenceSlope = 0.0;
   double prevReferenceSlopeTimestamp = 0.0;
 
+  /* High-Rate Samples */
+  private static final double SAMPLE_FREQUENCY = 200.0;
+  private final OdometrySampleBuffer sampleBuffer;
+  private final double[] sampleTimestamps =
+      new double[PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+  private final double[][] sampleValues =
+      new double[2][PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+  private final double[][] sampleValueTimestamps =
+      new double[2][PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+
   private final VoltageOut voltageControl;
   private final MotionMagicVoltage magicMotionVoltage;
 
@@ -268,6 +281,12 @@ public class ElevatorIOTalonFXGamma implements ElevatorIO {
         rightTempCelsius,
         closedLoopReferenceSlope);
 
+    // Sample leader position and velocity faster than the main loop
+    PhoenixOdometryThread sampler =
+        PhoenixOdometryThread.forBus(leftTalon.getNetwork(), SAMPLE_FREQUENCY);
+    BaseStatusSignal.setUpdateFrequencyForAll(sampler.getFrequencyHz(), leftPosition, leftVelocity);
+    sampleBuffer = sampler.registerSignals(leftTalon.getPosition(), leftTalon.getVelocity());
+
     voltageControl =
         new VoltageOut(0)
             .withUpdateFreqHz(0.0)
@@ -341,6 +360,16 @@ public class ElevatorIOTalonFXGamma implements ElevatorIO {
 
     inputs.minSoftStop = elevatorCANdi.getS1Closed().getValue();
     inputs.maxSoftStop = elevatorCANdi.getS2Closed().getValue();
+
+    int sampleCount = sampleBuffer.drain(sampleTimestamps, sampleValues, sampleValueTimestamps);
+    inputs.sampleTimestamps = Arrays.copyOf(sampleTimestamps, sampleCount);
+    inputs.samplePositionMeters = new double[sampleCount];
+    inputs.sampleVelocityMetersPerSec = new double[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.samplePositionMeters[i] = rotationsToMeters(sampleValues[0][i]);
+      inputs.sampleVelocityMetersPerSec[i] = rotationsToMeters(sampleValues[1][i]);
+    }
+    inputs.droppedSamples = sampleBuffer.getDroppedCount();
   }
 
   @Override
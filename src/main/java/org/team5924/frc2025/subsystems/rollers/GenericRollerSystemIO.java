@@ -43,6 +43,18 @@ public interface GenericRollerSystemIO {
 
     /** Motor temperature in Celsius. */
     public double tempCelsius = 0.0;
+
+    /** FPGA timestamps of the high-rate samples taken since the last loop. */
+    public double[] sampleTimestamps = new double[] {};
+
+    /** High-rate position samples in radians. */
+    public double[] samplePositionsRads = new double[] {};
+
+    /** High-rate velocity samples in radians per second. */
+    public double[] sampleVelocitiesRadsPerSec = new double[] {};
+
+    /** Total high-rate samples dropped because the loop fell behind. */
+    public long droppedSamples = 0;
   }
 
   default void updateInputs(GenericRollerSystemIOInputs inputs) {}
@@ -30,6 +30,9 @@ import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
 import edu.wpi.first.units.measure.Temperature;
 import edu.wpi.first.units.measure.Voltage;
+import java.util.Arrays;
+import org.team5924.frc2025.subsystems.drive.OdometrySampleBuffer;
+import org.team5924.frc2025.subsystems.drive.PhoenixOdometryThread;
 
 public abstract class GenericRollerSystemIOKrakenFOC implements GenericRollerSystemIO {
   private final TalonFX talon;
@@ -41,6 +44,15 @@ public abstract class GenericRollerSystemIOKrakenFOC implements GenericRollerSys
   private final StatusSignal<Current> torqueCurrent;
   private final StatusSignal<Temperature> tempCelsius;
 
+  private static final double SAMPLE_FREQUENCY = 200.0;
+  private final OdometrySampleBuffer sampleBuffer;
+  private final double[] sampleTimestamps =
+      new double[PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+  private final double[][] sampleValues =
+      new double[2][PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+  private final double[][] sampleValueTimestamps =
+      new double[2][PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY];
+
   // Single shot for voltage mode, robot loop will call continuously
   private final VoltageOut voltageOut = new VoltageOut(0.0).withEnableFOC(true).withUpdateFreqHz(0);
   private final NeutralOut neutralOut = new NeutralOut();
@@ -69,7 +81,12 @@ public abstract class GenericRollerSystemIOKrakenFOC implements GenericRollerSys
     torqueCurrent = talon.getTorqueCurrent();
     tempCelsius = talon.getDeviceTemp();
     BaseStatusSignal.setUpdateFrequencyForAll(
-        50.0, position, velocity, appliedVoltage, supplyCurrent, torqueCurrent, tempCelsius);
+        50.0, appliedVoltage, supplyCurrent, torqueCurrent, tempCelsius);
+
+    // Sample position and velocity faster than the main loop
+    PhoenixOdometryThread sampler = PhoenixOdometryThread.forBus(bus, SAMPLE_FREQUENCY);
+    BaseStatusSignal.setUpdateFrequencyForAll(sampler.getFrequencyHz(), position, velocity);
+    sampleBuffer = sampler.registerSignals(talon.getPosition(), talon.getVelocity());
 
     // Disables status signals not called for update above
     talon.optimizeBusUtilization(0, 1.0);
@@ -87,6 +104,17 @@ public abstract class GenericRollerSystemIOKrakenFOC implements GenericRollerSys
     inputs.supplyCurrentAmps = supplyCurrent.getValueAsDouble();
     inputs.torqueCurrentAmps = torqueCurrent.getValueAsDouble();
     inputs.tempCelsius = tempCelsius.getValueAsDouble();
+
+    int sampleCount = sampleBuffer.drain(sampleTimestamps, sampleValues, sampleValueTimestamps);
+    inputs.sampleTimestamps = Arrays.copyOf(sampleTimestamps, sampleCount);
+    inputs.samplePositionsRads = new double[sampleCount];
+    inputs.sampleVelocitiesRadsPerSec = new double[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.samplePositionsRads[i] = Units.rotationsToRadians(sampleValues[0][i]) / reduction;
+      inputs.sampleVelocitiesRadsPerSec[i] =
+          Units.rotationsToRadians(sampleValues[1][i]) / reduction;
+    }
+    inputs.droppedSamples = sampleBuffer.getDroppedCount();
   }
 
   @Override
@@ -0,0 +1,321 @@
+/*
+ * LimelightCropController.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.vision;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.math.util.Units;
+import org.team5924.frc2025.Constants.VisionCameraConfig;
+
+/**
+ * Predicts which AprilTags one camera can see and picks the smallest crop window containing them,
+ * so the camera processes fewer pixels and runs at a higher frame rate.
+ *
+ * <p>Every tag corner from the field layout is projected through the camera's mounting at both the
+ * current pose and the pose a short time ahead along the current velocity. The window is the
+ * bounding box of every visible tag plus a margin, in the camera's normalized crop coordinates (-1
+ * to 1, x to the right and y up). The window grows immediately but only shrinks once an edge has
+ * moved by more than a threshold, so it is not resent every loop.
+ *
+ * <p>Falls back to the full frame when no tag is predicted in view, and when tags are predicted in
+ * view but the camera has not seen any for a while, in case the pose estimate is wrong. Losing the
+ * tags while cropped holds the full frame until the camera has an estimate accepted or a hold time
+ * passes, since cropping again from the same wrong pose would just lose them again.
+ */
+public class LimelightCropController {
+  private static final double LOOKAHEAD_SECONDS = 0.15;
+  private static final double MAX_TAG_DISTANCE_METERS = 6.0;
+  private static final double MIN_DEPTH_METERS = 0.1;
+  private static final double MARGIN = 0.15;
+  private static final double MIN_WINDOW_SIZE = 0.4;
+  private static final double SHRINK_THRESHOLD = 0.1;
+  private static final double LOST_TARGET_TIMEOUT_SECONDS = 0.25;
+  private static final double FULL_FRAME_HOLD_SECONDS = 1.0;
+
+  private final Transform3d robotToCamera;
+  private final double tanHalfHorizontalFov;
+  private final double tanHalfVerticalFov;
+
+  // Tag corners and outward normals in field coordinates, one row per tag
+  private final double[][] cornersX;
+  private final double[][] cornersY;
+  private final double[][] cornersZ;
+  private final double[] centerX;
+  private final double[] centerY;
+  private final double[] centerZ;
+  private final double[] normalX;
+  private final double[] normalY;
+  private final double[] normalZ;
+
+  // xMin, xMax, yMin, yMax
+  private final double[] predicted = new double[4];
+  private final double[] window = {-1, 1, -1, 1};
+  private boolean isFullFrame = true;
+  private int visibleTagCount = 0;
+  private double lastSeenTimestamp = Double.NEGATIVE_INFINITY;
+  private boolean holdingFullFrame = false;
+  private double holdStartTimestamp = Double.NEGATIVE_INFINITY;
+  private double lastAcceptedTimestamp = Double.NEGATIVE_INFINITY;
+
+  /**
+   * @param camera Mounting of the camera, angles in degrees
+   * @param layout Field layout whose tags are predicted
+   * @param horizontalFovDegrees Full horizontal field of view
+   * @param verticalFovDegrees Full vertical field of view
+   * @param tagSizeMeters Outer edge length of the tag's black border
+   */
+  public LimelightCropController(
+      VisionCameraConfig camera,
+      AprilTagFieldLayout layout,
+      double horizontalFovDegrees,
+      double verticalFovDegrees,
+      double tagSizeMeters) {
+    // Limelight reports pitch positive up, WPILib rotations are positive down about +y
+    robotToCamera =
+        new Transform3d(
+            new Translation3d(camera.offForward(), camera.offSide(), camera.offUp()),
+            new Rotation3d(
+                Units.degreesToRadians(camera.offRoll()),
+                -Units.degreesToRadians(camera.offPitch()),
+                Units.degreesToRadians(camera.offYaw())));
+    tanHalfHorizontalFov = Math.tan(Units.degreesToRadians(horizontalFovDegrees) / 2.0);
+    tanHalfVerticalFov = Math.tan(Units.degreesToRadians(verticalFovDegrees) / 2.0);
+
+    int tagCount = layout.getTags().size();
+    cornersX = new double[tagCount][4];
+    cornersY = new double[tagCount][4];
+    cornersZ = new double[tagCount][4];
+    centerX = new double[tagCount];
+    centerY = new double[tagCount];
+    centerZ = new double[tagCount];
+    normalX = new double[tagCount];
+    normalY = new double[tagCount];
+    normalZ = new double[tagCount];
+    double half = tagSizeMeters / 2.0;
+    for (int i = 0; i < tagCount; i++) {
+      AprilTag tag = layout.getTags().get(i);
+      Pose3d tagPose = tag.pose;
+      centerX[i] = tagPose.getX();
+      centerY[i] = tagPose.getY();
+      centerZ[i] = tagPose.getZ();
+      // The tag's +x axis points out of its face
+      Translation3d normal = new Translation3d(1, 0, 0).rotateBy(tagPose.getRotation());
+      normalX[i] = normal.getX();
+      normalY[i] = normal.getY();
+      normalZ[i] = normal.getZ();
+      for (int corner = 0; corner < 4; corner++) {
+        Translation3d offset =
+            new Translation3d(0, corner < 2 ? -half : half, corner % 2 == 0 ? -half : half)
+                .rotateBy(tagPose.getRotation());
+        cornersX[i][corner] = centerX[i] + offset.getX();
+        cornersY[i][corner] = centerY[i] + offset.getY();
+        cornersZ[i][corner] = centerZ[i] + offset.getZ();
+      }
+    }
+  }
+
+  /**
+   * Updates the crop window.
+   *
+   * @param pose Current robot pose
+   * @param fieldVelocity Current field-relative velocity
+   * @param seesTarget Whether the camera saw any tag this loop
+   * @param timestamp Current FPGA timestamp in seconds
+   * @return Whether the window changed enough that it should be sent to the camera
+   */
+  public boolean update(
+      Pose2d pose, ChassisSpeeds fieldVelocity, boolean seesTarget, double timestamp) {
+    if (seesTarget) {
+      lastSeenTimestamp = timestamp;
+    }
+
+    predicted[0] = Double.POSITIVE_INFINITY;
+    predicted[1] = Double.NEGATIVE_INFINITY;
+    predicted[2] = Double.POSITIVE_INFINITY;
+    predicted[3] = Double.NEGATIVE_INFINITY;
+    visibleTagCount = 0;
+    accumulateVisibleTags(pose);
+    accumulateVisibleTags(
+        new Pose2d(
+            pose.getX() + fieldVelocity.vxMetersPerSecond * LOOKAHEAD_SECONDS,
+            pose.getY() + fieldVelocity.vyMetersPerSecond * LOOKAHEAD_SECONDS,
+            pose.getRotation()
+                .plus(
+                    Rotation2d.fromRadians(
+                        fieldVelocity.omegaRadiansPerSecond * LOOKAHEAD_SECONDS))));
+
+    boolean lostTarget = timestamp - lastSeenTimestamp > LOST_TARGET_TIMEOUT_SECONDS;
+    if (lostTarget && !isFullFrame) {
+      holdingFullFrame = true;
+      holdStartTimestamp = timestamp;
+    }
+    if (holdingFullFrame
+        && (lastAcceptedTimestamp > holdStartTimestamp
+            || timestamp - holdStartTimestamp > FULL_FRAME_HOLD_SECONDS)) {
+      holdingFullFrame = false;
+    }
+    if (visibleTagCount == 0 || lostTarget || holdingFullFrame) {
+      return setFullFrame();
+    }
+
+    // Add the margin and keep a minimum size, clamped to the frame
+    double xMin = predicted[0] - MARGIN;
+    double xMax = predicted[1] + MARGIN;
+    double yMin = predicted[2] - MARGIN;
+    double yMax = predicted[3] + MARGIN;
+    double xGrow = Math.max(MIN_WINDOW_SIZE - (xMax - xMin), 0.0) / 2.0;
+    double yGrow = Math.max(MIN_WINDOW_SIZE - (yMax - yMin), 0.0) / 2.0;
+    xMin = Math.max(xMin - xGrow, -1);
+    xMax = Math.min(xMax + xGrow, 1);
+    yMin = Math.max(yMin - yGrow, -1);
+    yMax = Math.min(yMax + yGrow, 1);
+
+    // Grow right away so tags are never cut off, only shrink on a meaningful change
+    boolean grows =
+        !isFullFrame
+            && (xMin < window[0] || xMax > window[1] || yMin < window[2] || yMax > window[3]);
+    boolean shrinks =
+        xMin - window[0] > SHRINK_THRESHOLD
+            || window[1] - xMax > SHRINK_THRESHOLD
+            || yMin - window[2] > SHRINK_THRESHOLD
+            || window[3] - yMax > SHRINK_THRESHOLD;
+    if (!grows && !shrinks) {
+      return false;
+    }
+    window[0] = xMin;
+    window[1] = xMax;
+    window[2] = yMin;
+    window[3] = yMax;
+    isFullFrame = false;
+    return true;
+  }
+
+  /**
+   * Switches to the full frame.
+   *
+   * @return Whether the window changed
+   */
+  public boolean setFullFrame() {
+    if (isFullFrame) {
+      return false;
+    }
+    window[0] = -1;
+    window[1] = 1;
+    window[2] = -1;
+    window[3] = 1;
+    isFullFrame = true;
+    return true;
+  }
+
+  /**
+   * Records that a pose estimate from this camera passed every filter, which ends a full-frame
+   * hold if the frame was captured after the hold started.
+   *
+   * @param captureTimestamp FPGA timestamp at which the accepted frame was captured
+   */
+  public void onEstimateAccepted(double captureTimestamp) {
+    lastAcceptedTimestamp = Math.max(lastAcceptedTimestamp, captureTimestamp);
+  }
+
+  /** Expands the predicted window by every tag visible from the given robot pose. */
+  private void accumulateVisibleTags(Pose2d robotPose) {
+    Pose3d cameraPose = new Pose3d(robotPose).transformBy(robotToCamera);
+    // Columns are the camera's axes in field coordinates
+    Matrix<N3, N3> rotation = cameraPose.getRotation().toMatrix();
+    double cameraX = cameraPose.getX();
+    double cameraY = cameraPose.getY();
+    double cameraZ = cameraPose.getZ();
+
+    for (int tag = 0; tag < centerX.length; tag++) {
+      double toCameraX = cameraX - centerX[tag];
+      double toCameraY = cameraY - centerY[tag];
+      double toCameraZ = cameraZ - centerZ[tag];
+      double distanceSquared =
+          toCameraX * toCameraX + toCameraY * toCameraY + toCameraZ * toCameraZ;
+      // Skip tags that are too far away or facing away from the camera
+      if (distanceSquared > MAX_TAG_DISTANCE_METERS * MAX_TAG_DISTANCE_METERS
+          || toCameraX * normalX[tag] + toCameraY * normalY[tag] + toCameraZ * normalZ[tag] <= 0) {
+        continue;
+      }
+
+      double tagXMin = Double.POSITIVE_INFINITY;
+      double tagXMax = Double.NEGATIVE_INFINITY;
+      double tagYMin = Double.POSITIVE_INFINITY;
+      double tagYMax = Double.NEGATIVE_INFINITY;
+      boolean behindCamera = false;
+      for (int corner = 0; corner < 4; corner++) {
+        double dx = cornersX[tag][corner] - cameraX;
+        double dy = cornersY[tag][corner] - cameraY;
+        double dz = cornersZ[tag][corner] - cameraZ;
+        // Camera frame: x forward, y left, z up
+        double forward =
+            rotation.get(0, 0) * dx + rotation.get(1, 0) * dy + rotation.get(2, 0) * dz;
+        double left = rotation.get(0, 1) * dx + rotation.get(1, 1) * dy + rotation.get(2, 1) * dz;
+        double up = rotation.get(0, 2) * dx + rotation.get(1, 2) * dy + rotation.get(2, 2) * dz;
+        if (forward < MIN_DEPTH_METERS) {
+          behindCamera = true;
+          break;
+        }
+        double imageX = -left / forward / tanHalfHorizontalFov;
+        double imageY = up / forward / tanHalfVerticalFov;
+        tagXMin = Math.min(tagXMin, imageX);
+        tagXMax = Math.max(tagXMax, imageX);
+        tagYMin = Math.min(tagYMin, imageY);
+        tagYMax = Math.max(tagYMax, imageY);
+      }
+
+      // Only tags at least partly inside the frame count
+      if (behindCamera || tagXMax < -1 || tagXMin > 1 || tagYMax < -1 || tagYMin > 1) {
+        continue;
+      }
+      visibleTagCount++;
+      predicted[0] = Math.min(predicted[0], tagXMin);
+      predicted[1] = Math.max(predicted[1], tagXMax);
+      predicted[2] = Math.min(predicted[2], tagYMin);
+      predicted[3] = Math.max(predicted[3], tagYMax);
+    }
+  }
+
+  /** Returns the current window as xMin, xMax, yMin, yMax. Do not modify. */
+  public double[] getWindow() {
+    return window;
+  }
+
+  /** Returns whether the current window is the full frame. */
+  public boolean isFullFrame() {
+    return isFullFrame;
+  }
+
+  /** Returns whether the full frame is held after losing the tags while cropped. */
+  public boolean isHoldingFullFrame() {
+    return holdingFullFrame;
+  }
+
+  /** Returns the number of tags predicted in view on the last update, counted once per pose. */
+  public int getVisibleTagCount() {
+    return visibleTagCount;
+  }
+}
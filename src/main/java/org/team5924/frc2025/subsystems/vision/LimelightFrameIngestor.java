@@ -0,0 +1,175 @@
+/*
+ * LimelightFrameIngestor.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.vision;
+
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.TimestampedDoubleArray;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import org.team5924.frc2025.util.FiducialObservation;
+import org.team5924.frc2025.util.LimelightPoseParser;
+import org.team5924.frc2025.util.MegatagPoseEstimate;
+
+/**
+ * Event-driven ingestion of one Limelight's pose estimates. A NetworkTables subscriber queues every
+ * botpose array the camera publishes, and a value listener parses each one on the NetworkTables
+ * listener thread as soon as it arrives. Parsed frames wait in a bounded buffer until the main loop
+ * drains them, so no frame waits for the next loop to be read and none is skipped if two arrive in
+ * the same loop.
+ *
+ * <p>Frames are pooled and decoded in place by {@link LimelightPoseParser}. A drained frame stays
+ * valid until the next call to {@link #drain(List)}, which returns it to the pool.
+ *
+ * <p>When the buffer is full the oldest frame is discarded and counted.
+ */
+public class LimelightFrameIngestor {
+  /** A parsed camera frame, timestamped at capture. Reused after the next drain. */
+  public static final class Frame {
+    private final MegatagPoseEstimate estimate = new MegatagPoseEstimate();
+    private FiducialObservation[] fiducials = new FiducialObservation[0];
+    private int fiducialCount = 0;
+
+    public MegatagPoseEstimate estimate() {
+      return estimate;
+    }
+
+    /** Returns the fiducial pool, only the first {@link #fiducialCount()} are valid. */
+    public FiducialObservation[] fiducials() {
+      return fiducials;
+    }
+
+    public int fiducialCount() {
+      return fiducialCount;
+    }
+
+    private void ensureFiducialCapacity(int count) {
+      if (fiducials.length >= count) return;
+      FiducialObservation[] grown = Arrays.copyOf(fiducials, count);
+      for (int i = fiducials.length; i < count; i++) {
+        grown[i] = new FiducialObservation();
+      }
+      fiducials = grown;
+    }
+  }
+
+  private final DoubleArraySubscriber subscriber;
+  private final boolean isFrontLimelight;
+  private final int capacity;
+
+  private final ArrayDeque<Frame> frames;
+  // Frames free for the listener to fill, and frames lent to the caller by the last drain
+  private final ArrayDeque<Frame> freeFrames;
+  private final ArrayDeque<Frame> lentFrames;
+  private long droppedCount = 0;
+
+  /**
+   * @param limelightName Name of the Limelight's NetworkTables table
+   * @param topicName Botpose topic to subscribe to, such as "botpose_wpiblue"
+   * @param isFrontLimelight Whether the camera faces forward
+   * @param capacity Number of frames held between drains
+   */
+  public LimelightFrameIngestor(
+      String limelightName,
+      String topicName,
+      boolean isFrontLimelight,
+      int capacity) {
+    this.isFrontLimelight = isFrontLimelight;
+    this.capacity = capacity;
+    frames = new ArrayDeque<>(capacity);
+    lentFrames = new ArrayDeque<>(capacity);
+    // Enough for a full buffer plus a full drain still in use by the caller
+    freeFrames = new ArrayDeque<>(2 * capacity);
+    for (int i = 0; i < 2 * capacity; i++) {
+      freeFrames.add(new Frame());
+    }
+
+    NetworkTableInstance instance = NetworkTableInstance.getDefault();
+    subscriber =
+        instance
+            .getTable(limelightName)
+            .getDoubleArrayTopic(topicName)
+            .subscribe(
+                new double[] {},
+                PubSubOption.sendAll(true),
+                PubSubOption.keepDuplicates(true),
+                PubSubOption.pollStorage(capacity));
+    instance.addListener(
+        subscriber, EnumSet.of(NetworkTableEvent.Kind.kValueAll), event -> ingest());
+  }
+
+  /** Parses every queued array. Runs on the NetworkTables listener thread. */
+  private void ingest() {
+    for (TimestampedDoubleArray value : subscriber.readQueue()) {
+      int tagCount = LimelightPoseParser.getTagCount(value.value);
+      if (tagCount == 0) {
+        continue;
+      }
+
+      Frame frame;
+      synchronized (this) {
+        frame = freeFrames.pollFirst();
+        if (frame == null) {
+          // Every pooled frame is buffered or lent out, reuse the oldest buffered one
+          frame = frames.removeFirst();
+          droppedCount++;
+        }
+      }
+
+      // Only the listener thread touches a frame between leaving and rejoining the pool
+      frame.ensureFiducialCapacity(tagCount);
+      frame.fiducialCount =
+          LimelightPoseParser.parse(
+              value.value, value.timestamp, isFrontLimelight, frame.estimate, frame.fiducials);
+
+      synchronized (this) {
+        if (frames.size() == capacity) {
+          freeFrames.addLast(frames.removeFirst());
+          droppedCount++;
+        }
+        frames.addLast(frame);
+      }
+    }
+  }
+
+  /**
+   * Moves every buffered frame into the given list, oldest first. Frames from the previous drain
+   * are returned to the pool and must no longer be used.
+   *
+   * @return The number of frames drained
+   */
+  public synchronized int drain(List<Frame> out) {
+    freeFrames.addAll(lentFrames);
+    lentFrames.clear();
+    int count = frames.size();
+    while (!frames.isEmpty()) {
+      Frame frame = frames.removeFirst();
+      lentFrames.addLast(frame);
+      out.add(frame);
+    }
+    return count;
+  }
+
+  /** Returns the total number of frames discarded because the buffer was full. */
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+}
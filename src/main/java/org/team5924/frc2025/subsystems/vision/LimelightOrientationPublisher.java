@@ -0,0 +1,107 @@
+/*
+ * LimelightOrientationPublisher.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.vision;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import org.team5924.frc2025.Constants.VisionCameraConfig;
+import org.team5924.frc2025.RobotState;
+import org.team5924.frc2025.subsystems.drive.GyroIOPigeon2;
+
+/**
+ * Streams robot yaw and yaw rate to every camera for MegaTag2 straight from the high-rate gyro
+ * samples on the odometry thread, so orientation latency is not bounded by the main loop. Samples
+ * are rate limited against absolute deadlines and published with their sample timestamp. The flush
+ * that pushes them to the cameras runs on a separate low-priority thread, so network writes never
+ * block or delay the odometry thread.
+ */
+public class LimelightOrientationPublisher implements GyroIOPigeon2.YawSampleListener {
+  public static final double DEFAULT_RATE_HZ = 100.0;
+
+  private static volatile boolean active = false;
+
+  private final NetworkTableInstance instance = NetworkTableInstance.getDefault();
+  private final DoubleArrayPublisher[] publishers;
+  private final double periodSeconds;
+  private final double[] orientation = new double[6];
+  private final AtomicBoolean flushPending = new AtomicBoolean(false);
+  private final Thread flushThread = new Thread(this::runFlushLoop);
+
+  private double nextPublishTime = 0.0;
+
+  /**
+   * @param cameras Cameras to publish to
+   * @param rateHz Maximum publish rate, samples beyond it are skipped
+   */
+  public LimelightOrientationPublisher(VisionCameraConfig[] cameras, double rateHz) {
+    periodSeconds = 1.0 / rateHz;
+    publishers = new DoubleArrayPublisher[cameras.length];
+    for (int i = 0; i < cameras.length; i++) {
+      publishers[i] =
+          instance
+              .getTable(cameras[i].limelightName())
+              .getDoubleArrayTopic("robot_orientation_set")
+              .publish();
+    }
+    flushThread.setName("LimelightOrientationFlush");
+    flushThread.setDaemon(true);
+    flushThread.setPriority(Thread.MIN_PRIORITY);
+    flushThread.start();
+    active = true;
+  }
+
+  /** Returns whether orientation is being streamed, so the main loop does not also send it. */
+  public static boolean isActive() {
+    return active;
+  }
+
+  @Override
+  public void onYawSample(double timestampSeconds, double yawDegrees, double yawRateDegreesPerSec) {
+    if (timestampSeconds < nextPublishTime) {
+      return;
+    }
+    // Advance by whole periods to hold the average rate, resyncing after a gap
+    nextPublishTime += periodSeconds;
+    if (nextPublishTime <= timestampSeconds) {
+      nextPublishTime = timestampSeconds + periodSeconds;
+    }
+
+    // Correct raw gyro yaw by the heading offset fused from MegaTag1
+    orientation[0] =
+        yawDegrees + Math.toDegrees(RobotState.getInstance().getHeadingOffsetRad());
+    orientation[1] = yawRateDegreesPerSec;
+    long timestampMicros = (long) (timestampSeconds * 1e6);
+    for (DoubleArrayPublisher publisher : publishers) {
+      publisher.set(orientation, timestampMicros);
+    }
+    // One flush covers every sample published since the last one
+    if (!flushPending.getAndSet(true)) {
+      LockSupport.unpark(flushThread);
+    }
+  }
+
+  private void runFlushLoop() {
+    while (true) {
+      LockSupport.park(this);
+      if (flushPending.getAndSet(false)) {
+        instance.flush();
+      }
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * LimelightSettingsCache.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.vision;
+
+import edu.wpi.first.wpilibj.Timer;
+import java.util.Arrays;
+import org.team5924.frc2025.util.LimelightHelpers;
+
+/**
+ * Write-through cache in front of the {@link LimelightHelpers} setters for one camera. A value is
+ * only written to NetworkTables when it differs from the last value sent, or when it has not been
+ * sent for {@link #KEEP_ALIVE_SECONDS} so a rebooted camera still picks it up.
+ *
+ * <p>Robot orientation is written without flushing. {@link #flushPendingWrites()} sends every
+ * pending orientation in a single flush once per loop, instead of one flush per camera.
+ */
+public class LimelightSettingsCache {
+  public static final double KEEP_ALIVE_SECONDS = 1.0;
+
+  private static boolean flushPending = false;
+
+  private final String limelightName;
+
+  private long writesIssued = 0;
+  private long writesSuppressed = 0;
+
+  private boolean hasPipelineIndex = false;
+  private int pipelineIndex = 0;
+  private double pipelineIndexSentTime = 0.0;
+
+  private boolean hasImuMode = false;
+  private int imuMode = 0;
+  private double imuModeSentTime = 0.0;
+
+  private final double[] cameraPose = new double[6];
+  private boolean hasCameraPose = false;
+  private double cameraPoseSentTime = 0.0;
+
+  private final double[] cropWindow = new double[4];
+  private boolean hasCropWindow = false;
+  private double cropWindowSentTime = 0.0;
+
+  private int[] fiducialIdFilter = null;
+  private double fiducialIdFilterSentTime = 0.0;
+
+  private boolean hasPriorityTagId = false;
+  private int priorityTagId = -1;
+  private double priorityTagIdSentTime = 0.0;
+
+  private boolean hasDownscaling = false;
+  private double downscaling = 0.0;
+  private double downscalingSentTime = 0.0;
+
+  private boolean hasOrientation = false;
+  private double yawDegrees = 0.0;
+  private double yawRateDegreesPerSec = 0.0;
+  private double orientationSentTime = 0.0;
+
+  public LimelightSettingsCache(String limelightName) {
+    this.limelightName = limelightName;
+  }
+
+  /** Sends the flush for every orientation written this loop, if there were any. */
+  public static void flushPendingWrites() {
+    if (flushPending) {
+      LimelightHelpers.Flush();
+      flushPending = false;
+    }
+  }
+
+  public void setPipelineIndex(int index) {
+    double now = Timer.getFPGATimestamp();
+    if (hasPipelineIndex && index == pipelineIndex && !isKeepAliveDue(pipelineIndexSentTime, now)) {
+      writesSuppressed++;
+      return;
+    }
+    LimelightHelpers.setPipelineIndex(limelightName, index);
+    hasPipelineIndex = true;
+    pipelineIndex = index;
+    pipelineIndexSentTime = now;
+    writesIssued++;
+  }
+
+  public void setIMUMode(int mode) {
+    double now = Timer.getFPGATimestamp();
+    if (hasImuMode && mode == imuMode && !isKeepAliveDue(imuModeSentTime, now)) {
+      writesSuppressed++;
+      return;
+    }
+    LimelightHelpers.SetIMUMode(limelightName, mode);
+    hasImuMode = true;
+    imuMode = mode;
+    imuModeSentTime = now;
+    writesIssued++;
+  }
+
+  /** Sets the camera's robot-space pose, offsets in meters and angles in degrees. */
+  public void setCameraPoseRobotSpace(
+      double forward, double side, double up, double roll, double pitch, double yaw) {
+    double now = Timer.getFPGATimestamp();
+    if (hasCameraPose
+        && forward == cameraPose[0]
+        && side == cameraPose[1]
+        && up == cameraPose[2]
+        && roll == cameraPose[3]
+        && pitch == cameraPose[4]
+        && yaw == cameraPose[5]
+        && !isKeepAliveDue(cameraPoseSentTime, now)) {
+      writesSuppressed++;
+      return;
+    }
+    LimelightHelpers.setCameraPose_RobotSpace(limelightName, forward, side, up, roll, pitch, yaw);
+    hasCameraPose = true;
+    cameraPose[0] = forward;
+    cameraPose[1] = side;
+    cameraPose[2] = up;
+    cameraPose[3] = roll;
+    cameraPose[4] = pitch;
+    cameraPose[5] = yaw;
+    cameraPoseSentTime = now;
+    writesIssued++;
+  }
+
+  /** Sets the crop window in normalized coordinates, -1 to 1 on each axis. */
+  public void setCropWindow(double xMin, double xMax, double yMin, double yMax) {
+    double now = Timer.getFPGATimestamp();
+    if (hasCropWindow
+        && xMin == cropWindow[0]
+        && xMax == cropWindow[1]
+        && yMin == cropWindow[2]
+        && yMax == cropWindow[3]
+        && !isKeepAliveDue(cropWindowSentTime, now)) {
+      writesSuppressed++;
+      return;
+    }
+    LimelightHelpers.setCropWindow(limelightName, xMin, xMax, yMin, yMax);
+    hasCropWindow = true;
+    cropWindow[0] = xMin;
+    cropWindow[1] = xMax;
+    cropWindow[2] = yMin;
+    cropWindow[3] = yMax;
+    cropWindowSentTime = now;
+    writesIssued++;
+  }
+
+  /** Sets the tags the detector looks for. The array must not be modified after the call. */
+  public void setFiducialIdFilter(int[] tagIds) {
+    double now = Timer.getFPGATimestamp();
+    if (Arrays.equals(tagIds, fiducialIdFilter)
+        && !isKeepAliveDue(fiducialIdFilterSentTime, now)) {
+      writesSuppressed++;
+      return;
+    }
+    LimelightHelpers.SetFiducialIDFiltersOverride(limelightName, tagIds);
+    fiducialIdFilter = tagIds;
+    fiducialIdFilterSentTime = now;
+    writesIssued++;
+  }
+
+  /** Sets the tag used for targeting, or -1 for none. */
+  public void setPriorityTagId(int id) {
+    double now = Timer.getFPGATimestamp();
+    if (hasPriorityTagId && id == priorityTagId && !isKeepAliveDue(priorityTagIdSentTime, now)) {
+      writesSuppressed++;
+      return;
+    }
+    LimelightHelpers.setPriorityTagID(limelightName, id);
+    hasPriorityTagId = true;
+    priorityTagId = id;
+    priorityTagIdSentTime = now;
+    writesIssued++;
+  }
+
+  /** Sets the detector downscaling factor, or 0 to use the pipeline's setting. */
+  public void setFiducialDownscaling(double downscale) {
+    double now = Timer.getFPGATimestamp();
+    if (hasDownscaling && downscale == downscaling && !isKeepAliveDue(downscalingSentTime, now)) {
+      writesSuppressed++;
+      return;
+    }
+    LimelightHelpers.SetFiducialDownscalingOverride(limelightName, (float) downscale);
+    hasDownscaling = true;
+    downscaling = downscale;
+    downscalingSentTime = now;
+    writesIssued++;
+  }
+
+  /** Sets the robot yaw used by MegaTag2. Sent on the next {@link #flushPendingWrites()}. */
+  public void setRobotOrientation(double yawDegrees, double yawRateDegreesPerSec) {
+    double now = Timer.getFPGATimestamp();
+    if (hasOrientation
+        && yawDegrees == this.yawDegrees
+        && yawRateDegreesPerSec == this.yawRateDegreesPerSec
+        && !isKeepAliveDue(orientationSentTime, now)) {
+      writesSuppressed++;
+      return;
+    }
+    LimelightHelpers.SetRobotOrientation_NoFlush(
+        limelightName, yawDegrees, yawRateDegreesPerSec, 0, 0, 0, 0);
+    hasOrientation = true;
+    this.yawDegrees = yawDegrees;
+    this.yawRateDegreesPerSec = yawRateDegreesPerSec;
+    orientationSentTime = now;
+    writesIssued++;
+    flushPending = true;
+  }
+
+  /** Returns the number of NetworkTables writes sent. */
+  public long getWritesIssued() {
+    return writesIssued;
+  }
+
+  /** Returns the number of writes skipped because the value had not changed. */
+  public long getWritesSuppressed() {
+    return writesSuppressed;
+  }
+
+  private static boolean isKeepAliveDue(double sentTime, double now) {
+    return now - sentTime >= KEEP_ALIVE_SECONDS;
+  }
+}
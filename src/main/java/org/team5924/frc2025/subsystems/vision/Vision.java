@@ -19,25 +19,64 @@ package org.team5924.frc2025.subsystems.vision;
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import java.util.Optional;
+import java.util.function.Function;
 import org.littletonrobotics.junction.Logger;
 import org.team5924.frc2025.Constants;
+import org.team5924.frc2025.Constants.VisionCameraConfig;
 import org.team5924.frc2025.RobotState;
-import org.team5924.frc2025.util.FiducialObservation;
+import org.team5924.frc2025.util.InnovationGate;
+import org.team5924.frc2025.util.LoggedTunableNumber;
 import org.team5924.frc2025.util.MegatagPoseEstimate;
+import org.team5924.frc2025.util.PoseCovarianceTracker;
 import org.team5924.frc2025.util.VisionFieldPoseEstimate;
 
 public class Vision extends SubsystemBase {
   /** Creates a new Vision. */
-  private final VisionIO io;
+  private final VisionCameraConfig[] cameras = Constants.VISION_CAMERAS;
+
+  private static final int[] ALL_TAG_IDS =
+      Constants.field.getTags().stream().mapToInt(tag -> tag.ID).toArray();
+
+  private final VisionIO[] io;
+  private final VisionIOInputsAutoLogged[] inputs;
+  private final String[] logPrefixes;
+
+  private static final double MAX_SINGLE_TAG_AMBIGUITY = 0.2;
+  private static final double MAX_MULTI_TAG_AMBIGUITY = 0.3;
+  private static final double MIN_MULTI_TAG_SPAN_METERS = 0.3;
+  private static final double MAX_MEGATAG1_TAG_DISTANCE_METERS = 4.0;
+  private static final double MEGATAG1_THETA_STD_DEV_SCALE = 0.05;
+  private static final double MIN_MEGATAG1_THETA_STD_DEV = Units.degreesToRadians(2.0);
+  // Large enough that a heading-only measurement has no effect on translation
+  private static final double HEADING_ONLY_XY_STD_DEV = 1e3;
+  private static final double MAX_MEGATAG2_AVG_TAG_DISTANCE_METERS = 3.0;
+
+  // Chi-square thresholds for 1, 2 and 3 degrees of freedom at 95% and 99.9%
+  private static final double[] INNOVATION_DOWNWEIGHT_THRESHOLDS = {3.84, 5.99, 7.81};
+  private static final double[] INNOVATION_REJECT_THRESHOLDS = {10.83, 13.82, 16.27};
+  // Rejections in a row before the gate assumes the estimate, not the camera, is wrong
+  private static final int INNOVATION_MAX_CONSECUTIVE_REJECTS = 10;
+  private static final LoggedTunableNumber innovationThresholdScale =
+      new LoggedTunableNumber("Vision/InnovationThresholdScale", 1.0);
+
+  private final InnovationGate[] innovationGates;
+  private final LimelightCropController[] cropControllers;
+  private final VisionNoiseModel noiseModel =
+      VisionNoiseModel.loadFromDeploy(VisionNoiseModel.DEFAULT_FILE_NAME);
 
   private double lastVisionTimestamp = 0;
-
-  private final VisionIOInputsAutoLogged inputs = new VisionIOInputsAutoLogged();
+  private final double[] lastQueuedTimestamps;
+  private final double[] lastQueuedHeadingTimestamps;
+  private final int[] tagDistanceRejectCounts;
 
   // private final BooleanSubscriber allianceSubscriber =
   //     NetworkTableInstance.getDefault()
@@ -46,33 +85,69 @@ public class Vision extends SubsystemBase {
   //         .subscribe(true);
   // private boolean previousAllianceSubscriberValue = true;
 
-  public Vision(VisionIO io) {
-    this.io = io;
+  /**
+   * Creates one IO per camera in {@link Constants#VISION_CAMERAS}.
+   *
+   * @param ioFactory Creates the IO implementation for a camera
+   */
+  public Vision(Function<VisionCameraConfig, VisionIO> ioFactory) {
+    io = new VisionIO[cameras.length];
+    inputs = new VisionIOInputsAutoLogged[cameras.length];
+    logPrefixes = new String[cameras.length];
+    lastQueuedTimestamps = new double[cameras.length];
+    lastQueuedHeadingTimestamps = new double[cameras.length];
+    tagDistanceRejectCounts = new int[cameras.length];
+    innovationGates = new InnovationGate[cameras.length];
+    cropControllers = new LimelightCropController[cameras.length];
+    for (int i = 0; i < cameras.length; i++) {
+      io[i] = ioFactory.apply(cameras[i]);
+      inputs[i] = new VisionIOInputsAutoLogged();
+      logPrefixes[i] = "Vision/" + cameras[i].name();
+      innovationGates[i] =
+          new InnovationGate(
+              INNOVATION_DOWNWEIGHT_THRESHOLDS,
+              INNOVATION_REJECT_THRESHOLDS,
+              INNOVATION_MAX_CONSECUTIVE_REJECTS);
+      cropControllers[i] =
+          new LimelightCropController(
+              cameras[i],
+              Constants.field,
+              Constants.LIMELIGHT_HORIZONTAL_FOV_DEGREES,
+              Constants.LIMELIGHT_VERTICAL_FOV_DEGREES,
+              Constants.APRIL_TAG_SIZE_METERS);
+    }
   }
 
   @Override
   public void periodic() {
     // This method will be called once per scheduler run
-    io.updateInputs(inputs);
-    Logger.processInputs("Vision", inputs);
-
-    updateVision(
-        inputs.frontLeftLimelightSeesTarget,
-        inputs.frontLeftFiducials,
-        inputs.megatag2PoseEstimateFrontLeft,
-        false);
-
-    updateVision(
-        inputs.frontRightLimelightSeesTarget,
-        inputs.frontRightFiducials,
-        inputs.megatag2PoseEstimateFrontRight,
-        true);
-
-    updateVision(
-        inputs.backLimelightSeesTarget,
-        inputs.backFiducials,
-        inputs.megatag2PoseEstimateBack,
-        false);
+    for (int i = 0; i < cameras.length; i++) {
+      io[i].updateInputs(inputs[i]);
+      Logger.processInputs(logPrefixes[i], inputs[i]);
+    }
+    // Send every camera's orientation together
+    LimelightSettingsCache.flushPendingWrites();
+
+    for (int i = 0; i < cameras.length; i++) {
+      updateVision(i);
+
+      InnovationGate gate = innovationGates[i];
+      Logger.recordOutput(logPrefixes[i] + "/Innovation/AcceptCount", gate.getAcceptCount());
+      Logger.recordOutput(
+          logPrefixes[i] + "/Innovation/DownweightCount", gate.getDownweightCount());
+      Logger.recordOutput(logPrefixes[i] + "/Innovation/RejectCount", gate.getRejectCount());
+      Logger.recordOutput(logPrefixes[i] + "/Innovation/RecoveryCount", gate.getRecoveryCount());
+      Logger.recordOutput(
+          logPrefixes[i] + "/Innovation/ConsecutiveRejects", gate.getConsecutiveRejects());
+      Logger.recordOutput(
+          logPrefixes[i] + "/Innovation/AverageNormalized",
+          gate.getAverageNormalizedInnovation());
+      Logger.recordOutput(
+          logPrefixes[i] + "/Megatag2TagDistanceRejectCount", tagDistanceRejectCounts[i]);
+    }
+
+    updateFiducialFocus();
+    updateCropWindows();
 
     // boolean isRedAlliance = allianceSubscriber.get();
     // if (isRedAlliance != previousAllianceSubscriberValue) {
@@ -81,52 +156,200 @@ public class Vision extends SubsystemBase {
     // }
   }
 
-  private void updateVision(
-      boolean cameraSeesTarget,
-      FiducialObservation[] cameraFiducialObservations,
-      MegatagPoseEstimate megatag2PoseEstimate,
-      Boolean isFrontRightLL) {
-    if (megatag2PoseEstimate != null) {
-      // System.out.println("Megatag2PoseEstimate is not null");
-      boolean filterOut =
-          megatag2PoseEstimate.pose.getX() < -Constants.FIELD_BORDER_MARGIN
-              || megatag2PoseEstimate.pose.getX()
-                  > Constants.FIELD_LENGTH + Constants.FIELD_BORDER_MARGIN
-              || megatag2PoseEstimate.pose.getY() < -Constants.FIELD_BORDER_MARGIN
-              || megatag2PoseEstimate.pose.getY()
-                  > Constants.FIELD_WIDTH + Constants.FIELD_BORDER_MARGIN;
-      if (cameraSeesTarget && !filterOut) {
-        Optional<VisionFieldPoseEstimate> megatag2Estimate =
-            processMegatag2PoseEstimate(megatag2PoseEstimate);
-
-        if (megatag2Estimate.isPresent()) {
-          if (isFrontRightLL) {
-            Logger.recordOutput(
-                "Vision/Front/" + "Megatag2Estimate",
-                megatag2Estimate.get().getVisionRobotPoseMeters());
-            RobotState.getInstance().setEstimatedPoseFrontRight(megatag2Estimate.get());
-          } else if (megatag2PoseEstimate.isFrontLimelight) {
-            Logger.recordOutput(
-                "Vision/Front/" + "Megatag2Estimate",
-                megatag2Estimate.get().getVisionRobotPoseMeters());
-            RobotState.getInstance().setEstimatedPoseFrontLeft(megatag2Estimate.get());
-          } else {
-            Logger.recordOutput(
-                "Vision/Back/" + "Megatag2Estimate",
-                megatag2Estimate.get().getVisionRobotPoseMeters());
-            RobotState.getInstance().setEstimatedPoseBack(megatag2Estimate.get());
-          }
+  /**
+   * Restricts the front cameras to the focus tags in {@link RobotState}, prioritizing the first and
+   * downscaling more the closer it is. The robot scores facing the focus tags, so the other cameras
+   * cannot see them and keep every field tag to stay localized. Reverts to every field tag when
+   * there is no focus.
+   */
+  private void updateFiducialFocus() {
+    int[] focusTagIds = RobotState.getInstance().getVisionFocusTagIds();
+    Optional<Pose3d> focusTagPose =
+        focusTagIds.length > 0 ? Constants.field.getTagPose(focusTagIds[0]) : Optional.empty();
+    if (focusTagPose.isEmpty()) {
+      for (VisionIO cameraIO : io) {
+        cameraIO.setFiducialFocus(ALL_TAG_IDS, -1, 0);
+      }
+      Logger.recordOutput("Vision/FocusDownscale", 0.0);
+      return;
+    }
+
+    double tagDistance =
+        RobotState.getInstance()
+            .getOdometryPose()
+            .getTranslation()
+            .getDistance(focusTagPose.get().toPose2d().getTranslation());
+    double downscale = getFocusDownscale(tagDistance);
+    for (int i = 0; i < cameras.length; i++) {
+      if (cameras[i].isFront()) {
+        io[i].setFiducialFocus(focusTagIds, focusTagIds[0], downscale);
+      } else {
+        io[i].setFiducialFocus(ALL_TAG_IDS, -1, 0);
+      }
+    }
+    Logger.recordOutput("Vision/FocusDownscale", downscale);
+  }
+
+  /** Close tags are large in the image, so they survive more downscaling. */
+  private static double getFocusDownscale(double tagDistanceMeters) {
+    if (tagDistanceMeters < 1.0) {
+      return 3.0;
+    } else if (tagDistanceMeters < 2.0) {
+      return 2.0;
+    } else if (tagDistanceMeters < 3.0) {
+      return 1.5;
+    }
+    return 1.0;
+  }
+
+  /** Crops each camera to the tags predicted in view, using the full frame while disabled. */
+  private void updateCropWindows() {
+    double timestamp = Timer.getFPGATimestamp();
+    Pose2d pose = RobotState.getInstance().getOdometryPose();
+    ChassisSpeeds velocity = RobotState.getInstance().getVelocityAt(timestamp);
+    boolean disabled = DriverStation.isDisabled();
+    for (int i = 0; i < cameras.length; i++) {
+      LimelightCropController controller = cropControllers[i];
+      // While disabled the pose may not be localized yet, so never crop
+      boolean changed =
+          disabled
+              ? controller.setFullFrame()
+              : controller.update(pose, velocity, inputs[i].seesTarget, timestamp);
+      double[] window = controller.getWindow();
+      io[i].setCropWindow(window[0], window[1], window[2], window[3]);
+      Logger.recordOutput(logPrefixes[i] + "/CropWindow", window);
+      Logger.recordOutput(logPrefixes[i] + "/CropWindowChanged", changed);
+      Logger.recordOutput(logPrefixes[i] + "/CropPredictedTags", controller.getVisibleTagCount());
+      Logger.recordOutput(
+          logPrefixes[i] + "/CropHoldingFullFrame", controller.isHoldingFullFrame());
+    }
+  }
+
+  private void updateVision(int cameraIndex) {
+    VisionIOInputsAutoLogged cameraInputs = inputs[cameraIndex];
+    String logPrefix = logPrefixes[cameraIndex];
+
+    // Translation from every MegaTag2 frame received since the last loop, not just the latest
+    int fiducialOffset = 0;
+    for (int i = 0; i < cameraInputs.megatag2Frames.length; i++) {
+      MegatagPoseEstimate megatag2PoseEstimate = cameraInputs.megatag2Frames[i];
+      int fiducialCount = cameraInputs.frameFiducialCounts[i];
+      double lowestAmbiguity = 1;
+      for (int j = fiducialOffset; j < fiducialOffset + fiducialCount; j++) {
+        lowestAmbiguity = Math.min(lowestAmbiguity, cameraInputs.frameFiducials[j].ambiguity);
+      }
+      fiducialOffset += fiducialCount;
+
+      if (isOffField(megatag2PoseEstimate.pose)) {
+        continue;
+      }
+
+      Optional<VisionFieldPoseEstimate> megatag2Estimate =
+          processMegatag2PoseEstimate(megatag2PoseEstimate, lowestAmbiguity, cameraIndex)
+              .flatMap(estimate -> gateEstimate(cameraIndex, estimate));
+
+      if (megatag2Estimate.isPresent()) {
+        Logger.recordOutput(
+            logPrefix + "/Megatag2Estimate", megatag2Estimate.get().getVisionRobotPoseMeters());
+
+        // Every queued estimate is fused, so only queue each camera frame once
+        double timestamp = megatag2Estimate.get().getTimestampSeconds();
+        cropControllers[cameraIndex].onEstimateAccepted(timestamp);
+        if (timestamp > lastQueuedTimestamps[cameraIndex]) {
+          lastQueuedTimestamps[cameraIndex] = timestamp;
+          RobotState.getInstance().getVisionMeasurementQueue().add(megatag2Estimate.get());
         }
       }
     }
+
+    // Heading from MegaTag1 multi-tag frames, which do not depend on the gyro
+    for (int i = 0; i < cameraInputs.megatag1Frames.length; i++) {
+      MegatagPoseEstimate megatag1PoseEstimate = cameraInputs.megatag1Frames[i];
+      if (isOffField(megatag1PoseEstimate.pose)) {
+        continue;
+      }
+
+      Optional<VisionFieldPoseEstimate> headingEstimate =
+          processMegatag1HeadingEstimate(
+                  megatag1PoseEstimate, cameraInputs.megatag1FrameAmbiguities[i], logPrefix)
+              .flatMap(estimate -> gateEstimate(cameraIndex, estimate));
+
+      if (headingEstimate.isPresent()) {
+        Logger.recordOutput(
+            logPrefix + "/Megatag1HeadingEstimate",
+            headingEstimate.get().getVisionRobotPoseMeters().getRotation());
+
+        double timestamp = headingEstimate.get().getTimestampSeconds();
+        if (timestamp > lastQueuedHeadingTimestamps[cameraIndex]) {
+          lastQueuedHeadingTimestamps[cameraIndex] = timestamp;
+          RobotState.getInstance().getVisionMeasurementQueue().add(headingEstimate.get());
+        }
+      }
+    }
+  }
+
+  /**
+   * Gates an estimate on its innovation against the fused pose at capture time, dropping outliers
+   * and inflating the standard deviations of suspicious measurements.
+   */
+  private Optional<VisionFieldPoseEstimate> gateEstimate(
+      int cameraIndex, VisionFieldPoseEstimate estimate) {
+    PoseCovarianceTracker poseCovariance = RobotState.getInstance().getPoseCovariance();
+    if (poseCovariance == null) {
+      return Optional.of(estimate);
+    }
+
+    InnovationGate gate = innovationGates[cameraIndex];
+    InnovationGate.Result result =
+        gate.evaluate(
+            RobotState.getInstance().getPoseAt(estimate.getTimestampSeconds()),
+            poseCovariance,
+            estimate.getVisionRobotPoseMeters(),
+            estimate.getVisionMeasurementStdDevs(),
+            innovationThresholdScale.get());
+
+    String logPrefix = logPrefixes[cameraIndex] + "/Innovation/";
+    Logger.recordOutput(logPrefix + "Result", result);
+    Logger.recordOutput(logPrefix + "MahalanobisSquared", gate.getLastMahalanobisSquared());
+    Logger.recordOutput(logPrefix + "DegreesOfFreedom", gate.getLastDegreesOfFreedom());
+    Logger.recordOutput(logPrefix + "X", gate.getLastInnovation(0));
+    Logger.recordOutput(logPrefix + "Y", gate.getLastInnovation(1));
+    Logger.recordOutput(logPrefix + "Theta", gate.getLastInnovation(2));
+
+    switch (result) {
+      case REJECT:
+        return Optional.empty();
+      case DOWNWEIGHT:
+        return Optional.of(
+            new VisionFieldPoseEstimate(
+                estimate.getVisionRobotPoseMeters(),
+                estimate.getTimestampSeconds(),
+                estimate.getVisionMeasurementStdDevs().times(Math.sqrt(gate.getVarianceScale()))));
+      default:
+        return Optional.of(estimate);
+    }
+  }
+
+  private static boolean isOffField(Pose2d pose) {
+    return pose.getX() < -Constants.FIELD_BORDER_MARGIN
+        || pose.getX() > Constants.FIELD_LENGTH + Constants.FIELD_BORDER_MARGIN
+        || pose.getY() < -Constants.FIELD_BORDER_MARGIN
+        || pose.getY() > Constants.FIELD_WIDTH + Constants.FIELD_BORDER_MARGIN;
   }
 
   private Optional<VisionFieldPoseEstimate> processMegatag2PoseEstimate(
-      MegatagPoseEstimate poseEstimate) {
-    Pose2d loggedRobotPose = RobotState.getInstance().getOdometryPose();
+      MegatagPoseEstimate poseEstimate, double lowestAmbiguity, int cameraIndex) {
+    String logPrefix = logPrefixes[cameraIndex];
+    // Compare against where the robot was when the frame was captured, not where it is now
+    Pose2d loggedRobotPose = RobotState.getInstance().getPoseAt(poseEstimate.timestampSeconds);
     Pose2d measuredPose = poseEstimate.pose;
-    if (poseEstimate.avgTagDist > 3) {
-      System.out.println("Returning optional.empty");
+    if (poseEstimate.avgTagDist > MAX_MEGATAG2_AVG_TAG_DISTANCE_METERS) {
+      tagDistanceRejectCounts[cameraIndex]++;
+      return Optional.empty();
+    }
+
+    // A single ambiguous tag can flip between two solutions
+    if (poseEstimate.tagCount == 1 && lowestAmbiguity > MAX_SINGLE_TAG_AMBIGUITY) {
       return Optional.empty();
     }
 
@@ -136,8 +359,10 @@ public class Vision extends SubsystemBase {
 
     double xyStdDev;
     // if (poseEstimate.fiducialIds.length > 0) {
-    // multiple targets detected
-    if (poseEstimate.fiducialIds.length >= 2 && poseEstimate.avgTagArea > 0.1) {
+    // multiple targets detected, spread far enough apart to constrain the solution
+    if (poseEstimate.tagCount >= 2
+        && poseEstimate.tagSpan >= MIN_MULTI_TAG_SPAN_METERS
+        && poseEstimate.avgTagArea > 0.1) {
 
       xyStdDev = 0.2;
     }
@@ -156,7 +381,7 @@ public class Vision extends SubsystemBase {
     else if (poseEstimate.avgTagArea > 0.1 && poseDelta < 0.3) {
 
       xyStdDev = 1.0;
-    } else if (poseEstimate.fiducialIds.length > 1) {
+    } else if (poseEstimate.tagCount > 1) {
 
       xyStdDev = 1.2;
     } else {
@@ -164,9 +389,22 @@ public class Vision extends SubsystemBase {
       xyStdDev = 2.4;
     }
 
-    Logger.recordOutput("Vision/Front/" + "Megatag2StdDev", xyStdDev);
-    Logger.recordOutput("Vision/Front/" + "Megatag2AvgTagArea", poseEstimate.avgTagArea);
-    Logger.recordOutput("Vision/Front/" + "Megatag2PoseDifference", poseDelta);
+    // Prefer the noise model fitted from logs when this camera has one
+    double modelXYStdDev =
+        noiseModel.getXYStdDev(
+            cameras[cameraIndex].name(),
+            poseEstimate.tagCount,
+            poseEstimate.avgTagDist,
+            poseEstimate.avgTagArea,
+            lowestAmbiguity);
+    if (modelXYStdDev > 0) {
+      xyStdDev = modelXYStdDev;
+    }
+    Logger.recordOutput(logPrefix + "/Megatag2UsesNoiseModel", modelXYStdDev > 0);
+
+    Logger.recordOutput(logPrefix + "/Megatag2StdDev", xyStdDev);
+    Logger.recordOutput(logPrefix + "/Megatag2AvgTagArea", poseEstimate.avgTagArea);
+    Logger.recordOutput(logPrefix + "/Megatag2PoseDifference", poseDelta);
 
     Matrix<N3, N1> visionMeasurementStdDevs =
         VecBuilder.fill(xyStdDev, xyStdDev, Units.degreesToRadians(3600));
@@ -181,58 +419,79 @@ public class Vision extends SubsystemBase {
     // return Optional.empty();
   }
 
-  public MegatagPoseEstimate getBotPose2dBlue() {
-    if (inputs.megatag2PoseEstimateFrontLeft == null && inputs.megatag2PoseEstimateBack == null) {
-      return null;
-    }
-    if (inputs.megatag2PoseEstimateFrontLeft == null) {
-      return inputs.megatag2PoseEstimateBack;
-    }
-    if (inputs.megatag2PoseEstimateBack == null) {
-      return inputs.megatag2PoseEstimateFrontLeft;
-    }
-    if (inputs.lowestTagAmbiguityFrontLeft < inputs.lowestTagAmbiguityBack) {
-      return inputs.megatag2PoseEstimateFrontLeft;
-    } else {
-      return inputs.megatag2PoseEstimateBack;
+  private Optional<VisionFieldPoseEstimate> processMegatag1HeadingEstimate(
+      MegatagPoseEstimate poseEstimate, double highestAmbiguity, String logPrefix) {
+    // Only multi-tag solutions with well spread, unambiguous tags give a trustworthy heading
+    if (poseEstimate.tagCount < 2
+        || poseEstimate.tagSpan < MIN_MULTI_TAG_SPAN_METERS
+        || poseEstimate.avgTagDist > MAX_MEGATAG1_TAG_DISTANCE_METERS
+        || highestAmbiguity > MAX_MULTI_TAG_AMBIGUITY) {
+      return Optional.empty();
     }
-  }
 
-  public double getLatencySecondsFrontLeft() {
-    return inputs.frontLeftAprilTagCaptureLatencySeconds
-        + inputs.frontLeftAprilTagPipelineLatencySeconds;
-  }
+    // Heading error grows with distance and shrinks with the baseline between tags
+    double thetaStdDev =
+        Math.max(
+            MEGATAG1_THETA_STD_DEV_SCALE
+                * poseEstimate.avgTagDist
+                / (poseEstimate.tagSpan * Math.sqrt(poseEstimate.tagCount)),
+            MIN_MEGATAG1_THETA_STD_DEV);
 
-  public double getLatencySecondsBack() {
-    return inputs.backAprilTagCaptureLatencySeconds + inputs.backAprilTagPipelineLatencySeconds;
-  }
+    // MegaTag2 provides translation, so pin translation to odometry at capture time
+    Pose2d loggedRobotPose = RobotState.getInstance().getPoseAt(poseEstimate.timestampSeconds);
+    Pose2d measuredPose =
+        new Pose2d(loggedRobotPose.getTranslation(), poseEstimate.pose.getRotation());
+
+    Logger.recordOutput(logPrefix + "/Megatag1ThetaStdDev", thetaStdDev);
+    Logger.recordOutput(
+        logPrefix + "/Megatag1HeadingDifference",
+        poseEstimate.pose.getRotation().minus(loggedRobotPose.getRotation()).getRadians());
 
-  public double getLatencySecondsFrontRight() {
-    return inputs.frontRightAprilTagCaptureLatencySeconds
-        + inputs.frontRightAprilTagPipelineLatencySeconds;
+    return Optional.of(
+        new VisionFieldPoseEstimate(
+            measuredPose,
+            poseEstimate.timestampSeconds,
+            VecBuilder.fill(HEADING_ONLY_XY_STD_DEV, HEADING_ONLY_XY_STD_DEV, thetaStdDev)));
   }
 
-  public double getLowestTagAmbiguityFrontLeft() {
-    return inputs.lowestTagAmbiguityFrontLeft;
+  /** Returns the number of configured cameras. */
+  public int getCameraCount() {
+    return cameras.length;
   }
 
-  public double getLowestTagAmbiguityBack() {
-    return inputs.lowestTagAmbiguityBack;
+  /**
+   * Returns the index of the camera with a pose estimate and the lowest tag ambiguity, or -1 if no
+   * camera has an estimate.
+   */
+  public int getBestCameraIndex() {
+    int best = -1;
+    for (int i = 0; i < cameras.length; i++) {
+      if (inputs[i].megatag2PoseEstimate != null
+          && (best < 0 || inputs[i].lowestTagAmbiguity < inputs[best].lowestTagAmbiguity)) {
+        best = i;
+      }
+    }
+    return best;
   }
 
-  public double getLowestTagAmbiguityFrontRight() {
-    return inputs.lowestTagAmbiguityFrontRight;
+  /**
+   * Returns the latest MegaTag2 estimate from the best camera, or null if no camera has one. The
+   * estimate belongs to this loop's inputs and is rewritten by the next {@link #periodic()}.
+   */
+  public MegatagPoseEstimate getBotPose2dBlue() {
+    int best = getBestCameraIndex();
+    return best < 0 ? null : inputs[best].megatag2PoseEstimate;
   }
 
-  public int getNumberFiducialsSpottedFrontLeft() {
-    return inputs.frontLeftFiducials.length;
+  public double getLatencySeconds(int cameraIndex) {
+    return inputs[cameraIndex].latencySeconds;
   }
 
-  public int getNumberFiducialsSpottedBack() {
-    return inputs.backFiducials.length;
+  public double getLowestTagAmbiguity(int cameraIndex) {
+    return inputs[cameraIndex].lowestTagAmbiguity;
   }
 
-  public int getNumberFiducialsSpottedFrontRight() {
-    return inputs.frontRightFiducials.length;
+  public int getNumberFiducialsSpotted(int cameraIndex) {
+    return inputs[cameraIndex].fiducials.length;
   }
 }
@@ -21,46 +21,53 @@ import org.littletonrobotics.junction.AutoLog;
 import org.team5924.frc2025.util.FiducialObservation;
 import org.team5924.frc2025.util.MegatagPoseEstimate;
 
-/** Add your docs here. */
+/** Inputs from a single camera. {@link Vision} holds one IO per configured camera. */
 public interface VisionIO {
   @AutoLog
   public static class VisionIOInputs {
-    public boolean frontLeftLimelightSeesTarget = false;
-    public boolean backLimelightSeesTarget = false;
-    public boolean frontRightLimelightSeesTarget = false;
+    // Latest frame received since the last loop
+    public boolean seesTarget = false;
 
-    public FiducialObservation[] frontLeftFiducials = new FiducialObservation[] {};
-    public FiducialObservation[] backFiducials = new FiducialObservation[] {};
-    public FiducialObservation[] frontRightFiducials = new FiducialObservation[] {};
+    public FiducialObservation[] fiducials = new FiducialObservation[] {};
 
-    public MegatagPoseEstimate megatag2PoseEstimateFrontLeft = null;
-    public MegatagPoseEstimate megatag2PoseEstimateBack = null;
-    public MegatagPoseEstimate megatag2PoseEstimateFrontRight = null;
+    public MegatagPoseEstimate megatag2PoseEstimate = null;
 
-    public Pose2d megatag2PoseEstimateFrontLeftPose2d = null;
-    public Pose2d megatag2PoseEstimateBackPose2d = null;
-    public Pose2d megatag2PoseEstimateFrontRightPose2d = null;
-    public int megatag2PoseEstimateFrontLeftTagCount = 0;
-    public int megatag2PoseEstimateBackTagCount = 0;
-    public int megatag2PoseEstimateFrontRightTagCount = 0;
-    public double megatag2PoseEstimateFrontLeftAvgTagArea = 0;
-    public double megatag2PoseEstimateBackAvgTagArea = 0;
-    public double megatag2PoseEstimateFrontRightAvgTagArea = 0;
+    public Pose2d megatag2PoseEstimatePose2d = null;
+    public int megatag2PoseEstimateTagCount = 0;
+    public double megatag2PoseEstimateAvgTagArea = 0;
 
-    public double lowestTagAmbiguityFrontLeft = 1;
-    public double lowestTagAmbiguityBack = 1;
-    public double lowestTagAmbiguityFrontRight = 1;
+    public double lowestTagAmbiguity = 1;
 
-    public double frontLeftAprilTagPipelineLatencySeconds = 0.0;
-    public double frontLeftAprilTagCaptureLatencySeconds = 0.0;
+    public double latencySeconds = 0.0;
+    public double aprilTagPipelineLatencySeconds = 0.0;
+    public double aprilTagCaptureLatencySeconds = 0.0;
 
-    public double backAprilTagPipelineLatencySeconds = 0.0;
-    public double backAprilTagCaptureLatencySeconds = 0.0;
+    // Every frame received since the last loop, oldest first. Fiducials of all frames are
+    // concatenated, with the number belonging to each frame in frameFiducialCounts.
+    public MegatagPoseEstimate[] megatag2Frames = new MegatagPoseEstimate[] {};
+    public FiducialObservation[] frameFiducials = new FiducialObservation[] {};
+    public int[] frameFiducialCounts = new int[] {};
+    public long droppedFrames = 0;
 
-    public double frontRightAprilTagPipelineLatencySeconds = 0.0;
-    public double frontRightAprilTagCaptureLatencySeconds = 0.0;
+    // Every MegaTag1 frame received since the last loop, oldest first, with the highest tag
+    // ambiguity in each frame
+    public MegatagPoseEstimate[] megatag1Frames = new MegatagPoseEstimate[] {};
+    public double[] megatag1FrameAmbiguities = new double[] {};
+    public long droppedMegatag1Frames = 0;
   }
 
   /** Updates the set of loggable inputs. */
   public default void updateInputs(VisionIOInputs inputs) {}
+
+  /** Restricts processing to a window of the image, normalized from -1 to 1 on each axis. */
+  public default void setCropWindow(double xMin, double xMax, double yMin, double yMax) {}
+
+  /**
+   * Restricts detection to a set of tags.
+   *
+   * @param tagIds Tags the camera detects
+   * @param priorityTagId Tag used for targeting, or -1 for none
+   * @param downscale Detector downscaling factor, or 0 to use the pipeline's setting
+   */
+  public default void setFiducialFocus(int[] tagIds, int priorityTagId, double downscale) {}
 }
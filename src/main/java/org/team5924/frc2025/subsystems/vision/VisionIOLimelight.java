@@ -16,208 +16,187 @@
 
 package org.team5924.frc2025.subsystems.vision;
 
+import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import org.littletonrobotics.junction.Logger;
 import org.team5924.frc2025.Constants;
+import org.team5924.frc2025.Constants.VisionCameraConfig;
 import org.team5924.frc2025.RobotState;
 import org.team5924.frc2025.util.FiducialObservation;
 import org.team5924.frc2025.util.LimelightHelpers;
 import org.team5924.frc2025.util.MegatagPoseEstimate;
 
-/** Add your docs here. */
+/** Reads pose estimates from a single Limelight as they arrive over NetworkTables. */
 public class VisionIOLimelight implements VisionIO {
-  public VisionIOLimelight() {
-    LimelightHelpers.SetIMUMode("limelight-frontl", 1);
-    LimelightHelpers.SetIMUMode("limelight-back", 1);
-    LimelightHelpers.SetIMUMode("limelight-frontr", 1);
+  private static final int FRAME_BUFFER_CAPACITY = 16;
+
+  private final VisionCameraConfig camera;
+  private final LimelightFrameIngestor ingestor;
+  private final LimelightFrameIngestor megatag1Ingestor;
+  private final LimelightSettingsCache settings;
+  private final String logPrefix;
+  private final List<LimelightFrameIngestor.Frame> drainedFrames =
+      new ArrayList<>(FRAME_BUFFER_CAPACITY);
+
+  // Inputs hold copies of every estimate and fiducial. Drained frames go back to the ingestor's
+  // pool on the next drain and are refilled on the NetworkTables listener thread, so the inputs
+  // never reference them. The copies are only rewritten here, on the main thread.
+  private MegatagPoseEstimate[] megatag2Copies = new MegatagPoseEstimate[0];
+  private MegatagPoseEstimate[] megatag1Copies = new MegatagPoseEstimate[0];
+  private FiducialObservation[] fiducialCopies = new FiducialObservation[0];
+
+  public VisionIOLimelight(VisionCameraConfig camera) {
+    this.camera = camera;
+    logPrefix = "Vision/" + camera.name() + "/";
+    ingestor =
+        new LimelightFrameIngestor(
+            camera.limelightName(),
+            "botpose_orb_wpiblue",
+            camera.isFront(),
+            FRAME_BUFFER_CAPACITY);
+    megatag1Ingestor =
+        new LimelightFrameIngestor(
+            camera.limelightName(),
+            "botpose_wpiblue",
+            camera.isFront(),
+            FRAME_BUFFER_CAPACITY);
+    settings = new LimelightSettingsCache(camera.limelightName());
+    settings.setIMUMode(1);
 
     RobotState.getInstance().setLimelightImuMode(1);
   }
 
   private void setLLSettings() {
-    LimelightHelpers.setPipelineIndex(
-        "limelight-frontl",
+    settings.setPipelineIndex(
         RobotState.getInstance().isRedAlliance()
             ? Constants.LIMELIGHT_RED_ALLIANCE_PIPELINE
             : Constants.LIMELIGHT_BLUE_ALLIANCE_PIPELINE);
 
-    LimelightHelpers.setPipelineIndex(
-        "limelight-back",
-        RobotState.getInstance().isRedAlliance()
-            ? Constants.LIMELIGHT_RED_ALLIANCE_PIPELINE
-            : Constants.LIMELIGHT_BLUE_ALLIANCE_PIPELINE);
-
-    LimelightHelpers.setPipelineIndex(
-        "limelight-frontr",
-        RobotState.getInstance().isRedAlliance()
-            ? Constants.LIMELIGHT_RED_ALLIANCE_PIPELINE
-            : Constants.LIMELIGHT_BLUE_ALLIANCE_PIPELINE);
-
-    LimelightHelpers.setCameraPose_RobotSpace(
-        "limelight-frontl",
-        Constants.FRONT_LEFT_LIMELIGHT_OFF_FORWARD,
-        Constants.FRONT_LEFT_LIMELIGHT_OFF_SIDE,
-        Constants.FRONT_LEFT_LIMELIGHT_OFF_UP,
-        Constants.FRONT_LEFT_LIMELIGHT_OFF_ROLL,
-        Constants.FRONT_LEFT_LIMELIGHT_OFF_PITCH,
-        Constants.FRONT_LEFT_LIMELIGHT_OFF_YAW);
-
-    LimelightHelpers.setCameraPose_RobotSpace(
-        "limelight-back",
-        Constants.BACK_LIMELIGHT_OFF_FORWARD,
-        Constants.BACK_LIMELIGHT_OFF_SIDE,
-        Constants.BACK_LIMELIGHT_OFF_UP,
-        Constants.BACK_LIMELIGHT_OFF_ROLL,
-        Constants.BACK_LIMELIGHT_OFF_PITCH,
-        Constants.BACK_LIMELIGHT_OFF_YAW);
-
-    LimelightHelpers.setCameraPose_RobotSpace(
-        "limelight-frontr",
-        Constants.FRONT_RIGHT_LIMELIGHT_OFF_FORWARD,
-        Constants.FRONT_RIGHT_LIMELIGHT_OFF_SIDE,
-        Constants.FRONT_RIGHT_LIMELIGHT_OFF_UP,
-        Constants.FRONT_RIGHT_LIMELIGHT_OFF_ROLL,
-        Constants.FRONT_RIGHT_LIMELIGHT_OFF_PITCH,
-        Constants.FRONT_RIGHT_LIMELIGHT_OFF_YAW);
+    settings.setCameraPoseRobotSpace(
+        camera.offForward(),
+        camera.offSide(),
+        camera.offUp(),
+        camera.offRoll(),
+        camera.offPitch(),
+        camera.offYaw());
 
     if (!DriverStation.isDisabled()) {
-      LimelightHelpers.SetIMUMode("limelight-frontl", 2);
-      LimelightHelpers.SetIMUMode("limelight-back", 2);
-      LimelightHelpers.SetIMUMode("limelight-frontr", 2);
+      settings.setIMUMode(2);
 
       RobotState.getInstance().setLimelightImuMode(2);
     }
-    // } else {
-    LimelightHelpers.SetRobotOrientation(
-        "limelight-frontl",
-        RobotState.getInstance().getYawPosition().getDegrees(),
-        RobotState.getInstance().getYawVelocityRadPerSec(),
-        0,
-        0,
-        0,
-        0);
-
-    LimelightHelpers.SetRobotOrientation(
-        "limelight-back",
-        RobotState.getInstance().getYawPosition().getDegrees(),
-        RobotState.getInstance().getYawVelocityRadPerSec(),
-        0,
-        0,
-        0,
-        0);
-    // }
-    LimelightHelpers.SetRobotOrientation(
-        "limelight-frontr",
-        RobotState.getInstance().getYawPosition().getDegrees(),
-        RobotState.getInstance().getYawVelocityRadPerSec(),
-        0,
-        0,
-        0,
-        0);
+
+    // Orientation is normally streamed from the odometry thread, fall back to once per loop
+    if (!LimelightOrientationPublisher.isActive()) {
+      settings.setRobotOrientation(
+          RobotState.getInstance().getYawPosition().getDegrees()
+              + Units.radiansToDegrees(RobotState.getInstance().getHeadingOffsetRad()),
+          Units.radiansToDegrees(RobotState.getInstance().getYawVelocityRadPerSec()));
+    }
+
+    Logger.recordOutput(logPrefix + "NTWritesIssued", settings.getWritesIssued());
+    Logger.recordOutput(logPrefix + "NTWritesSuppressed", settings.getWritesSuppressed());
   }
 
   @Override
   public void updateInputs(VisionIOInputs inputs) {
-    double lowestTagAmbiguityFrontLeft = 1;
-    double lowestTagAmbiguityBack = 1;
-    double lowestTagAmbiguityFrontRight = 1;
-
-    inputs.frontLeftLimelightSeesTarget = LimelightHelpers.getTV("limelight-frontl");
-    inputs.backLimelightSeesTarget = LimelightHelpers.getTV("limelight-back");
-    inputs.frontRightLimelightSeesTarget = LimelightHelpers.getTV("limelight-frontr");
-
-    if (inputs.frontLeftLimelightSeesTarget) {
-      LimelightHelpers.PoseEstimate megatag2FrontLeft =
-          LimelightHelpers.getBotPoseEstimate_wpiBlue("limelight-frontl");
-
-      inputs.megatag2PoseEstimateFrontLeft =
-          MegatagPoseEstimate.fromLimelight(megatag2FrontLeft, true);
-      if (megatag2FrontLeft != null) {
-        inputs.frontLeftFiducials =
-            FiducialObservation.fromLimelight(megatag2FrontLeft.rawFiducials);
-        inputs.megatag2PoseEstimateFrontLeftPose2d = megatag2FrontLeft.pose;
-        inputs.megatag2PoseEstimateFrontLeftTagCount = megatag2FrontLeft.tagCount;
-        inputs.megatag2PoseEstimateFrontLeftAvgTagArea = megatag2FrontLeft.avgTagArea;
-      }
-
-      double FrontLeftDistToCameraTotal = 0.0;
-      for (FiducialObservation rawFiducial : inputs.frontLeftFiducials) {
-        double FrontLeftTagAmbiguity = rawFiducial.ambiguity;
-        if (FrontLeftTagAmbiguity < lowestTagAmbiguityFrontLeft) {
-          lowestTagAmbiguityFrontLeft = FrontLeftTagAmbiguity;
-        }
-
-        FrontLeftDistToCameraTotal += rawFiducial.distance;
-      }
+    drainedFrames.clear();
+    int frameCount = ingestor.drain(drainedFrames);
 
-      inputs.lowestTagAmbiguityFrontLeft = lowestTagAmbiguityFrontLeft;
-      // inputs.frontAprilTagDistance = inputs.frontFiducials[0].distance;
+    int fiducialCount = 0;
+    for (int i = 0; i < frameCount; i++) {
+      fiducialCount += drainedFrames.get(i).fiducialCount();
     }
-
-    if (inputs.backLimelightSeesTarget) {
-      LimelightHelpers.PoseEstimate megatag2Back =
-          LimelightHelpers.getBotPoseEstimate_wpiBlue("limelight-back");
-
-      inputs.megatag2PoseEstimateBack = MegatagPoseEstimate.fromLimelight(megatag2Back, false);
-      if (megatag2Back != null) {
-        inputs.backFiducials = FiducialObservation.fromLimelight(megatag2Back.rawFiducials);
-        inputs.megatag2PoseEstimateBackPose2d = megatag2Back.pose;
-        inputs.megatag2PoseEstimateBackTagCount = megatag2Back.tagCount;
-        inputs.megatag2PoseEstimateBackAvgTagArea = megatag2Back.avgTagArea;
+    megatag2Copies = ensureCapacity(megatag2Copies, frameCount, MegatagPoseEstimate::new);
+    fiducialCopies = ensureCapacity(fiducialCopies, fiducialCount, FiducialObservation::new);
+    inputs.megatag2Frames = new MegatagPoseEstimate[frameCount];
+    inputs.frameFiducials = new FiducialObservation[fiducialCount];
+    inputs.frameFiducialCounts = new int[frameCount];
+    int fiducialIndex = 0;
+    for (int i = 0; i < frameCount; i++) {
+      LimelightFrameIngestor.Frame frame = drainedFrames.get(i);
+      inputs.megatag2Frames[i] = megatag2Copies[i].copyFrom(frame.estimate());
+      inputs.frameFiducialCounts[i] = frame.fiducialCount();
+      for (int j = 0; j < frame.fiducialCount(); j++) {
+        inputs.frameFiducials[fiducialIndex] =
+            fiducialCopies[fiducialIndex].copyFrom(frame.fiducials()[j]);
+        fiducialIndex++;
       }
-
-      for (FiducialObservation rawFiducial : inputs.backFiducials) {
-        double backTagAmbiguity = rawFiducial.ambiguity;
-        if (backTagAmbiguity < lowestTagAmbiguityBack) {
-          lowestTagAmbiguityBack = backTagAmbiguity;
+    }
+    inputs.droppedFrames = ingestor.getDroppedCount();
+    inputs.aprilTagPipelineLatencySeconds =
+        LimelightHelpers.getLatency_Pipeline(camera.limelightName()) / 1000;
+    inputs.aprilTagCaptureLatencySeconds =
+        LimelightHelpers.getLatency_Capture(camera.limelightName()) / 1000;
+
+    // Summarize the latest frame
+    inputs.seesTarget = frameCount > 0;
+    if (inputs.seesTarget) {
+      inputs.megatag2PoseEstimate = inputs.megatag2Frames[frameCount - 1];
+      inputs.fiducials =
+          Arrays.copyOfRange(
+              inputs.frameFiducials,
+              fiducialCount - inputs.frameFiducialCounts[frameCount - 1],
+              fiducialCount);
+      inputs.megatag2PoseEstimatePose2d = inputs.megatag2PoseEstimate.pose;
+      inputs.megatag2PoseEstimateTagCount = inputs.megatag2PoseEstimate.tagCount;
+      inputs.megatag2PoseEstimateAvgTagArea = inputs.megatag2PoseEstimate.avgTagArea;
+      inputs.latencySeconds = inputs.megatag2PoseEstimate.latency / 1000;
+
+      double lowestTagAmbiguity = 1;
+      for (FiducialObservation rawFiducial : inputs.fiducials) {
+        if (rawFiducial.ambiguity < lowestTagAmbiguity) {
+          lowestTagAmbiguity = rawFiducial.ambiguity;
         }
       }
-
-      inputs.lowestTagAmbiguityBack = lowestTagAmbiguityBack;
+      inputs.lowestTagAmbiguity = lowestTagAmbiguity;
+    } else {
+      inputs.megatag2PoseEstimate = null;
     }
 
-    if (inputs.frontRightLimelightSeesTarget) {
-      LimelightHelpers.PoseEstimate megatag2FrontRight =
-          LimelightHelpers.getBotPoseEstimate_wpiBlue("limelight-frontr");
-
-      inputs.megatag2PoseEstimateFrontRight =
-          MegatagPoseEstimate.fromLimelight(megatag2FrontRight, true);
-      if (megatag2FrontRight != null) {
-        inputs.frontRightFiducials =
-            FiducialObservation.fromLimelight(megatag2FrontRight.rawFiducials);
-        inputs.megatag2PoseEstimateFrontRightPose2d = megatag2FrontRight.pose;
-        inputs.megatag2PoseEstimateFrontRightTagCount = megatag2FrontRight.tagCount;
-        inputs.megatag2PoseEstimateFrontRightAvgTagArea = megatag2FrontRight.avgTagArea;
+    // MegaTag1 frames, used by Vision to correct heading
+    drainedFrames.clear();
+    int megatag1Count = megatag1Ingestor.drain(drainedFrames);
+    megatag1Copies = ensureCapacity(megatag1Copies, megatag1Count, MegatagPoseEstimate::new);
+    inputs.megatag1Frames = new MegatagPoseEstimate[megatag1Count];
+    inputs.megatag1FrameAmbiguities = new double[megatag1Count];
+    for (int i = 0; i < megatag1Count; i++) {
+      LimelightFrameIngestor.Frame frame = drainedFrames.get(i);
+      inputs.megatag1Frames[i] = megatag1Copies[i].copyFrom(frame.estimate());
+      double highestAmbiguity = frame.fiducialCount() > 0 ? 0 : 1;
+      for (int j = 0; j < frame.fiducialCount(); j++) {
+        highestAmbiguity = Math.max(highestAmbiguity, frame.fiducials()[j].ambiguity);
       }
-
-      double frontRightDistToCameraTotal = 0.0;
-      for (FiducialObservation rawFiducial : inputs.frontRightFiducials) {
-        double FrontRightTagAmbiguity = rawFiducial.ambiguity;
-        if (FrontRightTagAmbiguity < lowestTagAmbiguityFrontRight) {
-          lowestTagAmbiguityFrontRight = FrontRightTagAmbiguity;
-        }
-
-        frontRightDistToCameraTotal += rawFiducial.distance;
-      }
-
-      inputs.lowestTagAmbiguityFrontRight = lowestTagAmbiguityFrontRight;
-      // inputs.frontAprilTagDistance = inputs.frontFiducials[0].distance;
+      inputs.megatag1FrameAmbiguities[i] = highestAmbiguity;
     }
+    inputs.droppedMegatag1Frames = megatag1Ingestor.getDroppedCount();
 
-    inputs.frontLeftAprilTagPipelineLatencySeconds =
-        LimelightHelpers.getLatency_Pipeline("limelight-frontl") / 1000;
-    inputs.frontLeftAprilTagCaptureLatencySeconds =
-        LimelightHelpers.getLatency_Capture("limelight-frontl") / 1000;
+    setLLSettings();
+  }
 
-    inputs.backAprilTagPipelineLatencySeconds =
-        LimelightHelpers.getLatency_Pipeline(Constants.APRIL_TAG_LIMELIGHT_NAME_BACK) / 1000;
-    inputs.backAprilTagCaptureLatencySeconds =
-        LimelightHelpers.getLatency_Capture(Constants.APRIL_TAG_LIMELIGHT_NAME_BACK) / 1000;
+  @Override
+  public void setCropWindow(double xMin, double xMax, double yMin, double yMax) {
+    settings.setCropWindow(xMin, xMax, yMin, yMax);
+  }
 
-    inputs.frontRightAprilTagPipelineLatencySeconds =
-        LimelightHelpers.getLatency_Pipeline("limelight-frontr") / 1000;
-    inputs.frontRightAprilTagCaptureLatencySeconds =
-        LimelightHelpers.getLatency_Capture("limelight-frontr") / 1000;
+  @Override
+  public void setFiducialFocus(int[] tagIds, int priorityTagId, double downscale) {
+    settings.setFiducialIdFilter(tagIds);
+    settings.setPriorityTagId(priorityTagId);
+    settings.setFiducialDownscaling(downscale);
+  }
 
-    setLLSettings();
+  /** Grows a pool of copies to hold at least the given number. */
+  private static <T> T[] ensureCapacity(T[] pool, int count, Supplier<T> factory) {
+    if (pool.length >= count) return pool;
+    T[] grown = Arrays.copyOf(pool, count);
+    for (int i = pool.length; i < count; i++) {
+      grown[i] = factory.get();
+    }
+    return grown;
   }
 }
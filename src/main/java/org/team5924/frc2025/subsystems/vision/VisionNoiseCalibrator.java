@@ -0,0 +1,349 @@
+/*
+ * VisionNoiseCalibrator.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.vision;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.ejml.simple.SimpleMatrix;
+import org.team5924.frc2025.util.FiducialObservation;
+import org.team5924.frc2025.util.MegatagPoseEstimate;
+
+/**
+ * Offline tool that fits {@link VisionNoiseModel} from WPILOG files. Run with {@code ./gradlew
+ * calibrateVisionNoise -Plogs=<files or directories>}.
+ *
+ * <p>Every MegaTag2 frame logged under {@code Vision/<camera>/Megatag2Frames} is compared against
+ * ground truth from {@code Odometry/WheelOnly}, smoothed with a local linear fit around the frame's
+ * capture time. The log of each axis error is then regressed per camera and tag count bucket onto
+ * the model features by least squares. Log files are parsed in parallel.
+ *
+ * <p>The wheel-only pose is never corrected by vision, so it does not pull the errors toward past
+ * measurements the way the fused pose would. It does drift with distance driven and wheel slip
+ * since the last pose reset, so the fit is best on logs that start from a known pose and avoid
+ * pushing matches.
+ */
+public class VisionNoiseCalibrator {
+  private static final Pattern FRAMES_KEY =
+      Pattern.compile("(?i).*/Vision/([^/]+)/Megatag2Frames$");
+  private static final Pattern FIDUCIALS_KEY =
+      Pattern.compile("(?i).*/Vision/([^/]+)/FrameFiducials$");
+  private static final Pattern FIDUCIAL_COUNTS_KEY =
+      Pattern.compile("(?i).*/Vision/([^/]+)/FrameFiducialCounts$");
+  private static final Pattern ODOMETRY_KEY = Pattern.compile("(?i).*/Odometry/WheelOnly$");
+
+  private static final double SMOOTHING_WINDOW_SECONDS = 0.1;
+  private static final int MIN_SMOOTHING_SAMPLES = 3;
+  private static final int MIN_FIT_SAMPLES = 30;
+  private static final double MIN_ERROR_METERS = 1e-4;
+  // E[ln|z|] for a standard normal z, corrects the regression to estimate ln(stdDev)
+  private static final double LOG_ABS_NORMAL_MEAN = -0.6352;
+  private static final double RIDGE = 1e-6;
+
+  /** One error sample: the model features followed by the log of the absolute axis error. */
+  private record Sample(double[] features, double logError) {}
+
+  /**
+   * Raw camera inputs keyed by log timestamp. Only changed values are logged, so fiducials and
+   * counts are joined to each frame array by the latest value at or before it.
+   */
+  private static class CameraSeries {
+    final TreeMap<Long, MegatagPoseEstimate[]> frames = new TreeMap<>();
+    final TreeMap<Long, FiducialObservation[]> fiducials = new TreeMap<>();
+    final TreeMap<Long, long[]> fiducialCounts = new TreeMap<>();
+  }
+
+  /**
+   * @param args Output CSV path, followed by WPILOG files or directories containing them
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: VisionNoiseCalibrator <output.csv> <log files or directories>");
+      System.exit(1);
+    }
+
+    List<File> logFiles = new ArrayList<>();
+    for (int i = 1; i < args.length; i++) {
+      collectLogFiles(new File(args[i]), logFiles);
+    }
+    System.out.println("Reading " + logFiles.size() + " log files");
+
+    // Samples keyed by camera name then tag count bucket
+    List<Map<String, List<List<Sample>>>> logSamples =
+        logFiles.parallelStream().map(VisionNoiseCalibrator::readLog).toList();
+    Map<String, List<List<Sample>>> samples = new HashMap<>();
+    for (Map<String, List<List<Sample>>> log : logSamples) {
+      log.forEach(
+          (camera, buckets) -> {
+            List<List<Sample>> target = samples.computeIfAbsent(camera, c -> newBuckets());
+            for (int i = 0; i < buckets.size(); i++) {
+              target.get(i).addAll(buckets.get(i));
+            }
+          });
+    }
+
+    try (PrintWriter writer = new PrintWriter(args[0])) {
+      writer.println("# Fitted by VisionNoiseCalibrator from " + logFiles.size() + " logs");
+      writer.println(VisionNoiseModel.HEADER);
+      for (Map.Entry<String, List<List<Sample>>> camera : new TreeMap<>(samples).entrySet()) {
+        for (int bucket = 0; bucket < VisionNoiseModel.TAG_COUNT_BUCKETS; bucket++) {
+          List<Sample> bucketSamples = camera.getValue().get(bucket);
+          if (bucketSamples.size() < MIN_FIT_SAMPLES) {
+            System.out.println(
+                camera.getKey() + " bucket " + bucket + ": too few samples, skipping");
+            continue;
+          }
+          double[] coefficients = fit(bucketSamples);
+          StringBuilder row =
+              new StringBuilder(camera.getKey())
+                  .append(',')
+                  .append(bucket)
+                  .append(',')
+                  .append(bucketSamples.size());
+          for (double coefficient : coefficients) {
+            row.append(',').append(coefficient);
+          }
+          writer.println(row);
+          System.out.println(row);
+        }
+      }
+    }
+  }
+
+  private static void collectLogFiles(File file, List<File> out) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children == null) return;
+      for (File child : children) {
+        collectLogFiles(child, out);
+      }
+    } else if (file.getName().endsWith(".wpilog")) {
+      out.add(file);
+    }
+  }
+
+  private static List<List<Sample>> newBuckets() {
+    List<List<Sample>> buckets = new ArrayList<>();
+    for (int i = 0; i < VisionNoiseModel.TAG_COUNT_BUCKETS; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    return buckets;
+  }
+
+  private static Map<String, List<List<Sample>>> readLog(File file) {
+    DataLogReader reader;
+    try {
+      reader = new DataLogReader(file.getPath());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (!reader.isValid()) {
+      System.err.println("Skipping invalid log " + file);
+      return new HashMap<>();
+    }
+
+    Map<Integer, String> odometryEntries = new HashMap<>();
+    Map<Integer, Matcher> cameraEntries = new HashMap<>();
+    List<double[]> odometry = new ArrayList<>(); // timestamp, x, y
+    Map<String, CameraSeries> series = new HashMap<>();
+
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        DataLogRecord.StartRecordData start = record.getStartData();
+        if (ODOMETRY_KEY.matcher(start.name).matches()) {
+          odometryEntries.put(start.entry, start.name);
+        }
+        for (Pattern pattern : new Pattern[] {FRAMES_KEY, FIDUCIALS_KEY, FIDUCIAL_COUNTS_KEY}) {
+          Matcher matcher = pattern.matcher(start.name);
+          if (matcher.matches()) {
+            cameraEntries.put(start.entry, matcher);
+          }
+        }
+        continue;
+      }
+      if (record.isControl()) continue;
+
+      if (odometryEntries.containsKey(record.getEntry())) {
+        ByteBuffer bb = ByteBuffer.wrap(record.getRaw()).order(ByteOrder.LITTLE_ENDIAN);
+        odometry.add(new double[] {record.getTimestamp() / 1e6, bb.getDouble(), bb.getDouble()});
+        continue;
+      }
+
+      Matcher matcher = cameraEntries.get(record.getEntry());
+      if (matcher == null) continue;
+      CameraSeries camera = series.computeIfAbsent(matcher.group(1), c -> new CameraSeries());
+      long timestamp = record.getTimestamp();
+      if (matcher.pattern() == FRAMES_KEY) {
+        camera.frames.put(
+            timestamp,
+            unpackArray(record.getRaw(), MegatagPoseEstimate.struct.getSize()).stream()
+                .map(MegatagPoseEstimate.struct::unpack)
+                .toArray(MegatagPoseEstimate[]::new));
+      } else if (matcher.pattern() == FIDUCIALS_KEY) {
+        camera.fiducials.put(
+            timestamp,
+            unpackArray(record.getRaw(), FiducialObservation.struct.getSize()).stream()
+                .map(FiducialObservation.struct::unpack)
+                .toArray(FiducialObservation[]::new));
+      } else {
+        camera.fiducialCounts.put(timestamp, record.getIntegerArray());
+      }
+    }
+
+    odometry.sort((a, b) -> Double.compare(a[0], b[0]));
+    Map<String, List<List<Sample>>> samples = new HashMap<>();
+    series.forEach(
+        (camera, cameraSeries) -> {
+          List<List<Sample>> buckets = samples.computeIfAbsent(camera, c -> newBuckets());
+          for (Map.Entry<Long, MegatagPoseEstimate[]> frames : cameraSeries.frames.entrySet()) {
+            Map.Entry<Long, FiducialObservation[]> fiducials =
+                cameraSeries.fiducials.floorEntry(frames.getKey());
+            Map.Entry<Long, long[]> fiducialCounts =
+                cameraSeries.fiducialCounts.floorEntry(frames.getKey());
+            addSamples(
+                frames.getValue(),
+                fiducials != null ? fiducials.getValue() : null,
+                fiducialCounts != null ? fiducialCounts.getValue() : null,
+                odometry,
+                buckets);
+          }
+        });
+    return samples;
+  }
+
+  private static List<ByteBuffer> unpackArray(byte[] raw, int size) {
+    List<ByteBuffer> buffers = new ArrayList<>();
+    for (int offset = 0; offset + size <= raw.length; offset += size) {
+      buffers.add(ByteBuffer.wrap(raw, offset, size).order(ByteOrder.LITTLE_ENDIAN));
+    }
+    return buffers;
+  }
+
+  private static void addSamples(
+      MegatagPoseEstimate[] frames,
+      FiducialObservation[] fiducials,
+      long[] fiducialCounts,
+      List<double[]> odometry,
+      List<List<Sample>> buckets) {
+    boolean hasFiducials =
+        fiducials != null && fiducialCounts != null && fiducialCounts.length == frames.length;
+    int fiducialOffset = 0;
+    for (int i = 0; i < frames.length; i++) {
+      MegatagPoseEstimate frame = frames[i];
+
+      // Same ambiguity Vision uses: the best tag in the frame
+      double ambiguity = 1.0;
+      if (hasFiducials) {
+        int end = Math.min(fiducialOffset + (int) fiducialCounts[i], fiducials.length);
+        for (int j = fiducialOffset; j < end; j++) {
+          ambiguity = Math.min(ambiguity, fiducials[j].ambiguity);
+        }
+        fiducialOffset = end;
+      }
+
+      double[] truth = smoothedPose(odometry, frame.timestampSeconds);
+      if (truth == null || frame.tagCount < 1) continue;
+
+      double[] features = new double[VisionNoiseModel.FEATURE_COUNT];
+      for (int f = 0; f < features.length; f++) {
+        features[f] = VisionNoiseModel.feature(f, frame.avgTagDist, frame.avgTagArea, ambiguity);
+      }
+      List<Sample> bucket = buckets.get(VisionNoiseModel.tagCountBucket(frame.tagCount));
+      for (double error :
+          new double[] {frame.pose.getX() - truth[0], frame.pose.getY() - truth[1]}) {
+        if (Math.abs(error) < MIN_ERROR_METERS) continue;
+        bucket.add(new Sample(features, Math.log(Math.abs(error)) - LOG_ABS_NORMAL_MEAN));
+      }
+    }
+  }
+
+  /** Local linear fit of the odometry around a timestamp, or null without enough samples. */
+  private static double[] smoothedPose(List<double[]> odometry, double timestamp) {
+    int low = 0;
+    int high = odometry.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (odometry.get(mid)[0] < timestamp - SMOOTHING_WINDOW_SECONDS) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    double sumT = 0, sumTT = 0, sumX = 0, sumTX = 0, sumY = 0, sumTY = 0;
+    int n = 0;
+    for (int i = low; i < odometry.size(); i++) {
+      double[] sample = odometry.get(i);
+      double t = sample[0] - timestamp;
+      if (t > SMOOTHING_WINDOW_SECONDS) break;
+      sumT += t;
+      sumTT += t * t;
+      sumX += sample[1];
+      sumTX += t * sample[1];
+      sumY += sample[2];
+      sumTY += t * sample[2];
+      n++;
+    }
+    if (n < MIN_SMOOTHING_SAMPLES) {
+      // Unchanged values are not logged, so a sparse window means the robot was stationary at the
+      // last logged pose
+      int last = low - 1;
+      while (last + 1 < odometry.size() && odometry.get(last + 1)[0] <= timestamp) last++;
+      if (last < 0) return null;
+      return new double[] {odometry.get(last)[1], odometry.get(last)[2]};
+    }
+
+    // Intercept at t = 0 of the least squares line through the window
+    double denominator = n * sumTT - sumT * sumT;
+    if (Math.abs(denominator) < 1e-12) return null;
+    return new double[] {
+      (sumX * sumTT - sumT * sumTX) / denominator, (sumY * sumTT - sumT * sumTY) / denominator
+    };
+  }
+
+  private static double[] fit(List<Sample> samples) {
+    int featureCount = VisionNoiseModel.FEATURE_COUNT;
+    SimpleMatrix normal = SimpleMatrix.identity(featureCount).scale(RIDGE);
+    SimpleMatrix rhs = new SimpleMatrix(featureCount, 1);
+    for (Sample sample : samples) {
+      for (int i = 0; i < featureCount; i++) {
+        for (int j = 0; j < featureCount; j++) {
+          normal.set(i, j, normal.get(i, j) + sample.features()[i] * sample.features()[j]);
+        }
+        rhs.set(i, 0, rhs.get(i, 0) + sample.features()[i] * sample.logError());
+      }
+    }
+    SimpleMatrix solution = normal.solve(rhs);
+    double[] coefficients = new double[featureCount];
+    for (int i = 0; i < featureCount; i++) {
+      coefficients[i] = solution.get(i, 0);
+    }
+    return coefficients;
+  }
+}
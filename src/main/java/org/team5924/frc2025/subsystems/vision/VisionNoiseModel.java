@@ -0,0 +1,136 @@
+/*
+ * VisionNoiseModel.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.vision;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-camera translation noise model fitted offline by {@link VisionNoiseCalibrator}. For each
+ * camera and tag count bucket it stores the coefficients of
+ *
+ * <pre>ln(stdDev) = c0 + c1 * ln(avgTagDist) + c2 * ln(avgTagArea) + c3 * ambiguity</pre>
+ *
+ * <p>The table is a small CSV in the deploy directory, loaded once at boot. Cameras or buckets
+ * without a fitted row return a negative standard deviation so callers can fall back to their own
+ * heuristics.
+ */
+public class VisionNoiseModel {
+  public static final String DEFAULT_FILE_NAME = "vision_noise_model.csv";
+  static final String HEADER = "camera,tagCountBucket,samples,c0,c1,c2,c3";
+
+  // Single tag, two tags, three or more tags
+  static final int TAG_COUNT_BUCKETS = 3;
+  static final int FEATURE_COUNT = 4;
+
+  private static final double MIN_TAG_DIST = 0.1;
+  private static final double MIN_TAG_AREA = 0.01;
+  private static final double MIN_STD_DEV = 0.01;
+  private static final double MAX_STD_DEV = 10.0;
+
+  private final Map<String, double[][]> coefficients;
+
+  VisionNoiseModel(Map<String, double[][]> coefficients) {
+    this.coefficients = coefficients;
+  }
+
+  /** Returns a model with no fitted cameras. */
+  public static VisionNoiseModel empty() {
+    return new VisionNoiseModel(new HashMap<>());
+  }
+
+  /** Loads the model from the deploy directory, or an empty model if the file is missing. */
+  public static VisionNoiseModel loadFromDeploy(String fileName) {
+    File file = new File(Filesystem.getDeployDirectory(), fileName);
+    if (!file.exists()) {
+      return empty();
+    }
+    try {
+      return load(file);
+    } catch (IOException | RuntimeException e) {
+      DriverStation.reportWarning(
+          "Failed to load vision noise model " + fileName + ": " + e.getMessage(), false);
+      return empty();
+    }
+  }
+
+  static VisionNoiseModel load(File file) throws IOException {
+    Map<String, double[][]> coefficients = new HashMap<>();
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#") || line.equals(HEADER)) continue;
+        String[] fields = line.split(",");
+        double[][] cameraCoefficients =
+            coefficients.computeIfAbsent(fields[0], camera -> new double[TAG_COUNT_BUCKETS][]);
+        double[] row = new double[FEATURE_COUNT];
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+          row[i] = Double.parseDouble(fields[3 + i]);
+        }
+        cameraCoefficients[Integer.parseInt(fields[1])] = row;
+      }
+    }
+    return new VisionNoiseModel(coefficients);
+  }
+
+  /** Returns whether any camera has a fitted row. */
+  public boolean isEmpty() {
+    return coefficients.isEmpty();
+  }
+
+  /**
+   * Returns the modelled translation standard deviation in meters, or -1 if the camera and tag
+   * count have no fitted row.
+   */
+  public double getXYStdDev(
+      String camera, int tagCount, double avgTagDist, double avgTagArea, double ambiguity) {
+    double[][] cameraCoefficients = coefficients.get(camera);
+    if (cameraCoefficients == null) return -1;
+    double[] row = cameraCoefficients[tagCountBucket(tagCount)];
+    if (row == null) return -1;
+
+    double logStdDev = 0.0;
+    for (int i = 0; i < FEATURE_COUNT; i++) {
+      logStdDev += row[i] * feature(i, avgTagDist, avgTagArea, ambiguity);
+    }
+    return Math.min(Math.max(Math.exp(logStdDev), MIN_STD_DEV), MAX_STD_DEV);
+  }
+
+  static int tagCountBucket(int tagCount) {
+    return Math.min(Math.max(tagCount, 1), TAG_COUNT_BUCKETS) - 1;
+  }
+
+  static double feature(int index, double avgTagDist, double avgTagArea, double ambiguity) {
+    switch (index) {
+      case 0:
+        return 1.0;
+      case 1:
+        return Math.log(Math.max(avgTagDist, MIN_TAG_DIST));
+      case 2:
+        return Math.log(Math.max(avgTagArea, MIN_TAG_AREA));
+      default:
+        return ambiguity;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * ClockOffsetEstimator.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+/**
+ * Online estimate of the offset between two clocks, used to map timestamps from a source timebase
+ * (such as Phoenix's) into a reference timebase (such as the FPGA).
+ *
+ * <p>Each observation reads the source clock between two reads of the reference clock. Observations
+ * whose bracket is too wide (the reading thread was preempted) are discarded, including the first
+ * one, and the rest are smoothed with an exponential moving average so a single late read does not
+ * shift every timestamp.
+ */
+public class ClockOffsetEstimator {
+  private final double gain;
+  private final double maxBracketSeconds;
+
+  private boolean initialized = false;
+  private double offsetSeconds = 0.0;
+  private long acceptedCount = 0;
+  private long rejectedCount = 0;
+
+  /**
+   * @param gain Weight of each new observation, between 0 and 1
+   * @param maxBracketSeconds Widest reference bracket accepted as an observation
+   */
+  public ClockOffsetEstimator(double gain, double maxBracketSeconds) {
+    this.gain = gain;
+    this.maxBracketSeconds = maxBracketSeconds;
+  }
+
+  /**
+   * Adds a clock observation.
+   *
+   * @param referenceBefore Reference clock read immediately before the source clock
+   * @param sourceTime Source clock reading
+   * @param referenceAfter Reference clock read immediately after the source clock
+   */
+  public void addObservation(double referenceBefore, double sourceTime, double referenceAfter) {
+    double bracket = referenceAfter - referenceBefore;
+    double observedOffset = (referenceBefore + referenceAfter) / 2.0 - sourceTime;
+    if (bracket < 0.0 || bracket > maxBracketSeconds) {
+      rejectedCount++;
+      return;
+    }
+    if (!initialized) {
+      offsetSeconds = observedOffset;
+      initialized = true;
+    } else {
+      offsetSeconds += gain * (observedOffset - offsetSeconds);
+    }
+    acceptedCount++;
+  }
+
+  /** Maps a source clock timestamp into the reference timebase. */
+  public double toReference(double sourceTime) {
+    return sourceTime + offsetSeconds;
+  }
+
+  /** Returns whether at least one observation has been accepted. */
+  public boolean isInitialized() {
+    return initialized;
+  }
+
+  /** Returns the estimated reference minus source offset in seconds. */
+  public double getOffsetSeconds() {
+    return offsetSeconds;
+  }
+
+  /** Returns the number of observations used in the estimate. */
+  public long getAcceptedCount() {
+    return acceptedCount;
+  }
+
+  /** Returns the number of observations discarded for a wide bracket. */
+  public long getRejectedCount() {
+    return rejectedCount;
+  }
+}
@@ -82,6 +82,16 @@ public class FiducialObservation implements StructSerializable {
 
   public FiducialObservation() {}
 
+  /** Copies every field of another observation into this one, returning this observation. */
+  public FiducialObservation copyFrom(FiducialObservation other) {
+    id = other.id;
+    txnc = other.txnc;
+    tync = other.tync;
+    ambiguity = other.ambiguity;
+    distance = other.distance;
+    return this;
+  }
+
   public static FiducialObservation fromLimelight(LimelightHelpers.RawFiducial fiducial) {
     FiducialObservation rv = new FiducialObservation();
     rv.id = fiducial.id;
@@ -0,0 +1,74 @@
+/*
+ * FixedRateScheduler.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a loop at a fixed rate using absolute deadlines. Unlike sleeping for one period after each
+ * iteration, time spent doing work is absorbed into the wait, so the loop does not drift slower
+ * than the requested rate.
+ *
+ * <p>The thread parks until shortly before each deadline and can optionally busy-spin the final
+ * stretch, trading a little CPU for sub-millisecond wakeup accuracy. If an iteration overruns by
+ * more than a full period, the missed ticks are skipped rather than run back to back.
+ */
+public class FixedRateScheduler {
+  private final long periodNanos;
+  private final long spinNanos;
+  private long nextDeadlineNanos = 0;
+  private volatile long overrunCount = 0;
+
+  /**
+   * @param periodSeconds Loop period in seconds
+   * @param spinSeconds Length of the busy-spin tail before each deadline, or 0 to only park
+   */
+  public FixedRateScheduler(double periodSeconds, double spinSeconds) {
+    periodNanos = (long) (periodSeconds * 1e9);
+    spinNanos = (long) (spinSeconds * 1e9);
+  }
+
+  /** Waits until the next tick. The first call starts the schedule one period from now. */
+  public void waitForNextTick() {
+    long now = System.nanoTime();
+    if (nextDeadlineNanos == 0) {
+      nextDeadlineNanos = now + periodNanos;
+    } else if (now - nextDeadlineNanos > periodNanos) {
+      // Fell more than a full period behind, skip the missed ticks
+      overrunCount++;
+      nextDeadlineNanos = now + periodNanos;
+    }
+
+    // Park until the spin window, re-parking after any early wakeup
+    long parkNanos;
+    while ((parkNanos = nextDeadlineNanos - spinNanos - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(parkNanos);
+    }
+
+    // Spin out the remainder for an accurate wakeup
+    while (nextDeadlineNanos - System.nanoTime() > 0) {
+      Thread.onSpinWait();
+    }
+
+    nextDeadlineNanos += periodNanos;
+  }
+
+  /** Returns the number of times the schedule fell a full period behind and skipped ticks. */
+  public long getOverrunCount() {
+    return overrunCount;
+  }
+}
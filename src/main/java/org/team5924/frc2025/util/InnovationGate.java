@@ -0,0 +1,193 @@
+/*
+ * InnovationGate.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * Chi-square gate on the innovation between a measured pose and the predicted pose at the same
+ * time. The squared Mahalanobis distance is computed against the sum of the prediction and
+ * measurement covariances, treated as diagonal, over only the axes the measurement actually
+ * constrains. Measurements past the down-weight threshold have their variance scaled up by how far
+ * past it they are, and measurements past the reject threshold are dropped.
+ *
+ * <p>A run of rejections usually means the estimate itself has drifted or jumped, for example
+ * after a collision, rather than that every measurement is an outlier. Once the configured number
+ * of measurements in a row have been rejected, the next one that would be rejected is down-weighted
+ * instead, with its variance scaled so it lands on the down-weight threshold. The estimate is
+ * pulled toward it and later measurements can pass the gate again.
+ *
+ * <p>Keeps running counts and innovation statistics for logging. One gate per measurement source.
+ */
+public class InnovationGate {
+  public enum Result {
+    ACCEPT,
+    DOWNWEIGHT,
+    REJECT
+  }
+
+  // Axes with a larger measurement standard deviation are treated as unmeasured
+  private static final double UNINFORMATIVE_STD_DEV = 100.0;
+  // Weight of each new sample in the smoothed normalized innovation
+  private static final double STATISTIC_FILTER_GAIN = 0.05;
+
+  private final double[] downweightThresholds;
+  private final double[] rejectThresholds;
+  private final int maxConsecutiveRejects;
+
+  private long acceptCount = 0;
+  private long downweightCount = 0;
+  private long rejectCount = 0;
+  private long recoveryCount = 0;
+  private int consecutiveRejects = 0;
+  private double lastMahalanobisSquared = 0.0;
+  private int lastDegreesOfFreedom = 0;
+  private double varianceScale = 1.0;
+  private double averageNormalizedInnovation = 0.0;
+  private final double[] lastInnovation = new double[3];
+
+  /**
+   * @param downweightThresholds Chi-square thresholds above which measurements are down-weighted,
+   *     indexed by degrees of freedom minus one
+   * @param rejectThresholds Chi-square thresholds above which measurements are rejected, indexed by
+   *     degrees of freedom minus one
+   * @param maxConsecutiveRejects Rejections in a row after which the next rejected measurement is
+   *     down-weighted instead
+   */
+  public InnovationGate(
+      double[] downweightThresholds, double[] rejectThresholds, int maxConsecutiveRejects) {
+    this.downweightThresholds = downweightThresholds;
+    this.rejectThresholds = rejectThresholds;
+    this.maxConsecutiveRejects = maxConsecutiveRejects;
+  }
+
+  /**
+   * Gates a measurement.
+   *
+   * @param predictedPose Estimated pose at the measurement timestamp
+   * @param predictedCovariance Supplies the estimate's variance per axis
+   * @param measuredPose Measured pose
+   * @param measurementStdDevs Measurement standard deviations for x, y and heading
+   * @param thresholdScale Multiplier applied to every threshold
+   * @return Whether to accept, down-weight or reject; see {@link #getVarianceScale()}
+   */
+  public Result evaluate(
+      Pose2d predictedPose,
+      PoseCovarianceTracker predictedCovariance,
+      Pose2d measuredPose,
+      Matrix<N3, N1> measurementStdDevs,
+      double thresholdScale) {
+    lastInnovation[0] = measuredPose.getX() - predictedPose.getX();
+    lastInnovation[1] = measuredPose.getY() - predictedPose.getY();
+    lastInnovation[2] =
+        MathUtil.angleModulus(
+            measuredPose.getRotation().getRadians() - predictedPose.getRotation().getRadians());
+
+    double mahalanobisSquared = 0.0;
+    int degreesOfFreedom = 0;
+    for (int i = 0; i < 3; i++) {
+      double stdDev = measurementStdDevs.get(i, 0);
+      if (stdDev >= UNINFORMATIVE_STD_DEV) continue;
+      double innovationVariance = predictedCovariance.getVariance(i) + stdDev * stdDev;
+      mahalanobisSquared += lastInnovation[i] * lastInnovation[i] / innovationVariance;
+      degreesOfFreedom++;
+    }
+    lastMahalanobisSquared = mahalanobisSquared;
+    lastDegreesOfFreedom = degreesOfFreedom;
+    varianceScale = 1.0;
+
+    if (degreesOfFreedom == 0) {
+      acceptCount++;
+      return Result.ACCEPT;
+    }
+
+    // Normalized by degrees of freedom, averages to about 1 when the noise model is right
+    averageNormalizedInnovation +=
+        STATISTIC_FILTER_GAIN
+            * (mahalanobisSquared / degreesOfFreedom - averageNormalizedInnovation);
+
+    double downweightThreshold = downweightThresholds[degreesOfFreedom - 1] * thresholdScale;
+    double rejectThreshold = rejectThresholds[degreesOfFreedom - 1] * thresholdScale;
+    if (mahalanobisSquared > rejectThreshold) {
+      if (consecutiveRejects < maxConsecutiveRejects) {
+        consecutiveRejects++;
+        rejectCount++;
+        return Result.REJECT;
+      }
+      recoveryCount++;
+    }
+    consecutiveRejects = 0;
+    if (mahalanobisSquared > downweightThreshold) {
+      varianceScale = mahalanobisSquared / downweightThreshold;
+      downweightCount++;
+      return Result.DOWNWEIGHT;
+    }
+    acceptCount++;
+    return Result.ACCEPT;
+  }
+
+  /** Returns the factor to scale measurement variance by after the last down-weighted result. */
+  public double getVarianceScale() {
+    return varianceScale;
+  }
+
+  /** Returns the squared Mahalanobis distance of the last measurement. */
+  public double getLastMahalanobisSquared() {
+    return lastMahalanobisSquared;
+  }
+
+  /** Returns the number of axes the last measurement constrained. */
+  public int getLastDegreesOfFreedom() {
+    return lastDegreesOfFreedom;
+  }
+
+  /** Returns the innovation of the last measurement on the given axis. */
+  public double getLastInnovation(int axis) {
+    return lastInnovation[axis];
+  }
+
+  /** Returns the smoothed squared Mahalanobis distance per degree of freedom. */
+  public double getAverageNormalizedInnovation() {
+    return averageNormalizedInnovation;
+  }
+
+  public long getAcceptCount() {
+    return acceptCount;
+  }
+
+  public long getDownweightCount() {
+    return downweightCount;
+  }
+
+  public long getRejectCount() {
+    return rejectCount;
+  }
+
+  /** Returns the number of measurements down-weighted after a run of rejections. */
+  public long getRecoveryCount() {
+    return recoveryCount;
+  }
+
+  /** Returns the number of measurements rejected in a row, reset by any that pass. */
+  public int getConsecutiveRejects() {
+    return consecutiveRejects;
+  }
+}
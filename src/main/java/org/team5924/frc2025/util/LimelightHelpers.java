@@ -22,6 +22,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -602,7 +603,11 @@ public class LimelightHelpers {
     }
   }
 
-  private static ObjectMapper mapper;
+  // Readers are immutable and thread safe, so one is configured once and shared by every call
+  private static final ObjectReader resultsReader =
+      new ObjectMapper()
+          .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+          .readerFor(LimelightResults.class);
 
   /** Print JSON Parse time to the console in milliseconds */
   static boolean profileJSON = false;
@@ -702,9 +707,19 @@ public class LimelightHelpers {
         LimelightHelpers.getLimelightDoubleArrayEntry(limelightName, entryName);
 
     TimestampedDoubleArray tsValue = poseEntry.getAtomic();
-    double[] poseArray = tsValue.value;
-    long timestamp = tsValue.timestamp;
+    return parseBotPoseEstimate(tsValue.value, tsValue.timestamp, isMegaTag2);
+  }
 
+  /**
+   * Parses a botpose array received from NetworkTables into a PoseEstimate.
+   *
+   * @param poseArray Raw botpose array
+   * @param timestamp NetworkTables timestamp of the array in microseconds
+   * @param isMegaTag2 Whether the array came from a MegaTag2 topic
+   * @return PoseEstimate, or null if the array is empty
+   */
+  public static PoseEstimate parseBotPoseEstimate(
+      double[] poseArray, long timestamp, boolean isMegaTag2) {
     if (poseArray.length == 0) {
       // Handle the case where no data is available
       return null; // or some default PoseEstimate
@@ -1681,16 +1696,22 @@ public class LimelightHelpers {
    * @return LimelightResults object containing all current target data
    */
   public static LimelightResults getLatestResults(String limelightName) {
+    return parseLatestResults(getJSONDump(limelightName));
+  }
 
+  /**
+   * Parses a JSON results dump into a full LimelightResults object graph. For only fiducials and
+   * detector results, {@link LimelightResultsParser} is much cheaper.
+   *
+   * @param json JSON results dump, as from {@link #getJSONDump(String)}
+   * @return LimelightResults object, with error set if the JSON could not be parsed
+   */
+  public static LimelightResults parseLatestResults(String json) {
     long start = System.nanoTime();
     LimelightHelpers.LimelightResults results = new LimelightHelpers.LimelightResults();
-    if (mapper == null) {
-      mapper =
-          new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    }
 
     try {
-      results = mapper.readValue(getJSONDump(limelightName), LimelightResults.class);
+      results = resultsReader.readValue(json);
     } catch (JsonProcessingException e) {
       results.error = "lljson error: " + e.getMessage();
     }
@@ -0,0 +1,93 @@
+/*
+ * LimelightPoseParser.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Decodes Limelight botpose arrays straight into caller-owned {@link MegatagPoseEstimate} and
+ * {@link FiducialObservation} objects, without the intermediate {@link
+ * LimelightHelpers.PoseEstimate} and {@link LimelightHelpers.RawFiducial} objects that {@link
+ * LimelightHelpers#parseBotPoseEstimate(double[], long, boolean)} allocates on every call. The only
+ * allocation per frame is the immutable {@link Pose2d}.
+ *
+ * <p>The array layout matches {@link LimelightHelpers}: x, y, z, roll, pitch, yaw (degrees),
+ * latency (ms), tag count, tag span, average distance, average area, then seven values per tag.
+ */
+public final class LimelightPoseParser {
+  private static final int HEADER_LENGTH = 11;
+  private static final int VALUES_PER_FIDUCIAL = 7;
+
+  private LimelightPoseParser() {}
+
+  /** Returns the tag count encoded in a botpose array, or 0 if the array is too short. */
+  public static int getTagCount(double[] poseArray) {
+    return poseArray.length >= HEADER_LENGTH ? (int) poseArray[7] : 0;
+  }
+
+  /**
+   * Decodes a botpose array.
+   *
+   * @param poseArray Raw botpose array
+   * @param timestampMicros NetworkTables timestamp of the array in microseconds
+   * @param isFrontLimelight Whether the camera faces forward
+   * @param out Estimate to overwrite
+   * @param fiducialsOut Observations to overwrite, at least {@link #getTagCount(double[])} long,
+   *     every element non-null
+   * @return The number of fiducials decoded, or -1 if the array holds no estimate. Fiducials are
+   *     only decoded when the array length matches the tag count.
+   */
+  public static int parse(
+      double[] poseArray,
+      long timestampMicros,
+      boolean isFrontLimelight,
+      MegatagPoseEstimate out,
+      FiducialObservation[] fiducialsOut) {
+    if (poseArray.length < HEADER_LENGTH) {
+      return -1;
+    }
+
+    int tagCount = (int) poseArray[7];
+    out.pose = new Pose2d(poseArray[0], poseArray[1], Rotation2d.fromDegrees(poseArray[5]));
+    out.latency = poseArray[6];
+    out.tagCount = tagCount;
+    out.tagSpan = poseArray[8];
+    out.avgTagDist = poseArray[9];
+    out.avgTagArea = poseArray[10];
+    out.isFrontLimelight = isFrontLimelight;
+    // Convert server timestamp from microseconds to seconds and adjust for latency
+    out.timestampSeconds = (timestampMicros / 1000000.0) - (out.latency / 1000.0);
+
+    int fiducialCount =
+        poseArray.length == HEADER_LENGTH + VALUES_PER_FIDUCIAL * tagCount ? tagCount : 0;
+    if (out.fiducialIds == null || out.fiducialIds.length != fiducialCount) {
+      out.fiducialIds = new int[fiducialCount];
+    }
+    for (int i = 0; i < fiducialCount; i++) {
+      int baseIndex = HEADER_LENGTH + i * VALUES_PER_FIDUCIAL;
+      FiducialObservation fiducial = fiducialsOut[i];
+      fiducial.id = (int) poseArray[baseIndex];
+      fiducial.txnc = poseArray[baseIndex + 1];
+      fiducial.tync = poseArray[baseIndex + 2];
+      fiducial.distance = poseArray[baseIndex + 4];
+      fiducial.ambiguity = poseArray[baseIndex + 6];
+      out.fiducialIds[i] = fiducial.id;
+    }
+    return fiducialCount;
+  }
+}
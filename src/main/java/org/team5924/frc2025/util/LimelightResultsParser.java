@@ -0,0 +1,231 @@
+/*
+ * LimelightResultsParser.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for Limelight JSON results dumps that extracts only the fiducial and neural
+ * detector targets into a reusable {@link Results}, instead of building the full {@link
+ * LimelightHelpers.LimelightResults} object graph. Every other field is skipped without being
+ * decoded.
+ *
+ * <p>Not thread safe; each caller should own its {@link Results}.
+ */
+public final class LimelightResultsParser {
+  // Factories are thread safe and expensive to build
+  private static final JsonFactory factory = new JsonFactory();
+
+  private LimelightResultsParser() {}
+
+  /** Parsed targets, stored in primitive arrays that grow as needed and are reused across parses. */
+  public static final class Results {
+    public boolean valid;
+    public double pipelineIndex;
+    public double latencyPipelineMs;
+    public double latencyCaptureMs;
+    public double timestampLimelightPublishMs;
+    public double latencyParseMs;
+    public String error;
+
+    public int fiducialCount;
+    public int[] fiducialIds = new int[8];
+    public double[] fiducialTx = new double[8];
+    public double[] fiducialTy = new double[8];
+    public double[] fiducialTa = new double[8];
+
+    public int detectionCount;
+    public int[] detectionClassIds = new int[8];
+    public double[] detectionConfidences = new double[8];
+    public double[] detectionTx = new double[8];
+    public double[] detectionTy = new double[8];
+    public double[] detectionTa = new double[8];
+
+    private void clear() {
+      valid = false;
+      pipelineIndex = 0;
+      latencyPipelineMs = 0;
+      latencyCaptureMs = 0;
+      timestampLimelightPublishMs = 0;
+      error = null;
+      fiducialCount = 0;
+      detectionCount = 0;
+    }
+
+    private void ensureFiducialCapacity(int count) {
+      if (fiducialIds.length >= count) return;
+      int capacity = Math.max(count, fiducialIds.length * 2);
+      fiducialIds = Arrays.copyOf(fiducialIds, capacity);
+      fiducialTx = Arrays.copyOf(fiducialTx, capacity);
+      fiducialTy = Arrays.copyOf(fiducialTy, capacity);
+      fiducialTa = Arrays.copyOf(fiducialTa, capacity);
+    }
+
+    private void ensureDetectionCapacity(int count) {
+      if (detectionClassIds.length >= count) return;
+      int capacity = Math.max(count, detectionClassIds.length * 2);
+      detectionClassIds = Arrays.copyOf(detectionClassIds, capacity);
+      detectionConfidences = Arrays.copyOf(detectionConfidences, capacity);
+      detectionTx = Arrays.copyOf(detectionTx, capacity);
+      detectionTy = Arrays.copyOf(detectionTy, capacity);
+      detectionTa = Arrays.copyOf(detectionTa, capacity);
+    }
+  }
+
+  /**
+   * Reads and parses the latest results dump from a Limelight.
+   *
+   * @return Whether the dump was parsed; on failure {@link Results#error} is set
+   */
+  public static boolean parseLatest(String limelightName, Results out) {
+    return parse(LimelightHelpers.getJSONDump(limelightName), out);
+  }
+
+  /**
+   * Parses a JSON results dump.
+   *
+   * @return Whether the dump was parsed; on failure {@link Results#error} is set
+   */
+  public static boolean parse(String json, Results out) {
+    long start = System.nanoTime();
+    out.clear();
+    try (JsonParser parser = factory.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        out.error = "lljson error: expected object";
+        return false;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        JsonToken value = parser.nextToken();
+        switch (field) {
+          case "v":
+            out.valid = value == JsonToken.VALUE_TRUE || parser.getValueAsInt() != 0;
+            break;
+          case "pID":
+            out.pipelineIndex = parser.getValueAsDouble();
+            break;
+          case "tl":
+            out.latencyPipelineMs = parser.getValueAsDouble();
+            break;
+          case "cl":
+            out.latencyCaptureMs = parser.getValueAsDouble();
+            break;
+          case "ts":
+            out.timestampLimelightPublishMs = parser.getValueAsDouble();
+            break;
+          case "Fiducial":
+            parseFiducials(parser, out);
+            break;
+          case "Detector":
+            parseDetections(parser, out);
+            break;
+          default:
+            parser.skipChildren();
+            break;
+        }
+      }
+    } catch (IOException e) {
+      out.error = "lljson error: " + e.getMessage();
+      return false;
+    } finally {
+      out.latencyParseMs = (System.nanoTime() - start) * .000001;
+    }
+    return true;
+  }
+
+  private static void parseFiducials(JsonParser parser, Results out) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      int index = out.fiducialCount;
+      out.ensureFiducialCapacity(index + 1);
+      out.fiducialIds[index] = 0;
+      out.fiducialTx[index] = 0;
+      out.fiducialTy[index] = 0;
+      out.fiducialTa[index] = 0;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        switch (field) {
+          case "fID":
+            out.fiducialIds[index] = parser.getValueAsInt();
+            break;
+          case "tx":
+            out.fiducialTx[index] = parser.getValueAsDouble();
+            break;
+          case "ty":
+            out.fiducialTy[index] = parser.getValueAsDouble();
+            break;
+          case "ta":
+            out.fiducialTa[index] = parser.getValueAsDouble();
+            break;
+          default:
+            parser.skipChildren();
+            break;
+        }
+      }
+      out.fiducialCount++;
+    }
+  }
+
+  private static void parseDetections(JsonParser parser, Results out) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      int index = out.detectionCount;
+      out.ensureDetectionCapacity(index + 1);
+      out.detectionClassIds[index] = 0;
+      out.detectionConfidences[index] = 0;
+      out.detectionTx[index] = 0;
+      out.detectionTy[index] = 0;
+      out.detectionTa[index] = 0;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        switch (field) {
+          case "classID":
+            out.detectionClassIds[index] = parser.getValueAsInt();
+            break;
+          case "conf":
+            out.detectionConfidences[index] = parser.getValueAsDouble();
+            break;
+          case "tx":
+            out.detectionTx[index] = parser.getValueAsDouble();
+            break;
+          case "ty":
+            out.detectionTy[index] = parser.getValueAsDouble();
+            break;
+          case "ta":
+            out.detectionTa[index] = parser.getValueAsDouble();
+            break;
+          default:
+            parser.skipChildren();
+            break;
+        }
+      }
+      out.detectionCount++;
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package org.team5924.frc2025.util;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
@@ -46,4 +47,36 @@ public class MathHelpers {
   public static final Transform2d transform2dFromTranslation(Translation2d translation) {
     return new Transform2d(translation, kRotation2dZero);
   }
+
+  /**
+   * Estimates a value at time t from two timestamped samples. Extrapolation past either sample is
+   * limited to one sample period; if the samples share a timestamp the newer value is returned.
+   */
+  public static final double interpolateSample(
+      double t0, double value0, double t1, double value1, double t) {
+    double period = t1 - t0;
+    if (period <= 1e-9) {
+      return value1;
+    }
+    double fraction = MathUtil.clamp((t - t0) / period, -1.0, 2.0);
+    return value0 + (value1 - value0) * fraction;
+  }
+
+  /** Same as {@link #interpolateSample}, but for angles in radians, taking the shortest path. */
+  public static final double interpolateAngleSample(
+      double t0, double angle0, double t1, double angle1, double t) {
+    return interpolateSample(t0, 0.0, t1, MathUtil.angleModulus(angle1 - angle0), t) + angle0;
+  }
+
+  /**
+   * Same as {@link #interpolateAngleSample}, but returns the newer rotation itself when the
+   * interpolated angle is within the tolerance of it, so a new Rotation2d is only built when the
+   * angle is changing quickly.
+   */
+  public static final Rotation2d interpolateRotationSample(
+      double t0, double angle0, double t1, Rotation2d angle1, double t, double toleranceRad) {
+    double angle1Rad = angle1.getRadians();
+    double angle = interpolateAngleSample(t0, angle0, t1, angle1Rad, t);
+    return Math.abs(angle - angle1Rad) <= toleranceRad ? angle1 : new Rotation2d(angle);
+  }
 }
@@ -105,6 +105,27 @@ public class MegatagPoseEstimate implements StructSerializable {
 
   public MegatagPoseEstimate() {}
 
+  /** Copies every field of another estimate into this one, returning this estimate. */
+  public MegatagPoseEstimate copyFrom(MegatagPoseEstimate other) {
+    pose = other.pose;
+    timestampSeconds = other.timestampSeconds;
+    latency = other.latency;
+    tagCount = other.tagCount;
+    tagSpan = other.tagSpan;
+    avgTagDist = other.avgTagDist;
+    avgTagArea = other.avgTagArea;
+    isFrontLimelight = other.isFrontLimelight;
+    if (other.fiducialIds == null) {
+      fiducialIds = null;
+    } else {
+      if (fiducialIds == null || fiducialIds.length != other.fiducialIds.length) {
+        fiducialIds = new int[other.fiducialIds.length];
+      }
+      System.arraycopy(other.fiducialIds, 0, fiducialIds, 0, fiducialIds.length);
+    }
+    return this;
+  }
+
   public static MegatagPoseEstimate fromLimelight(
       LimelightHelpers.PoseEstimate poseEstimate, boolean isFrontLimelight) {
     if (poseEstimate == null) {
@@ -21,6 +21,7 @@ import com.pathplanner.lib.path.PathConstraints;
 import com.pathplanner.lib.path.PathPlannerPath;
 import com.pathplanner.lib.path.RotationTarget;
 import com.pathplanner.lib.path.Waypoint;
+import edu.wpi.first.apriltag.AprilTag;
 import edu.wpi.first.math.geometry.Pose2d;
 import java.util.ArrayList;
 import java.util.List;
@@ -28,6 +29,8 @@ import org.team5924.frc2025.Constants;
 
 /** Add your docs here. */
 public class Pathing {
+  private static final double MAX_REEF_TAG_DISTANCE_METERS = 1.5;
+
   public static List<Pose2d> getClosestPose(Pose2d currentPose, boolean isLeftTarget) {
     // Optional<Alliance> alliance = DriverStation.getAlliance();
     List<List<Pose2d>> rightAllianceBranchPairs =
@@ -60,6 +63,24 @@ public class Pathing {
     }
   }
 
+  /**
+   * Returns the ID of the tag nearest a reef scoring pose, or -1 if no tag is within {@link
+   * #MAX_REEF_TAG_DISTANCE_METERS}.
+   */
+  public static int getReefTagId(Pose2d targetPose) {
+    int nearestId = -1;
+    double nearestDistance = MAX_REEF_TAG_DISTANCE_METERS;
+    for (AprilTag tag : Constants.field.getTags()) {
+      double distance =
+          tag.pose.toPose2d().getTranslation().getDistance(targetPose.getTranslation());
+      if (distance < nearestDistance) {
+        nearestDistance = distance;
+        nearestId = tag.ID;
+      }
+    }
+    return nearestId;
+  }
+
   // creates a path with a single waypoint which is the destination
   public static PathPlannerPath createPath(Pose2d currentPose, List<Pose2d> destinationPoses) {
     List<Waypoint> waypoints =
@@ -0,0 +1,107 @@
+/*
+ * PoseCovarianceTracker.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * Approximate diagonal covariance of the fused pose estimate. WPILib's pose estimator uses a fixed
+ * gain and does not expose a covariance, so this tracks one alongside it: variance grows with
+ * odometry travel and elapsed time, and shrinks with each fused vision measurement by the scalar
+ * Kalman update for that axis.
+ *
+ * <p>Not thread safe, intended to be written by the drive and read by vision on the main loop.
+ */
+public class PoseCovarianceTracker {
+  private final double xyVariancePerMeter;
+  private final double thetaVariancePerRad;
+  private final double xyVariancePerSecond;
+  private final double thetaVariancePerSecond;
+  private final double minXYVariance;
+  private final double minThetaVariance;
+
+  // x, y, theta
+  private final double[] variance = new double[3];
+
+  /**
+   * @param xyStdDevPerSqrtMeter Translation drift, as standard deviation per square root meter
+   *     travelled
+   * @param thetaStdDevPerSqrtRad Heading drift, as standard deviation per square root radian turned
+   * @param xyStdDevPerSqrtSecond Translation drift while stationary, per square root second
+   * @param thetaStdDevPerSqrtSecond Heading drift while stationary, per square root second
+   * @param minXYStdDev Smallest translation standard deviation vision can drive the estimate to
+   * @param minThetaStdDev Smallest heading standard deviation vision can drive the estimate to
+   * @param initialXYStdDev Translation standard deviation before any reset or measurement
+   * @param initialThetaStdDev Heading standard deviation before any reset or measurement
+   */
+  public PoseCovarianceTracker(
+      double xyStdDevPerSqrtMeter,
+      double thetaStdDevPerSqrtRad,
+      double xyStdDevPerSqrtSecond,
+      double thetaStdDevPerSqrtSecond,
+      double minXYStdDev,
+      double minThetaStdDev,
+      double initialXYStdDev,
+      double initialThetaStdDev) {
+    xyVariancePerMeter = xyStdDevPerSqrtMeter * xyStdDevPerSqrtMeter;
+    thetaVariancePerRad = thetaStdDevPerSqrtRad * thetaStdDevPerSqrtRad;
+    xyVariancePerSecond = xyStdDevPerSqrtSecond * xyStdDevPerSqrtSecond;
+    thetaVariancePerSecond = thetaStdDevPerSqrtSecond * thetaStdDevPerSqrtSecond;
+    minXYVariance = minXYStdDev * minXYStdDev;
+    minThetaVariance = minThetaStdDev * minThetaStdDev;
+    reset(initialXYStdDev, initialThetaStdDev);
+  }
+
+  /** Sets the covariance to the given standard deviations, such as after a pose reset. */
+  public void reset(double xyStdDev, double thetaStdDev) {
+    variance[0] = xyStdDev * xyStdDev;
+    variance[1] = xyStdDev * xyStdDev;
+    variance[2] = thetaStdDev * thetaStdDev;
+  }
+
+  /**
+   * Grows the covariance for one odometry step.
+   *
+   * @param distanceMeters Distance travelled during the step
+   * @param rotationRad Absolute heading change during the step
+   * @param dtSeconds Duration of the step
+   */
+  public void predict(double distanceMeters, double rotationRad, double dtSeconds) {
+    double xyGrowth = xyVariancePerMeter * distanceMeters + xyVariancePerSecond * dtSeconds;
+    variance[0] += xyGrowth;
+    variance[1] += xyGrowth;
+    variance[2] += thetaVariancePerRad * rotationRad + thetaVariancePerSecond * dtSeconds;
+  }
+
+  /** Shrinks the covariance for a fused measurement with the given standard deviations. */
+  public void correct(Matrix<N3, N1> measurementStdDevs) {
+    for (int i = 0; i < 3; i++) {
+      double measurementVariance = measurementStdDevs.get(i, 0) * measurementStdDevs.get(i, 0);
+      variance[i] = variance[i] * measurementVariance / (variance[i] + measurementVariance);
+    }
+    variance[0] = Math.max(variance[0], minXYVariance);
+    variance[1] = Math.max(variance[1], minXYVariance);
+    variance[2] = Math.max(variance[2], minThetaVariance);
+  }
+
+  /** Returns the variance of the given axis, 0 for x, 1 for y and 2 for heading. */
+  public double getVariance(int axis) {
+    return variance[axis];
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * PoseHistory.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import java.util.Optional;
+
+/**
+ * Fixed-capacity history of timestamped robot poses and field-relative velocities, stored in
+ * primitive ring buffers so recording at odometry rate never allocates. Lookups binary search the
+ * timestamps and interpolate between the two neighbouring samples.
+ *
+ * <p>Samples must be added in increasing timestamp order; out of order samples are ignored. Not
+ * thread safe, intended to be written and read from the main loop.
+ */
+public class PoseHistory {
+  private final int capacity;
+  private final double[] timestamps;
+  private final double[] xMeters;
+  private final double[] yMeters;
+  private final double[] thetaRad;
+  private final double[] vxMetersPerSec;
+  private final double[] vyMetersPerSec;
+  private final double[] omegaRadPerSec;
+
+  private int head = 0; // Index of the oldest sample
+  private int size = 0;
+
+  /**
+   * @param capacity Number of samples retained, oldest samples are overwritten first
+   */
+  public PoseHistory(int capacity) {
+    this.capacity = capacity;
+    timestamps = new double[capacity];
+    xMeters = new double[capacity];
+    yMeters = new double[capacity];
+    thetaRad = new double[capacity];
+    vxMetersPerSec = new double[capacity];
+    vyMetersPerSec = new double[capacity];
+    omegaRadPerSec = new double[capacity];
+  }
+
+  /**
+   * Records a sample.
+   *
+   * @param timestampSeconds FPGA timestamp of the sample
+   * @param pose Robot pose at the timestamp
+   * @param vxMetersPerSec Field-relative x velocity
+   * @param vyMetersPerSec Field-relative y velocity
+   * @param omegaRadPerSec Angular velocity
+   */
+  public void addSample(
+      double timestampSeconds,
+      Pose2d pose,
+      double vxMetersPerSec,
+      double vyMetersPerSec,
+      double omegaRadPerSec) {
+    if (size > 0 && timestampSeconds <= timestamps[index(size - 1)]) {
+      return;
+    }
+    int slot;
+    if (size < capacity) {
+      slot = index(size);
+      size++;
+    } else {
+      slot = head;
+      head = (head + 1) % capacity;
+    }
+    timestamps[slot] = timestampSeconds;
+    xMeters[slot] = pose.getX();
+    yMeters[slot] = pose.getY();
+    thetaRad[slot] = pose.getRotation().getRadians();
+    this.vxMetersPerSec[slot] = vxMetersPerSec;
+    this.vyMetersPerSec[slot] = vyMetersPerSec;
+    this.omegaRadPerSec[slot] = omegaRadPerSec;
+  }
+
+  /** Removes every sample, such as after the pose is reset. */
+  public void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  /** Returns the number of samples held. */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the interpolated pose at the given timestamp. Timestamps newer than the latest sample
+   * return the latest pose, and timestamps older than the history return empty.
+   */
+  public Optional<Pose2d> getPoseAt(double timestampSeconds) {
+    int lower = findLowerSample(timestampSeconds);
+    if (lower < 0) {
+      return Optional.empty();
+    }
+    int a = index(lower);
+    int b = lower == size - 1 ? a : index(lower + 1);
+    double t = fraction(a, b, timestampSeconds);
+    return Optional.of(
+        new Pose2d(
+            MathUtil.interpolate(xMeters[a], xMeters[b], t),
+            MathUtil.interpolate(yMeters[a], yMeters[b], t),
+            new Rotation2d(thetaRad[a] + MathUtil.angleModulus(thetaRad[b] - thetaRad[a]) * t)));
+  }
+
+  /**
+   * Returns the interpolated field-relative velocity at the given timestamp, with the same range
+   * behaviour as {@link #getPoseAt(double)}.
+   */
+  public Optional<ChassisSpeeds> getVelocityAt(double timestampSeconds) {
+    int lower = findLowerSample(timestampSeconds);
+    if (lower < 0) {
+      return Optional.empty();
+    }
+    int a = index(lower);
+    int b = lower == size - 1 ? a : index(lower + 1);
+    double t = fraction(a, b, timestampSeconds);
+    return Optional.of(
+        new ChassisSpeeds(
+            MathUtil.interpolate(vxMetersPerSec[a], vxMetersPerSec[b], t),
+            MathUtil.interpolate(vyMetersPerSec[a], vyMetersPerSec[b], t),
+            MathUtil.interpolate(omegaRadPerSec[a], omegaRadPerSec[b], t)));
+  }
+
+  /**
+   * Returns the logical position of the newest sample at or before the timestamp, the newest sample
+   * if the timestamp is after all samples, or -1 if it is before all samples.
+   */
+  private int findLowerSample(double timestampSeconds) {
+    if (size == 0 || timestampSeconds < timestamps[head]) {
+      return -1;
+    }
+    int low = 0;
+    int high = size - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (timestamps[index(mid)] <= timestampSeconds) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  private double fraction(int a, int b, double timestampSeconds) {
+    double period = timestamps[b] - timestamps[a];
+    return period > 0.0 ? (timestampSeconds - timestamps[a]) / period : 0.0;
+  }
+
+  private int index(int position) {
+    return (head + position) % capacity;
+  }
+}
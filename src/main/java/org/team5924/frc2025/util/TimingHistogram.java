@@ -0,0 +1,70 @@
+/*
+ * TimingHistogram.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-width histogram of durations, preallocated so recording never allocates. Intended to be
+ * written by a single background thread and read from the main loop for logging. The last bin
+ * collects every value at or beyond the histogram range.
+ */
+public class TimingHistogram {
+  private final long binWidthNanos;
+  private final AtomicLongArray counts;
+  private volatile long maxNanos = 0;
+
+  /**
+   * @param binWidthSeconds Width of each bin in seconds
+   * @param binCount Number of bins, including the overflow bin
+   */
+  public TimingHistogram(double binWidthSeconds, int binCount) {
+    binWidthNanos = (long) (binWidthSeconds * 1e9);
+    counts = new AtomicLongArray(binCount);
+  }
+
+  /** Records a duration in nanoseconds. Only call from a single writer thread. */
+  public void record(long durationNanos) {
+    int bin = (int) Math.min(Math.max(durationNanos, 0) / binWidthNanos, counts.length() - 1);
+    counts.lazySet(bin, counts.get(bin) + 1);
+    if (durationNanos > maxNanos) {
+      maxNanos = durationNanos;
+    }
+  }
+
+  /** Copies the cumulative bin counts into the given array, which must hold every bin. */
+  public void copyCounts(long[] out) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = counts.get(i);
+    }
+  }
+
+  /** Returns the number of bins, including the overflow bin. */
+  public int getBinCount() {
+    return counts.length();
+  }
+
+  /** Returns the bin width in seconds. */
+  public double getBinWidthSeconds() {
+    return binWidthNanos / 1e9;
+  }
+
+  /** Returns the longest duration recorded, in seconds. */
+  public double getMaxSeconds() {
+    return maxNanos / 1e9;
+  }
+}
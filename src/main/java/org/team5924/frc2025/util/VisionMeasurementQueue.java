@@ -0,0 +1,92 @@
+/*
+ * VisionMeasurementQueue.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of vision pose estimates kept sorted by capture timestamp. Every camera adds its
+ * estimates as they arrive, and the drive drains the whole queue once per loop so that every
+ * measurement is fused in capture-time order, not just the newest one.
+ *
+ * <p>When the queue is full the oldest estimate is discarded to make room, and each discard is
+ * counted. Not thread safe, intended to be filled and drained from the main loop.
+ */
+public class VisionMeasurementQueue {
+  private final VisionFieldPoseEstimate[] estimates;
+  private int size = 0;
+  private long overwriteCount = 0;
+
+  /**
+   * @param capacity Maximum number of estimates held between drains
+   */
+  public VisionMeasurementQueue(int capacity) {
+    estimates = new VisionFieldPoseEstimate[capacity];
+  }
+
+  /** Adds an estimate in timestamp order, discarding the oldest estimate if the queue is full. */
+  public void add(VisionFieldPoseEstimate estimate) {
+    if (size == estimates.length) {
+      overwriteCount++;
+      if (estimate.getTimestampSeconds() < estimates[0].getTimestampSeconds()) {
+        // Older than everything retained, so it is the one to discard
+        return;
+      }
+      System.arraycopy(estimates, 1, estimates, 0, size - 1);
+      size--;
+    }
+
+    // Insertion sort from the back, estimates almost always arrive in order
+    int i = size;
+    while (i > 0 && estimates[i - 1].getTimestampSeconds() > estimate.getTimestampSeconds()) {
+      estimates[i] = estimates[i - 1];
+      i--;
+    }
+    estimates[i] = estimate;
+    size++;
+  }
+
+  /**
+   * Passes every queued estimate to the consumer, oldest capture first, and empties the queue.
+   *
+   * @return The number of estimates drained
+   */
+  public int drain(Consumer<VisionFieldPoseEstimate> consumer) {
+    int count = size;
+    for (int i = 0; i < count; i++) {
+      consumer.accept(estimates[i]);
+      estimates[i] = null;
+    }
+    size = 0;
+    return count;
+  }
+
+  /** Returns the number of estimates waiting to be drained. */
+  public int getSize() {
+    return size;
+  }
+
+  /** Returns the maximum number of estimates held between drains. */
+  public int getCapacity() {
+    return estimates.length;
+  }
+
+  /** Returns the total number of estimates discarded because the queue was full. */
+  public long getOverwriteCount() {
+    return overwriteCount;
+  }
+}
@@ -7,23 +7,13 @@
 
 package org.team5924.frc2025.util.swerve;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-
-import org.team5924.frc2025.util.EqualsUtil;
 import static org.team5924.frc2025.util.EqualsUtil.epsilonEquals;
-import org.team5924.frc2025.util.GeomUtil;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
-import lombok.Builder;
-import lombok.RequiredArgsConstructor;
-import lombok.experimental.ExtensionMethod;
 
 /**
  * "Inspired" by FRC team 254. See the license file in the root directory of this project.
@@ -33,28 +23,119 @@ import lombok.experimental.ExtensionMethod;
  * rotation speed and wheel velocity/acceleration. By generating a new setpoint every iteration, the
  * robot will converge to the desired setpoint quickly while avoiding any intermediate state that is
  * kinematically infeasible (and can result in wheel slip or robot heading drift as a result).
+ *
+ * <p>All intermediate math is done on angles in radians in preallocated scratch arrays, and the
+ * result is written into a caller-owned setpoint, so a call only allocates the {@link Rotation2d}
+ * of each module whose angle changed. Not thread safe; use one generator per caller.
  */
-@Builder
-@RequiredArgsConstructor
-@ExtensionMethod({GeomUtil.class, EqualsUtil.GeomExtensions.class})
 public class SwerveSetpointGenerator {
-  private final SwerveDriveKinematics kinematics;
-  private final Translation2d[] moduleLocations;
+  /** How the largest step towards the goal that respects each module limit is found. */
+  public enum LimitSolver {
+    /** Regula falsi root finding for every limit, as in the original generator. */
+    ITERATIVE,
+    /**
+     * Exact solutions: the steering limit is where the module velocity line crosses a ray, and the
+     * drive limit is a root of a quadratic. Falls back to root finding when the exact solution is
+     * not unique or not in range, so the cost per module is constant in almost every loop.
+     */
+    CLOSED_FORM
+  }
+
+  // Module speeds at or below this keep their previous heading, as in SwerveDriveKinematics
+  private static final double MIN_MODULE_SPEED_FOR_HEADING = 1e-6;
+  private static final int MAX_STEERING_ITERATIONS = 8;
+  private static final int MAX_DRIVE_ITERATIONS = 10;
+  // Below this the velocity line is treated as parallel to the target ray or as a single point
+  private static final double MIN_CLOSED_FORM_DENOMINATOR = 1e-12;
+
+  private final LimitSolver solver;
+  private long closedFormFallbackCount = 0;
+
+  private final int moduleCount;
+  private final double[] moduleX;
+  private final double[] moduleY;
+
+  // Heading each module last pointed in, used when its speed is too small to define one
+  private final double[] lastHeading;
+
+  // Previous setpoint, copied first so the output may alias it
+  private double prevChassisVx;
+  private double prevChassisVy;
+  private double prevChassisOmega;
+  private final double[] prevSpeed;
+  private final double[] prevAngle;
+  private final Rotation2d[] prevRotation;
+  private final double[] prevVx;
+  private final double[] prevVy;
+  private final double[] prevHeading;
+
+  // Desired state after limiting to the max drive velocity
+  private final double[] desiredSpeed;
+  private final double[] desiredAngle;
+  private final double[] desiredVx;
+  private final double[] desiredVy;
+  private final double[] desiredHeading;
+
+  // Steering angle to command for modules that are stopped, or NaN to use the kinematics angle
+  private final double[] overrideSteering;
+
+  /**
+   * Creates a generator that finds every limit iteratively.
+   *
+   * @param moduleLocations Module positions relative to the robot center, in the same order as the
+   *     setpoint module states
+   */
+  public SwerveSetpointGenerator(Translation2d[] moduleLocations) {
+    this(moduleLocations, LimitSolver.ITERATIVE);
+  }
+
+  /**
+   * @param moduleLocations Module positions relative to the robot center, in the same order as the
+   *     setpoint module states
+   * @param solver How to find the step that respects each module limit
+   */
+  public SwerveSetpointGenerator(Translation2d[] moduleLocations, LimitSolver solver) {
+    this.solver = solver;
+    moduleCount = moduleLocations.length;
+    moduleX = new double[moduleCount];
+    moduleY = new double[moduleCount];
+    for (int i = 0; i < moduleCount; i++) {
+      moduleX[i] = moduleLocations[i].getX();
+      moduleY[i] = moduleLocations[i].getY();
+    }
+    lastHeading = new double[moduleCount];
+    prevSpeed = new double[moduleCount];
+    prevAngle = new double[moduleCount];
+    prevRotation = new Rotation2d[moduleCount];
+    prevVx = new double[moduleCount];
+    prevVy = new double[moduleCount];
+    prevHeading = new double[moduleCount];
+    desiredSpeed = new double[moduleCount];
+    desiredAngle = new double[moduleCount];
+    desiredVx = new double[moduleCount];
+    desiredVy = new double[moduleCount];
+    desiredHeading = new double[moduleCount];
+    overrideSteering = new double[moduleCount];
+  }
 
   /**
    * Check if it would be faster to go to the opposite of the goal heading (and reverse drive
    * direction).
    *
-   * @param prevToGoal The rotation from the previous state to the goal state (i.e.
-   *     prev.inverse().rotateBy(goal)).
+   * @param prevToGoal The rotation from the previous state to the goal state, in radians.
    * @return True if the shortest path to achieve this rotation involves flipping the drive
    *     direction.
    */
-  private boolean flipHeading(Rotation2d prevToGoal) {
-    return Math.abs(prevToGoal.getRadians()) > Math.PI / 2.0;
+  private static boolean flipHeading(double prevToGoal) {
+    return Math.abs(MathUtil.angleModulus(prevToGoal)) > Math.PI / 2.0;
+  }
+
+  /** Returns the angle rotated by half a turn, in (-pi, pi] like {@link Rotation2d}. */
+  private static double reverse(double angle) {
+    return angle > 0.0 ? angle - Math.PI : angle + Math.PI;
   }
 
-  private double unwrapAngle(double ref, double angle) {
+  private static double unwrapAngle(double ref, double angle) {
     double diff = angle - ref;
     if (diff > Math.PI) {
       return angle - 2.0 * Math.PI;
@@ -65,58 +146,66 @@ public class SwerveSetpointGenerator {
     }
   }
 
-  @FunctionalInterface
-  private interface Function2d {
-    double f(double x, double y);
-  }
-
   /**
-   * Find the root of the generic 2D parametric function 'func' using the regula falsi technique.
-   * This is a pretty naive way to do root finding, but it's usually faster than simple bisection
-   * while being robust in ways that e.g. the Newton-Raphson method isn't.
+   * Find the root of either the steering angle or the wheel speed along the line between two module
+   * velocities using the regula falsi technique. This is a pretty naive way to do root finding, but
+   * it's usually faster than simple bisection while being robust in ways that e.g. the
+   * Newton-Raphson method isn't.
    *
-   * @param func The Function2d to take the root of.
+   * @param steering True to find where the steering angle crosses the offset, false for the speed.
+   * @param reference Angle the steering function is unwrapped around; unused for speed.
+   * @param offset Value subtracted from the angle or speed so that the root is at zero.
    * @param x_0 x value of the lower bracket.
    * @param y_0 y value of the lower bracket.
-   * @param f_0 value of 'func' at x_0, y_0 (passed in by caller to save a call to 'func' during
-   *     recursion)
+   * @param f_0 value of the function at x_0, y_0.
    * @param x_1 x value of the upper bracket.
    * @param y_1 y value of the upper bracket.
-   * @param f_1 value of 'func' at x_1, y_1 (passed in by caller to save a call to 'func' during
-   *     recursion)
-   * @param iterations_left Number of iterations of root finding left.
+   * @param f_1 value of the function at x_1, y_1.
+   * @param iterations Number of iterations of root finding.
    * @return The parameter value 's' that interpolating between 0 and 1 that corresponds to the
    *     (approximate) root.
    */
-  private double findRoot(
-      Function2d func,
+  private static double findRoot(
+      boolean steering,
+      double reference,
+      double offset,
       double x_0,
       double y_0,
       double f_0,
       double x_1,
       double y_1,
       double f_1,
-      int iterations_left) {
-    if (iterations_left < 0 || epsilonEquals(f_0, f_1)) {
-      return 1.0;
-    }
-    var s_guess = Math.max(0.0, Math.min(1.0, -f_0 / (f_1 - f_0)));
-    var x_guess = (x_1 - x_0) * s_guess + x_0;
-    var y_guess = (y_1 - y_0) * s_guess + y_0;
-    var f_guess = func.f(x_guess, y_guess);
-    if (Math.signum(f_0) == Math.signum(f_guess)) {
-      // 0 and guess on same side of root, so use upper bracket.
-      return s_guess
-          + (1.0 - s_guess)
-              * findRoot(func, x_guess, y_guess, f_guess, x_1, y_1, f_1, iterations_left - 1);
-    } else {
-      // Use lower bracket.
-      return s_guess
-          * findRoot(func, x_0, y_0, f_0, x_guess, y_guess, f_guess, iterations_left - 1);
+      int iterations) {
+    // Each step narrows the bracket to [base, base + scale] of the original interval
+    double base = 0.0;
+    double scale = 1.0;
+    for (int i = iterations; i >= 0 && !epsilonEquals(f_0, f_1); i--) {
+      double s_guess = Math.max(0.0, Math.min(1.0, -f_0 / (f_1 - f_0)));
+      double x_guess = (x_1 - x_0) * s_guess + x_0;
+      double y_guess = (y_1 - y_0) * s_guess + y_0;
+      double f_guess =
+          steering
+              ? unwrapAngle(reference, Math.atan2(y_guess, x_guess)) - offset
+              : Math.sqrt(x_guess * x_guess + y_guess * y_guess) - offset;
+      if (Math.signum(f_0) == Math.signum(f_guess)) {
+        // 0 and guess on same side of root, so use upper bracket.
+        base += scale * s_guess;
+        scale *= 1.0 - s_guess;
+        x_0 = x_guess;
+        y_0 = y_guess;
+        f_0 = f_guess;
+      } else {
+        // Use lower bracket.
+        scale *= s_guess;
+        x_1 = x_guess;
+        y_1 = y_guess;
+        f_1 = f_guess;
+      }
     }
+    return base + scale;
   }
 
-  protected double findSteeringMaxS(
+  private double findSteeringMaxS(
       double x_0,
       double y_0,
       double f_0,
@@ -132,14 +221,43 @@ public class SwerveSetpointGenerator {
       return 1.0;
     }
     double offset = f_0 + Math.signum(diff) * max_deviation;
-    Function2d func =
-        (x, y) -> {
-          return unwrapAngle(f_0, Math.atan2(y, x)) - offset;
-        };
-    return findRoot(func, x_0, y_0, f_0 - offset, x_1, y_1, f_1 - offset, max_iterations);
+    if (solver == LimitSolver.CLOSED_FORM) {
+      double s = solveSteeringMaxS(x_0, y_0, x_1, y_1, offset);
+      if (!Double.isNaN(s)) {
+        return s;
+      }
+      closedFormFallbackCount++;
+    }
+    return findRoot(
+        true, f_0, offset, x_0, y_0, f_0 - offset, x_1, y_1, f_1 - offset, max_iterations);
+  }
+
+  /**
+   * Solves for where the module velocity, moving along the line from (x_0, y_0) to (x_1, y_1),
+   * points at the target angle. A line that misses the origin sweeps less than half a turn, so it
+   * crosses the ray at that angle at most once: where the cross product with the ray direction is
+   * zero, (u x p_0) + s (u x d) = 0, and the velocity points along the ray rather than against it.
+   *
+   * @return The interpolant in [0, 1], or NaN if there is no such crossing
+   */
+  private static double solveSteeringMaxS(
+      double x_0, double y_0, double x_1, double y_1, double targetAngle) {
+    double ux = Math.cos(targetAngle);
+    double uy = Math.sin(targetAngle);
+    double dx = x_1 - x_0;
+    double dy = y_1 - y_0;
+    double denominator = ux * dy - uy * dx;
+    if (Math.abs(denominator) < MIN_CLOSED_FORM_DENOMINATOR) {
+      return Double.NaN;
+    }
+    double s = (uy * x_0 - ux * y_0) / denominator;
+    if (!(s >= 0.0 && s <= 1.0) || (x_0 + s * dx) * ux + (y_0 + s * dy) * uy <= 0.0) {
+      return Double.NaN;
+    }
+    return s;
   }
 
-  protected double findDriveMaxS(
+  private double findDriveMaxS(
       double x_0,
       double y_0,
       double f_0,
@@ -154,34 +272,80 @@ public class SwerveSetpointGenerator {
       return 1.0;
     }
     double offset = f_0 + Math.signum(diff) * max_vel_step;
-    Function2d func =
-        (x, y) -> {
-          return Math.hypot(x, y) - offset;
-        };
-    return findRoot(func, x_0, y_0, f_0 - offset, x_1, y_1, f_1 - offset, max_iterations);
+    if (solver == LimitSolver.CLOSED_FORM) {
+      double s = solveDriveMaxS(x_0, y_0, x_1, y_1, offset, diff > 0.0);
+      if (!Double.isNaN(s)) {
+        return s;
+      }
+      closedFormFallbackCount++;
+    }
+    return findRoot(
+        false, 0.0, offset, x_0, y_0, f_0 - offset, x_1, y_1, f_1 - offset, max_iterations);
+  }
+
+  /**
+   * Solves for where the module speed, moving along the line from (x_0, y_0) to (x_1, y_1),
+   * reaches the target speed. The squared speed is quadratic in s:
+   *
+   * <pre>
+   * v^2 = ((x_1 - x_0) * s + x_0)^2 + ((y_1 - y_0) * s + y_0)^2 = a * s^2 + b * s + c
+   * </pre>
+   *
+   * <p>and the speed is convex in s, so when accelerating the crossing is the larger root and when
+   * decelerating it is the smaller one. Uses the numerically stable form of the quadratic formula.
+   *
+   * @return The interpolant in [0, 1], or NaN if there is no such crossing
+   */
+  private static double solveDriveMaxS(
+      double x_0, double y_0, double x_1, double y_1, double targetSpeed, boolean accelerating) {
+    double dx = x_1 - x_0;
+    double dy = y_1 - y_0;
+    double a = dx * dx + dy * dy;
+    double b = 2.0 * (x_0 * dx + y_0 * dy);
+    double c = x_0 * x_0 + y_0 * y_0 - targetSpeed * targetSpeed;
+    double discriminant = b * b - 4.0 * a * c;
+    if (a < MIN_CLOSED_FORM_DENOMINATOR || discriminant < 0.0) {
+      return Double.NaN;
+    }
+    double q = -0.5 * (b + Math.copySign(Math.sqrt(discriminant), b));
+    if (Math.abs(q) < MIN_CLOSED_FORM_DENOMINATOR) {
+      return Double.NaN;
+    }
+    double s = accelerating ? Math.max(q / a, c / q) : Math.min(q / a, c / q);
+    if (!(s >= 0.0 && s <= 1.0)) {
+      return Double.NaN;
+    }
+    return s;
   }
 
-  // protected double findDriveMaxS(
-  //     double x_0, double y_0, double x_1, double y_1, double max_vel_step) {
-  //   // Our drive velocity between s=0 and s=1 is quadratic in s:
-  //   // v^2 = ((x_1 - x_0) * s + x_0)^2 + ((y_1 - y_0) * s + y_0)^2
-  //   //     = a * s^2 + b * s + c
-  //   // Where:
-  //   //   a = (x_1 - x_0)^2 + (y_1 - y_0)^2
-  //   //   b = 2 * x_0 * (x_1 - x_0) + 2 * y_0 * (y_1 - y_0)
-  //   //   c = x_0^2 + y_0^2
-  //   // We want to find where this quadratic results in a velocity that is > max_vel_step from our
-  //   // velocity at s=0:
-  //   // sqrt(x_0^2 + y_0^2) +/- max_vel_step = ...quadratic...
-  //   final double dx = x_1 - x_0;
-  //   final double dy = y_1 - y_0;
-  //   final double a = dx * dx + dy * dy;
-  //   final double b = 2.0 * x_0 * dx + 2.0 * y_0 * dy;
-  //   final double c = x_0 * x_0 + y_0 * y_0;
-  //   final double v_limit_upper_2 = Math.pow(Math.hypot(x_0, y_0) + max_vel_step, 2.0);
-  //   final double v_limit_lower_2 = Math.pow(Math.hypot(x_0, y_0) - max_vel_step, 2.0);
-  //   return 0.0;
-  // }
+  /** Returns which method this generator uses to find the module limits. */
+  public LimitSolver getSolver() {
+    return solver;
+  }
+
+  /** Returns how many times the closed form solver had no solution and fell back to iterating. */
+  public long getClosedFormFallbackCount() {
+    return closedFormFallbackCount;
+  }
+
+  /**
+   * Generate a new setpoint into a newly allocated setpoint. Prefer {@link
+   * #generateSetpoint(ModuleLimits, SwerveSetpoint, ChassisSpeeds, double, SwerveSetpoint)} in
+   * periodic code.
+   */
+  public SwerveSetpoint generateSetpoint(
+      final ModuleLimits limits,
+      final SwerveSetpoint prevSetpoint,
+      ChassisSpeeds desiredState,
+      double dt) {
+    SwerveModuleState[] moduleStates = new SwerveModuleState[moduleCount];
+    for (int i = 0; i < moduleCount; i++) {
+      moduleStates[i] = new SwerveModuleState();
+    }
+    SwerveSetpoint setpoint = new SwerveSetpoint(new ChassisSpeeds(), moduleStates);
+    generateSetpoint(limits, prevSetpoint, desiredState, dt, setpoint);
+    return setpoint;
+  }
 
   /**
    * Generate a new setpoint.
@@ -190,214 +354,244 @@ public class SwerveSetpointGenerator {
    * @param prevSetpoint The previous setpoint motion. Normally, you'd pass in the previous
    *     iteration setpoint instead of the actual measured/estimated kinematic state.
    * @param desiredState The desired state of motion, such as from the driver sticks or a path
-   *     following algorithm.
+   *     following algorithm. Not modified.
    * @param dt The loop time.
-   * @return A Setpoint object that satisfies all of the KinematicLimits while converging to
-   *     desiredState quickly.
+   * @param output Setpoint to write a result into that satisfies all of the KinematicLimits while
+   *     converging to desiredState quickly. May be the same object as prevSetpoint.
    */
-  public SwerveSetpoint generateSetpoint(
+  public void generateSetpoint(
       final ModuleLimits limits,
       final SwerveSetpoint prevSetpoint,
-      ChassisSpeeds desiredState,
-      double dt) {
-    final Translation2d[] modules = moduleLocations;
+      final ChassisSpeeds desiredState,
+      double dt,
+      SwerveSetpoint output) {
+    // Copy the previous setpoint first in case the output aliases it
+    prevChassisVx = prevSetpoint.chassisSpeeds().vxMetersPerSecond;
+    prevChassisVy = prevSetpoint.chassisSpeeds().vyMetersPerSecond;
+    prevChassisOmega = prevSetpoint.chassisSpeeds().omegaRadiansPerSecond;
+    for (int i = 0; i < moduleCount; i++) {
+      SwerveModuleState state = prevSetpoint.moduleStates()[i];
+      prevSpeed[i] = state.speedMetersPerSecond;
+      prevRotation[i] = state.angle;
+      prevAngle[i] = state.angle.getRadians();
+      prevVx[i] = state.angle.getCos() * state.speedMetersPerSecond;
+      prevVy[i] = state.angle.getSin() * state.speedMetersPerSecond;
+      prevHeading[i] = state.speedMetersPerSecond < 0.0 ? reverse(prevAngle[i]) : prevAngle[i];
+    }
 
-    SwerveModuleState[] desiredModuleState = kinematics.toSwerveModuleStates(desiredState);
-    // Make sure desiredState respects velocity limits.
-    if (limits.maxDriveVelocity() > 0.0) {
-      SwerveDriveKinematics.desaturateWheelSpeeds(desiredModuleState, limits.maxDriveVelocity());
-      desiredState = kinematics.toChassisSpeeds(desiredModuleState);
+    if (!generateSetpoint(
+        limits,
+        desiredState.vxMetersPerSecond,
+        desiredState.vyMetersPerSecond,
+        desiredState.omegaRadiansPerSecond,
+        dt,
+        output)) {
+      // It will (likely) be faster to stop the robot, rotate the modules in place to the complement
+      // of the desired angle, and accelerate again.
+      generateSetpoint(limits, 0.0, 0.0, 0.0, dt, output);
+    }
+  }
+
+  /**
+   * Generates a setpoint from the previous setpoint already copied into the scratch arrays.
+   *
+   * @return False without writing the output if every module should flip, in which case the caller
+   *     should generate a setpoint towards a stop instead.
+   */
+  private boolean generateSetpoint(
+      ModuleLimits limits,
+      double desiredVxChassis,
+      double desiredVyChassis,
+      double desiredOmega,
+      double dt,
+      SwerveSetpoint output) {
+    // Inverse kinematics, keeping the last heading of modules that are not moving
+    double maxSpeed = 0.0;
+    for (int i = 0; i < moduleCount; ++i) {
+      double vx = desiredVxChassis - desiredOmega * moduleY[i];
+      double vy = desiredVyChassis + desiredOmega * moduleX[i];
+      desiredSpeed[i] = Math.sqrt(vx * vx + vy * vy);
+      if (desiredSpeed[i] > MIN_MODULE_SPEED_FOR_HEADING) {
+        lastHeading[i] = Math.atan2(vy, vx);
+      }
+      desiredAngle[i] = lastHeading[i];
+      maxSpeed = Math.max(maxSpeed, desiredSpeed[i]);
+    }
+
+    // Make sure desiredState respects velocity limits. Scaling every module speed by the same
+    // factor scales the chassis speeds by it too.
+    if (limits.maxDriveVelocity() > 0.0 && maxSpeed > limits.maxDriveVelocity()) {
+      double scale = limits.maxDriveVelocity() / maxSpeed;
+      for (int i = 0; i < moduleCount; ++i) {
+        desiredSpeed[i] *= scale;
+      }
+      desiredVxChassis *= scale;
+      desiredVyChassis *= scale;
+      desiredOmega *= scale;
     }
 
     // Special case: desiredState is a complete stop. In this case, module angle is arbitrary, so
     // just use the previous angle.
-    boolean need_to_steer = true;
-    if (desiredState.toTwist2d().epsilonEquals(new Twist2d())) {
-      need_to_steer = false;
-      for (int i = 0; i < modules.length; ++i) {
-        desiredModuleState[i].angle = prevSetpoint.moduleStates()[i].angle;
-        desiredModuleState[i].speedMetersPerSecond = 0.0;
+    boolean desiredIsStopped =
+        epsilonEquals(desiredVxChassis, 0.0)
+            && epsilonEquals(desiredVyChassis, 0.0)
+            && epsilonEquals(desiredOmega, 0.0);
+    boolean need_to_steer = !desiredIsStopped;
+    if (desiredIsStopped) {
+      for (int i = 0; i < moduleCount; ++i) {
+        desiredAngle[i] = prevAngle[i];
+        desiredSpeed[i] = 0.0;
       }
     }
 
     // For each module, compute local Vx and Vy vectors.
-    double[] prev_vx = new double[modules.length];
-    double[] prev_vy = new double[modules.length];
-    Rotation2d[] prev_heading = new Rotation2d[modules.length];
-    double[] desired_vx = new double[modules.length];
-    double[] desired_vy = new double[modules.length];
-    Rotation2d[] desired_heading = new Rotation2d[modules.length];
     boolean all_modules_should_flip = true;
-    for (int i = 0; i < modules.length; ++i) {
-      prev_vx[i] =
-          prevSetpoint.moduleStates()[i].angle.getCos()
-              * prevSetpoint.moduleStates()[i].speedMetersPerSecond;
-      prev_vy[i] =
-          prevSetpoint.moduleStates()[i].angle.getSin()
-              * prevSetpoint.moduleStates()[i].speedMetersPerSecond;
-      prev_heading[i] = prevSetpoint.moduleStates()[i].angle;
-      if (prevSetpoint.moduleStates()[i].speedMetersPerSecond < 0.0) {
-        prev_heading[i] = prev_heading[i].rotateBy(Rotation2d.fromRadians(Math.PI));
-      }
-      desired_vx[i] =
-          desiredModuleState[i].angle.getCos() * desiredModuleState[i].speedMetersPerSecond;
-      desired_vy[i] =
-          desiredModuleState[i].angle.getSin() * desiredModuleState[i].speedMetersPerSecond;
-      desired_heading[i] = desiredModuleState[i].angle;
-      if (desiredModuleState[i].speedMetersPerSecond < 0.0) {
-        desired_heading[i] = desired_heading[i].rotateBy(Rotation2d.fromRadians(Math.PI));
-      }
-      if (all_modules_should_flip) {
-        double required_rotation_rad =
-            Math.abs(prev_heading[i].unaryMinus().rotateBy(desired_heading[i]).getRadians());
-        if (required_rotation_rad < Math.PI / 2.0) {
-          all_modules_should_flip = false;
-        }
+    for (int i = 0; i < moduleCount; ++i) {
+      desiredVx[i] = Math.cos(desiredAngle[i]) * desiredSpeed[i];
+      desiredVy[i] = Math.sin(desiredAngle[i]) * desiredSpeed[i];
+      desiredHeading[i] = desiredAngle[i];
+      if (all_modules_should_flip
+          && Math.abs(MathUtil.angleModulus(desiredHeading[i] - prevHeading[i])) < Math.PI / 2.0) {
+        all_modules_should_flip = false;
       }
     }
-    if (all_modules_should_flip
-        && !prevSetpoint.chassisSpeeds().toTwist2d().epsilonEquals(new Twist2d())
-        && !desiredState.toTwist2d().epsilonEquals(new Twist2d())) {
-      // It will (likely) be faster to stop the robot, rotate the modules in place to the complement
-      // of the desired
-      // angle, and accelerate again.
-      return generateSetpoint(limits, prevSetpoint, new ChassisSpeeds(), dt);
+    boolean prevIsStopped =
+        epsilonEquals(prevChassisVx, 0.0)
+            && epsilonEquals(prevChassisVy, 0.0)
+            && epsilonEquals(prevChassisOmega, 0.0);
+    if (all_modules_should_flip && !prevIsStopped && !desiredIsStopped) {
+      return false;
     }
 
     // Compute the deltas between start and goal. We can then interpolate from the start state to
-    // the goal state; then
-    // find the amount we can move from start towards goal in this cycle such that no kinematic
-    // limit is exceeded.
-    double dx = desiredState.vxMetersPerSecond - prevSetpoint.chassisSpeeds().vxMetersPerSecond;
-    double dy = desiredState.vyMetersPerSecond - prevSetpoint.chassisSpeeds().vyMetersPerSecond;
-    double dtheta =
-        desiredState.omegaRadiansPerSecond - prevSetpoint.chassisSpeeds().omegaRadiansPerSecond;
+    // the goal state; then find the amount we can move from start towards goal in this cycle such
+    // that no kinematic limit is exceeded.
+    double dx = desiredVxChassis - prevChassisVx;
+    double dy = desiredVyChassis - prevChassisVy;
+    double dtheta = desiredOmega - prevChassisOmega;
 
     // 's' interpolates between start and goal. At 0, we are at prevState and at 1, we are at
     // desiredState.
     double min_s = 1.0;
 
     // In cases where an individual module is stopped, we want to remember the right steering angle
-    // to command (since
-    // inverse kinematics doesn't care about angle, we can be opportunistically lazy).
-    List<Optional<Rotation2d>> overrideSteering = new ArrayList<>(modules.length);
-    // Enforce steering velocity limits. We do this by taking the derivative of steering angle at
-    // the current angle,
-    // and then backing out the maximum interpolant between start and goal states. We remember the
-    // minimum across all modules, since
-    // that is the active constraint.
+    // to command (since inverse kinematics doesn't care about angle, we can be opportunistically
+    // lazy). Enforce steering velocity limits. We do this by taking the derivative of steering
+    // angle at the current angle, and then backing out the maximum interpolant between start and
+    // goal states. We remember the minimum across all modules, since that is the active constraint.
     final double max_theta_step = dt * limits.maxSteeringVelocity();
-    for (int i = 0; i < modules.length; ++i) {
+    for (int i = 0; i < moduleCount; ++i) {
+      overrideSteering[i] = Double.NaN;
       if (!need_to_steer) {
-        overrideSteering.add(Optional.of(prevSetpoint.moduleStates()[i].angle));
+        overrideSteering[i] = prevAngle[i];
         continue;
       }
-      overrideSteering.add(Optional.empty());
-      if (epsilonEquals(prevSetpoint.moduleStates()[i].speedMetersPerSecond, 0.0)) {
+      if (epsilonEquals(prevSpeed[i], 0.0)) {
         // If module is stopped, we know that we will need to move straight to the final steering
-        // angle, so limit based
-        // purely on rotation in place.
-        if (epsilonEquals(desiredModuleState[i].speedMetersPerSecond, 0.0)) {
+        // angle, so limit based purely on rotation in place.
+        if (epsilonEquals(desiredSpeed[i], 0.0)) {
           // Goal angle doesn't matter. Just leave module at its current angle.
-          overrideSteering.set(i, Optional.of(prevSetpoint.moduleStates()[i].angle));
+          overrideSteering[i] = prevAngle[i];
           continue;
         }
 
-        var necessaryRotation =
-            prevSetpoint.moduleStates()[i].angle.unaryMinus().rotateBy(desiredModuleState[i].angle);
+        double necessaryRotation = MathUtil.angleModulus(desiredAngle[i] - prevAngle[i]);
         if (flipHeading(necessaryRotation)) {
-          necessaryRotation = necessaryRotation.rotateBy(Rotation2d.fromRadians(Math.PI));
+          necessaryRotation = reverse(necessaryRotation);
         }
-        // getRadians() bounds to +/- Pi.
-        final double numStepsNeeded = Math.abs(necessaryRotation.getRadians()) / max_theta_step;
+        final double numStepsNeeded = Math.abs(necessaryRotation) / max_theta_step;
 
         if (numStepsNeeded <= 1.0) {
-          // Steer directly to goal angle.
-          overrideSteering.set(i, Optional.of(desiredModuleState[i].angle));
-          // Don't limit the global min_s;
-          continue;
+          // Steer directly to goal angle. Don't limit the global min_s.
+          overrideSteering[i] = desiredAngle[i];
         } else {
           // Adjust steering by max_theta_step.
-          overrideSteering.set(
-              i,
-              Optional.of(
-                  prevSetpoint.moduleStates()[i].angle.rotateBy(
-                      Rotation2d.fromRadians(
-                          Math.signum(necessaryRotation.getRadians()) * max_theta_step))));
+          overrideSteering[i] =
+              MathUtil.angleModulus(
+                  prevAngle[i] + Math.signum(necessaryRotation) * max_theta_step);
           min_s = 0.0;
-          continue;
         }
+        continue;
       }
       if (min_s == 0.0) {
         // s can't get any lower. Save some CPU.
         continue;
       }
 
-      final int kMaxIterations = 8;
       double s =
           findSteeringMaxS(
-              prev_vx[i],
-              prev_vy[i],
-              prev_heading[i].getRadians(),
-              desired_vx[i],
-              desired_vy[i],
-              desired_heading[i].getRadians(),
+              prevVx[i],
+              prevVy[i],
+              prevHeading[i],
+              desiredVx[i],
+              desiredVy[i],
+              desiredHeading[i],
               max_theta_step,
-              kMaxIterations);
+              MAX_STEERING_ITERATIONS);
       min_s = Math.min(min_s, s);
     }
 
     // Enforce drive wheel acceleration limits.
     final double max_vel_step = dt * limits.maxDriveAcceleration();
-    for (int i = 0; i < modules.length; ++i) {
+    for (int i = 0; i < moduleCount; ++i) {
       if (min_s == 0.0) {
         // No need to carry on.
         break;
       }
       double vx_min_s =
-          min_s == 1.0 ? desired_vx[i] : (desired_vx[i] - prev_vx[i]) * min_s + prev_vx[i];
+          min_s == 1.0 ? desiredVx[i] : (desiredVx[i] - prevVx[i]) * min_s + prevVx[i];
       double vy_min_s =
-          min_s == 1.0 ? desired_vy[i] : (desired_vy[i] - prev_vy[i]) * min_s + prev_vy[i];
+          min_s == 1.0 ? desiredVy[i] : (desiredVy[i] - prevVy[i]) * min_s + prevVy[i];
       // Find the max s for this drive wheel. Search on the interval between 0 and min_s, because we
-      // already know we can't go faster
-      // than that.
-      final int kMaxIterations = 10;
+      // already know we can't go faster than that.
       double s =
           min_s
               * findDriveMaxS(
-                  prev_vx[i],
-                  prev_vy[i],
-                  Math.hypot(prev_vx[i], prev_vy[i]),
+                  prevVx[i],
+                  prevVy[i],
+                  Math.sqrt(prevVx[i] * prevVx[i] + prevVy[i] * prevVy[i]),
                   vx_min_s,
                   vy_min_s,
-                  Math.hypot(vx_min_s, vy_min_s),
+                  Math.sqrt(vx_min_s * vx_min_s + vy_min_s * vy_min_s),
                   max_vel_step,
-                  kMaxIterations);
+                  MAX_DRIVE_ITERATIONS);
       min_s = Math.min(min_s, s);
     }
 
-    ChassisSpeeds retSpeeds =
-        new ChassisSpeeds(
-            prevSetpoint.chassisSpeeds().vxMetersPerSecond + min_s * dx,
-            prevSetpoint.chassisSpeeds().vyMetersPerSecond + min_s * dy,
-            prevSetpoint.chassisSpeeds().omegaRadiansPerSecond + min_s * dtheta);
-    var retStates = kinematics.toSwerveModuleStates(retSpeeds);
-    for (int i = 0; i < modules.length; ++i) {
-      final var maybeOverride = overrideSteering.get(i);
-      if (maybeOverride.isPresent()) {
-        var override = maybeOverride.get();
-        if (flipHeading(retStates[i].angle.unaryMinus().rotateBy(override))) {
-          retStates[i].speedMetersPerSecond *= -1.0;
+    double retVx = prevChassisVx + min_s * dx;
+    double retVy = prevChassisVy + min_s * dy;
+    double retOmega = prevChassisOmega + min_s * dtheta;
+    output.chassisSpeeds().vxMetersPerSecond = retVx;
+    output.chassisSpeeds().vyMetersPerSecond = retVy;
+    output.chassisSpeeds().omegaRadiansPerSecond = retOmega;
+    for (int i = 0; i < moduleCount; ++i) {
+      double vx = retVx - retOmega * moduleY[i];
+      double vy = retVy + retOmega * moduleX[i];
+      double speed = Math.sqrt(vx * vx + vy * vy);
+      if (speed > MIN_MODULE_SPEED_FOR_HEADING) {
+        lastHeading[i] = Math.atan2(vy, vx);
+      }
+      double angle = lastHeading[i];
+
+      if (!Double.isNaN(overrideSteering[i])) {
+        if (flipHeading(overrideSteering[i] - angle)) {
+          speed *= -1.0;
         }
-        retStates[i].angle = override;
+        angle = overrideSteering[i];
       }
-      final var deltaRotation =
-          prevSetpoint.moduleStates()[i].angle.unaryMinus().rotateBy(retStates[i].angle);
-      if (flipHeading(deltaRotation)) {
-        retStates[i].angle = retStates[i].angle.rotateBy(Rotation2d.fromRadians(Math.PI));
-        retStates[i].speedMetersPerSecond *= -1.0;
+      if (flipHeading(angle - prevAngle[i])) {
+        angle = reverse(angle);
+        speed *= -1.0;
+      }
+
+      SwerveModuleState state = output.moduleStates()[i];
+      state.speedMetersPerSecond = speed;
+      if (angle == prevAngle[i]) {
+        state.angle = prevRotation[i];
+      } else if (state.angle.getRadians() != angle) {
+        state.angle = new Rotation2d(angle);
       }
     }
-    return new SwerveSetpoint(retSpeeds, retStates);
+    return true;
   }
 }
@@ -0,0 +1,382 @@
+/*
+ * OdometryAllocationTest.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.management.ThreadMXBean;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.team5924.frc2025.generated.TunerConstantsGamma;
+import org.team5924.frc2025.subsystems.drive.GyroIO.GyroIOInputs;
+import org.team5924.frc2025.subsystems.drive.ModuleIO.ModuleIOInputs;
+import org.team5924.frc2025.util.PoseCovarianceTracker;
+import org.team5924.frc2025.util.PoseHistory;
+
+/**
+ * Checks that the per-sample odometry work done by the modules and the heading tracker does not
+ * allocate, apart from the one Rotation2d the pose estimator needs when an angle is changing, and
+ * that the full main loop path from the IO layer through {@link Module#periodic()} and {@link
+ * DriveOdometry#update} adds nothing on top of the allocations it cannot avoid.
+ *
+ * <p>Those remaining allocations are outside this code:
+ *
+ * <ul>
+ *   <li>The IO layer builds new AdvantageKit input arrays and one Rotation2d per sample every loop,
+ *       as the inputs have to be new objects for logging and replay.
+ *   <li>WPILib's odometry copies the module positions and builds a Twist2d, Pose2d and Rotation2d
+ *       on every update, for both the pose estimator and the wheel-only odometry.
+ *   <li>The pose estimator also stores an interpolation record with its own copy of the positions
+ *       and a TreeMap entry with a boxed timestamp for every update.
+ * </ul>
+ *
+ * <p>The test JVM runs without escape analysis, so the main loop and the reference runs of the IO
+ * and WPILib calls count the same objects however the JIT inlines them.
+ */
+class OdometryAllocationTest {
+  private static final int SAMPLES_PER_CYCLE = PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY;
+  private static final int CYCLES = 5_000;
+  private static final double SAMPLE_PERIOD = 0.004;
+  // Hardware timestamps lag the frame timestamp, so every sample is interpolated
+  private static final double SIGNAL_SKEW = 0.001;
+  // Allowance for the allocation counter's own bookkeeping, far below one byte per sample
+  private static final long SLACK_BYTES = 1024;
+
+  // 250 Hz odometry in a 50 Hz main loop
+  private static final int FRAMES_PER_LOOP = 5;
+  private static final int LOOPS = 2_000;
+  // Smaller than any object, so that one extra allocation every loop still fails
+  private static final long SLACK_BYTES_PER_LOOP = 8;
+  private static final Translation2d[] MODULE_TRANSLATIONS =
+      new Translation2d[] {
+        new Translation2d(0.3, 0.3),
+        new Translation2d(0.3, -0.3),
+        new Translation2d(-0.3, 0.3),
+        new Translation2d(-0.3, -0.3)
+      };
+
+  private static final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final Rotation2d[] allocated = new Rotation2d[1];
+
+  @Test
+  void mainLoopOdometryAllocatesOnlyInIOAndEstimator() {
+    // Driving straight with the wheels pointed forward and a steady gyro
+    DrivingModuleIO[] moduleIOs = new DrivingModuleIO[4];
+    Module[] modules = new Module[4];
+    for (int i = 0; i < 4; i++) {
+      moduleIOs[i] = new DrivingModuleIO(TunerConstantsGamma.FrontLeft.WheelRadius);
+    }
+    modules[0] = new Module(moduleIOs[0], 0, TunerConstantsGamma.FrontLeft);
+    modules[1] = new Module(moduleIOs[1], 1, TunerConstantsGamma.FrontRight);
+    modules[2] = new Module(moduleIOs[2], 2, TunerConstantsGamma.BackLeft);
+    modules[3] = new Module(moduleIOs[3], 3, TunerConstantsGamma.BackRight);
+    StationaryGyroIO gyroIO = new StationaryGyroIO();
+    GyroIOInputs gyroInputs = new GyroIOInputs();
+    SwerveDriveKinematics kinematics = new SwerveDriveKinematics(MODULE_TRANSLATIONS);
+    DriveOdometry odometry =
+        new DriveOdometry(
+            kinematics,
+            new Rotation2d(),
+            new PoseHistory(250),
+            new PoseCovarianceTracker(0.05, 0.02, 0.005, 0.002, 0.02, 0.005, 10.0, Math.PI));
+    runMainLoops(gyroIO, gyroInputs, modules, odometry); // Warm up and fill the estimator buffer
+
+    long bytes = runMainLoops(gyroIO, gyroInputs, modules, odometry);
+
+    // The same IO work alone, then the same WPILib updates alone
+    DrivingModuleIO[] referenceIOs = new DrivingModuleIO[4];
+    ModuleIOInputs[] referenceInputs = new ModuleIOInputs[4];
+    for (int i = 0; i < 4; i++) {
+      referenceIOs[i] = new DrivingModuleIO(TunerConstantsGamma.FrontLeft.WheelRadius);
+      referenceInputs[i] = new ModuleIOInputs();
+    }
+    StationaryGyroIO referenceGyroIO = new StationaryGyroIO();
+    runIOLoops(referenceGyroIO, gyroInputs, referenceIOs, referenceInputs);
+    long ioBytes = runIOLoops(referenceGyroIO, gyroInputs, referenceIOs, referenceInputs);
+
+    SwerveModulePosition[] positions = new SwerveModulePosition[4];
+    for (int i = 0; i < 4; i++) {
+      positions[i] = new SwerveModulePosition();
+    }
+    Rotation2d heading = new Rotation2d();
+    SwerveDrivePoseEstimator estimator =
+        new SwerveDrivePoseEstimator(kinematics, heading, positions, new Pose2d());
+    SwerveDriveOdometry wheelOdometry =
+        new SwerveDriveOdometry(kinematics, heading, positions, new Pose2d());
+    runEstimatorLoops(estimator, wheelOdometry, positions, heading, 0);
+    long estimatorBytes =
+        runEstimatorLoops(
+            estimator, wheelOdometry, positions, heading, LOOPS * FRAMES_PER_LOOP);
+
+    long limit = ioBytes + estimatorBytes + SLACK_BYTES_PER_LOOP * LOOPS + SLACK_BYTES;
+    assertTrue(
+        bytes <= limit,
+        "Main loop odometry allocated "
+            + bytes / LOOPS
+            + " bytes per loop, IO "
+            + ioBytes / LOOPS
+            + " and estimator "
+            + estimatorBytes / LOOPS);
+    // The estimator really ran on every frame
+    assertEquals(
+        2 * LOOPS * FRAMES_PER_LOOP * DrivingModuleIO.DRIVE_STEP_METERS,
+        odometry.getEstimatedPose().getX(),
+        DrivingModuleIO.DRIVE_STEP_METERS);
+  }
+
+  @Test
+  void stationaryModuleDoesNotAllocate() {
+    ModuleIOInputs inputs = moduleInputs(0.0);
+    ModuleOdometrySampler sampler = new ModuleOdometrySampler(0.05, SAMPLES_PER_CYCLE);
+    runModuleCycles(sampler, inputs); // Warm up
+
+    long bytes = runModuleCycles(sampler, inputs);
+    assertTrue(bytes <= SLACK_BYTES, "Stationary module allocated " + bytes + " bytes");
+  }
+
+  @Test
+  void steeringModuleAllocatesAtMostOneRotationPerSample() {
+    // Steering at 25 rad/s, so the skew moves the angle well past the reuse tolerance
+    ModuleIOInputs inputs = moduleInputs(25.0 * SAMPLE_PERIOD);
+    ModuleOdometrySampler sampler = new ModuleOdometrySampler(0.05, SAMPLES_PER_CYCLE);
+    runModuleCycles(sampler, inputs);
+
+    long bytes = runModuleCycles(sampler, inputs);
+    long limit = rotationBytes(CYCLES * SAMPLES_PER_CYCLE) + SLACK_BYTES;
+    assertTrue(bytes <= limit, "Steering module allocated " + bytes + " bytes, limit " + limit);
+  }
+
+  @Test
+  void stationaryHeadingDoesNotAllocate() {
+    OdometryHeading heading = new OdometryHeading(new Rotation2d());
+    Rotation2d yaw = Rotation2d.fromDegrees(30.0);
+    runHeadingCycles(heading, yaw, 0.0);
+
+    long bytes = runHeadingCycles(heading, yaw, 0.0);
+    assertTrue(bytes <= SLACK_BYTES, "Stationary heading allocated " + bytes + " bytes");
+  }
+
+  @Test
+  void turningKinematicHeadingAllocatesAtMostOneRotationPerSample() {
+    OdometryHeading heading = new OdometryHeading(new Rotation2d());
+    runHeadingCycles(heading, null, 0.01);
+
+    long bytes = runHeadingCycles(heading, null, 0.01);
+    long limit = rotationBytes(CYCLES * SAMPLES_PER_CYCLE) + SLACK_BYTES;
+    assertTrue(bytes <= limit, "Turning heading allocated " + bytes + " bytes, limit " + limit);
+  }
+
+  /** Runs the main loop's odometry path the way Drive.periodic does and returns the bytes. */
+  private static long runMainLoops(
+      StationaryGyroIO gyroIO, GyroIOInputs gyroInputs, Module[] modules, DriveOdometry odometry) {
+    long startBytes = threads.getCurrentThreadAllocatedBytes();
+    for (int loop = 0; loop < LOOPS; loop++) {
+      gyroIO.updateInputs(gyroInputs);
+      for (Module module : modules) {
+        module.periodic();
+      }
+      odometry.update(modules, gyroInputs);
+    }
+    return threads.getCurrentThreadAllocatedBytes() - startBytes;
+  }
+
+  /** Runs only the IO side of the main loop and returns the bytes allocated. */
+  private static long runIOLoops(
+      StationaryGyroIO gyroIO,
+      GyroIOInputs gyroInputs,
+      DrivingModuleIO[] moduleIOs,
+      ModuleIOInputs[] moduleInputs) {
+    long startBytes = threads.getCurrentThreadAllocatedBytes();
+    for (int loop = 0; loop < LOOPS; loop++) {
+      gyroIO.updateInputs(gyroInputs);
+      for (int i = 0; i < 4; i++) {
+        moduleIOs[i].updateInputs(moduleInputs[i]);
+      }
+    }
+    return threads.getCurrentThreadAllocatedBytes() - startBytes;
+  }
+
+  /**
+   * Feeds the same frames straight into a WPILib pose estimator and odometry and returns the
+   * bytes allocated.
+   */
+  private static long runEstimatorLoops(
+      SwerveDrivePoseEstimator estimator,
+      SwerveDriveOdometry wheelOdometry,
+      SwerveModulePosition[] positions,
+      Rotation2d heading,
+      long firstFrame) {
+    long frame = firstFrame;
+    long startBytes = threads.getCurrentThreadAllocatedBytes();
+    for (int loop = 0; loop < LOOPS; loop++) {
+      for (int i = 0; i < FRAMES_PER_LOOP; i++) {
+        frame++;
+        for (SwerveModulePosition position : positions) {
+          position.distanceMeters = frame * DrivingModuleIO.DRIVE_STEP_METERS;
+        }
+        estimator.updateWithTime(frame * SAMPLE_PERIOD, heading, positions);
+        wheelOdometry.update(heading, positions);
+      }
+    }
+    return threads.getCurrentThreadAllocatedBytes() - startBytes;
+  }
+
+  /**
+   * Publishes odometry frames into module inputs the way ModuleIOTalonFX does, with the wheel
+   * rolling forward at a steady speed and the drive and turn signals sampled before the frame.
+   */
+  private static class DrivingModuleIO implements ModuleIO {
+    static final double DRIVE_STEP_METERS = 0.01;
+
+    private final double driveStepRotations;
+    private final double[] odometryTimestamps = new double[SAMPLES_PER_CYCLE];
+    private final double[][] odometryValues = new double[2][SAMPLES_PER_CYCLE];
+    private final double[][] odometryValueTimestamps = new double[2][SAMPLES_PER_CYCLE];
+    private long frame = 0;
+
+    DrivingModuleIO(double wheelRadiusMeters) {
+      driveStepRotations = DRIVE_STEP_METERS / wheelRadiusMeters / (2.0 * Math.PI);
+    }
+
+    @Override
+    public void updateInputs(ModuleIOInputs inputs) {
+      for (int i = 0; i < FRAMES_PER_LOOP; i++) {
+        frame++;
+        odometryTimestamps[i] = frame * SAMPLE_PERIOD;
+        odometryValueTimestamps[0][i] = frame * SAMPLE_PERIOD - SIGNAL_SKEW;
+        odometryValueTimestamps[1][i] = frame * SAMPLE_PERIOD - SIGNAL_SKEW;
+        odometryValues[0][i] = (frame - SIGNAL_SKEW / SAMPLE_PERIOD) * driveStepRotations;
+        odometryValues[1][i] = 0.0;
+      }
+
+      inputs.driveConnected = true;
+      inputs.drivePositionRad = odometryValues[0][FRAMES_PER_LOOP - 1] * 2.0 * Math.PI;
+      inputs.turnConnected = true;
+      inputs.turnEncoderConnected = true;
+      inputs.turnAbsolutePosition = Rotation2d.fromRotations(0.0);
+      inputs.turnPosition = Rotation2d.fromRotations(0.0);
+
+      int sampleCount = FRAMES_PER_LOOP;
+      inputs.odometryTimestamps = Arrays.copyOf(odometryTimestamps, sampleCount);
+      inputs.odometryDrivePositionsRad = new double[sampleCount];
+      inputs.odometryTurnPositions = new Rotation2d[sampleCount];
+      inputs.odometryDriveTimestamps = Arrays.copyOf(odometryValueTimestamps[0], sampleCount);
+      inputs.odometryTurnTimestamps = Arrays.copyOf(odometryValueTimestamps[1], sampleCount);
+      for (int i = 0; i < sampleCount; i++) {
+        inputs.odometryDrivePositionsRad[i] = odometryValues[0][i] * 2.0 * Math.PI;
+        inputs.odometryTurnPositions[i] = Rotation2d.fromRotations(odometryValues[1][i]);
+      }
+    }
+  }
+
+  /** Publishes a steady yaw into gyro inputs the way GyroIOPigeon2 does. */
+  private static class StationaryGyroIO implements GyroIO {
+    private final double[] yawValues = new double[SAMPLES_PER_CYCLE];
+    private final double[] yawValueTimestamps = new double[SAMPLES_PER_CYCLE];
+    private long frame = 0;
+
+    @Override
+    public void updateInputs(GyroIOInputs inputs) {
+      for (int i = 0; i < FRAMES_PER_LOOP; i++) {
+        frame++;
+        yawValueTimestamps[i] = frame * SAMPLE_PERIOD - SIGNAL_SKEW;
+        yawValues[i] = 0.0;
+      }
+
+      inputs.connected = true;
+      inputs.yawPosition = Rotation2d.fromDegrees(0.0);
+
+      int sampleCount = FRAMES_PER_LOOP;
+      inputs.odometryYawTimestamps = Arrays.copyOf(yawValueTimestamps, sampleCount);
+      inputs.odometryYawPositions = new Rotation2d[sampleCount];
+      for (int i = 0; i < sampleCount; i++) {
+        inputs.odometryYawPositions[i] = Rotation2d.fromDegrees(yawValues[i]);
+      }
+    }
+  }
+
+  /** Builds one cycle of module inputs, with the turn angle advancing by the given step. */
+  private static ModuleIOInputs moduleInputs(double turnStepRad) {
+    ModuleIOInputs inputs = new ModuleIOInputs();
+    inputs.odometryTimestamps = new double[SAMPLES_PER_CYCLE];
+    inputs.odometryDriveTimestamps = new double[SAMPLES_PER_CYCLE];
+    inputs.odometryTurnTimestamps = new double[SAMPLES_PER_CYCLE];
+    inputs.odometryDrivePositionsRad = new double[SAMPLES_PER_CYCLE];
+    inputs.odometryTurnPositions = new Rotation2d[SAMPLES_PER_CYCLE];
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      inputs.odometryTimestamps[i] = i * SAMPLE_PERIOD;
+      inputs.odometryDriveTimestamps[i] = i * SAMPLE_PERIOD - SIGNAL_SKEW;
+      inputs.odometryTurnTimestamps[i] = i * SAMPLE_PERIOD - SIGNAL_SKEW;
+      inputs.odometryDrivePositionsRad[i] = i * 0.1;
+      inputs.odometryTurnPositions[i] = new Rotation2d(i * turnStepRad);
+    }
+    return inputs;
+  }
+
+  /** Runs the module sampler over consecutive cycles and returns the bytes allocated. */
+  private static long runModuleCycles(ModuleOdometrySampler sampler, ModuleIOInputs inputs) {
+    long startBytes = threads.getCurrentThreadAllocatedBytes();
+    for (int cycle = 0; cycle < CYCLES; cycle++) {
+      // Advance the timestamps in place so each cycle follows the last
+      for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+        inputs.odometryTimestamps[i] += SAMPLES_PER_CYCLE * SAMPLE_PERIOD;
+        inputs.odometryDriveTimestamps[i] += SAMPLES_PER_CYCLE * SAMPLE_PERIOD;
+        inputs.odometryTurnTimestamps[i] += SAMPLES_PER_CYCLE * SAMPLE_PERIOD;
+      }
+      sampler.update(inputs);
+    }
+    return threads.getCurrentThreadAllocatedBytes() - startBytes;
+  }
+
+  /**
+   * Runs the heading tracker and returns the bytes allocated. A non-null yaw is fed as a
+   * stationary gyro, otherwise the heading is integrated from the kinematic delta.
+   */
+  private static long runHeadingCycles(
+      OdometryHeading heading, Rotation2d yaw, double kinematicDeltaRad) {
+    double timestamp = 0.0;
+    long startBytes = threads.getCurrentThreadAllocatedBytes();
+    for (int sample = 0; sample < CYCLES * SAMPLES_PER_CYCLE; sample++) {
+      timestamp += SAMPLE_PERIOD;
+      if (yaw != null) {
+        heading.updateFromGyro(yaw, timestamp - SIGNAL_SKEW, timestamp);
+      } else {
+        heading.updateFromKinematics(kinematicDeltaRad);
+      }
+    }
+    return threads.getCurrentThreadAllocatedBytes() - startBytes;
+  }
+
+  /** Measures the bytes allocated by building the given number of Rotation2d instances. */
+  private long rotationBytes(int count) {
+    long startBytes = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < count; i++) {
+      allocated[0] = new Rotation2d(i);
+    }
+    return threads.getCurrentThreadAllocatedBytes() - startBytes;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * OdometrySampleBufferTest.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+
+package org.team5924.frc2025.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import org.junit.jupiter.api.Test;
+import org.team5924.frc2025.util.ClockOffsetEstimator;
+
+class OdometrySampleBufferTest {
+  private static final int CAPACITY = 8;
+  private static final int COLUMNS = 3;
+  private static final long FRAME_COUNT = 200_000;
+
+  @Test
+  void concurrentDrainNeverSeesTornFrames() throws InterruptedException {
+    // Each column's value encodes the frame it was written in, so a torn frame shows up as a
+    // value or timestamp from a different frame than the rest of its row
+    long[] writingFrame = new long[1];
+    DoubleSupplier[] sources = new DoubleSupplier[COLUMNS];
+    for (int column = 0; column < COLUMNS; column++) {
+      int columnIndex = column;
+      sources[column] =
+          () -> {
+            // Widen the window for the reader to run mid-frame, as a slow signal read would
+            for (int spin = 0; spin < 100; spin++) {
+              Thread.onSpinWait();
+            }
+            return encode(writingFrame[0], columnIndex);
+          };
+    }
+    OdometrySampleBuffer buffer =
+        new OdometrySampleBuffer(CAPACITY, new BaseStatusSignal[COLUMNS], sources);
+    ClockOffsetEstimator clock = new ClockOffsetEstimator(0.1, 0.001);
+
+    // Frame published to the reader, as PhoenixOdometryThread does after writing every buffer
+    AtomicLong publishedFrame = new AtomicLong(0);
+    AtomicLong recordedCount = new AtomicLong(0);
+    Thread writer =
+        new Thread(
+            () -> {
+              for (long frame = 1; frame <= FRAME_COUNT; frame++) {
+                writingFrame[0] = frame;
+                if (buffer.record(frame, timestamp(frame), clock)) {
+                  recordedCount.incrementAndGet();
+                }
+                publishedFrame.set(frame);
+                // Pace the writer so the reader keeps up with most frames but not all of them
+                for (int spin = 0; spin < 200; spin++) {
+                  Thread.onSpinWait();
+                }
+              }
+            });
+
+    double[] timestamps = new double[CAPACITY];
+    double[][] values = new double[COLUMNS][CAPACITY];
+    double[][] valueTimestamps = new double[COLUMNS][CAPACITY];
+    long drainedCount = 0;
+    long lastFrame = 0;
+    writer.start();
+    while (true) {
+      boolean writerDone = !writer.isAlive();
+      int count = buffer.drain(publishedFrame.get(), timestamps, values, valueTimestamps);
+      for (int i = 0; i < count; i++) {
+        long frame = Math.round(timestamps[i] * 1000.0);
+        assertEquals(timestamp(frame), timestamps[i], "Frame timestamp");
+        assertTrue(frame > lastFrame, "Frames out of order: " + frame + " after " + lastFrame);
+        assertTrue(frame <= publishedFrame.get(), "Drained a frame past the drain limit");
+        for (int column = 0; column < COLUMNS; column++) {
+          assertEquals(encode(frame, column), values[column][i], "Value from another frame");
+          assertEquals(timestamps[i], valueTimestamps[column][i], "Timestamp from another frame");
+        }
+        lastFrame = frame;
+      }
+      drainedCount += count;
+      if (count == 0) {
+        if (writerDone) {
+          break;
+        }
+        Thread.onSpinWait();
+      }
+    }
+    writer.join();
+
+    assertTrue(drainedCount > 0, "Reader never drained a frame");
+    assertEquals(recordedCount.get(), drainedCount);
+    assertEquals(FRAME_COUNT, buffer.getDroppedCount() + drainedCount);
+  }
+
+  @Test
+  void drainStopsAtFrameLimit() {
+    long[] writingFrame = new long[1];
+    OdometrySampleBuffer buffer =
+        new OdometrySampleBuffer(
+            CAPACITY, new BaseStatusSignal[1], new DoubleSupplier[] {() -> writingFrame[0]});
+    ClockOffsetEstimator clock = new ClockOffsetEstimator(0.1, 0.001);
+    for (long frame = 1; frame <= 5; frame++) {
+      writingFrame[0] = frame;
+      buffer.record(frame, timestamp(frame), clock);
+    }
+
+    double[] timestamps = new double[CAPACITY];
+    double[][] values = new double[1][CAPACITY];
+    double[][] valueTimestamps = new double[1][CAPACITY];
+    assertEquals(3, buffer.drain(3, timestamps, values, valueTimestamps));
+    assertEquals(3.0, values[0][2]);
+    assertEquals(2, buffer.drain(timestamps, values, valueTimestamps));
+    assertEquals(4.0, values[0][0]);
+    assertEquals(0, buffer.drain(timestamps, values, valueTimestamps));
+  }
+
+  private static double timestamp(long frame) {
+    return frame / 1000.0;
+  }
+
+  private static double encode(long frame, int column) {
+    return frame * 16.0 + column;
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * PhoenixOdometryHandoffTest.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+package org.team5924.frc2025.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.team5924.frc2025.subsystems.drive.GyroIO.GyroIOInputs;
+import org.team5924.frc2025.subsystems.drive.ModuleIO.ModuleIOInputs;
+
+/**
+ * Publishes frames from a second thread through {@link PhoenixOdometryThread} while the test
+ * thread runs the main loop side of the handoff: latch the drain limit, drain every module and the
+ * gyro the way their IO implementations do, then turn the module samples into positions. Every
+ * value encodes the frame it was sampled in, so a torn or misaligned frame shows up as a position
+ * or yaw from another frame than its timestamp.
+ */
+class PhoenixOdometryHandoffTest {
+  private static final int CAPACITY = PhoenixOdometryThread.SAMPLE_BUFFER_CAPACITY;
+  private static final long FRAME_COUNT = 5_000;
+  private static final double WHEEL_RADIUS = 0.05;
+
+  // Written and read only by the publishing thread, while it samples a frame
+  private long sampledFrame = 0;
+
+  @Test
+  void mainLoopDrainsWholeAlignedFrames() throws InterruptedException {
+    PhoenixOdometryThread thread = new PhoenixOdometryThread("test", 250.0, false);
+    OdometrySampleBuffer[] moduleBuffers = new OdometrySampleBuffer[4];
+    for (int module = 0; module < 4; module++) {
+      int moduleIndex = module;
+      moduleBuffers[module] =
+          thread.registerSignals(
+              () -> slowRead(drivePositionRotations(sampledFrame, moduleIndex)),
+              () -> slowRead(turnPositionRotations(sampledFrame, moduleIndex)));
+    }
+    OdometrySampleBuffer gyroBuffer =
+        thread.registerSignals(() -> slowRead(yawDegrees(sampledFrame)));
+
+    // Last frame the main loop drained. The publisher never gets a full buffer ahead of it, as on
+    // the robot, so no sample is dropped and every cycle must drain the same frames everywhere.
+    AtomicLong drainedFrame = new AtomicLong(0);
+    AtomicBoolean publishing = new AtomicBoolean(true);
+    Thread publisher =
+        new Thread(
+            () -> {
+              for (long frame = 1; frame <= FRAME_COUNT; frame++) {
+                while (frame - drainedFrame.get() > CAPACITY) {
+                  Thread.yield();
+                }
+                sampledFrame = frame;
+                thread.publishFrame(timestamp(frame));
+              }
+              publishing.set(false);
+            });
+
+    ModuleOdometrySampler[] samplers = new ModuleOdometrySampler[4];
+    ModuleIOInputs[] moduleInputs = new ModuleIOInputs[4];
+    for (int module = 0; module < 4; module++) {
+      samplers[module] = new ModuleOdometrySampler(WHEEL_RADIUS, CAPACITY);
+      moduleInputs[module] = new ModuleIOInputs();
+    }
+    GyroIOInputs gyroInputs = new GyroIOInputs();
+    double[] timestamps = new double[CAPACITY];
+    double[][] values = new double[2][CAPACITY];
+    double[][] valueTimestamps = new double[2][CAPACITY];
+
+    long lastDrainLimit = 0;
+    long partialCycles = 0;
+    publisher.start();
+    while (true) {
+      boolean publisherDone = !publishing.get();
+
+      // Main loop side, in the order Drive.periodic runs it
+      thread.latchDrainLimit();
+      long drainLimit = thread.getDrainLimit();
+      drainGyro(gyroBuffer, drainLimit, gyroInputs, timestamps, values, valueTimestamps);
+      for (int module = 0; module < 4; module++) {
+        drainModule(
+            moduleBuffers[module],
+            drainLimit,
+            moduleInputs[module],
+            timestamps,
+            values,
+            valueTimestamps);
+        samplers[module].update(moduleInputs[module]);
+      }
+      drainedFrame.set(drainLimit);
+
+      for (int module = 0; module < 4; module++) {
+        checkModule(module, samplers[module], moduleInputs[module], lastDrainLimit, drainLimit);
+      }
+      checkGyro(gyroInputs, lastDrainLimit, drainLimit);
+
+      // Every buffer holds exactly the frames published since the last latch
+      long expected = drainLimit - lastDrainLimit;
+      assertEquals(expected, gyroInputs.odometryYawTimestamps.length, "Gyro frame count");
+      for (int module = 0; module < 4; module++) {
+        assertEquals(expected, samplers[module].getSampleCount(), "Module frame count");
+        assertTrue(
+            Arrays.equals(
+                moduleInputs[module].odometryTimestamps, gyroInputs.odometryYawTimestamps),
+            "Module " + module + " frames differ from the gyro frames");
+      }
+      if (expected > 0 && expected < CAPACITY) {
+        partialCycles++;
+      }
+      lastDrainLimit = drainLimit;
+
+      if (publisherDone && drainLimit == FRAME_COUNT) {
+        break;
+      }
+      Thread.onSpinWait();
+    }
+    publisher.join();
+
+    // The latch has to land mid-batch for the test to exercise the handoff
+    assertTrue(partialCycles > 0, "Every cycle drained a whole buffer");
+    for (int module = 0; module < 4; module++) {
+      assertEquals(0, moduleBuffers[module].getDroppedCount(), "Module samples dropped");
+    }
+    assertEquals(0, gyroBuffer.getDroppedCount(), "Gyro samples dropped");
+  }
+
+  /** Drains one module buffer into its inputs the way ModuleIOTalonFX does. */
+  private static void drainModule(
+      OdometrySampleBuffer buffer,
+      long drainLimit,
+      ModuleIOInputs inputs,
+      double[] timestamps,
+      double[][] values,
+      double[][] valueTimestamps) {
+    int sampleCount = buffer.drain(drainLimit, timestamps, values, valueTimestamps);
+    inputs.odometryTimestamps = Arrays.copyOf(timestamps, sampleCount);
+    inputs.odometryDrivePositionsRad = new double[sampleCount];
+    inputs.odometryTurnPositions = new Rotation2d[sampleCount];
+    inputs.odometryDriveTimestamps = Arrays.copyOf(valueTimestamps[0], sampleCount);
+    inputs.odometryTurnTimestamps = Arrays.copyOf(valueTimestamps[1], sampleCount);
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.odometryDrivePositionsRad[i] = values[0][i] * 2.0 * Math.PI;
+      inputs.odometryTurnPositions[i] = Rotation2d.fromRotations(values[1][i]);
+    }
+  }
+
+  /** Drains the gyro buffer into its inputs the way GyroIOPigeon2 does. */
+  private static void drainGyro(
+      OdometrySampleBuffer buffer,
+      long drainLimit,
+      GyroIOInputs inputs,
+      double[] timestamps,
+      double[][] values,
+      double[][] valueTimestamps) {
+    int sampleCount = buffer.drain(drainLimit, timestamps, values, valueTimestamps);
+    inputs.odometryYawTimestamps = Arrays.copyOf(valueTimestamps[0], sampleCount);
+    inputs.odometryYawPositions = new Rotation2d[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.odometryYawPositions[i] = Rotation2d.fromDegrees(values[0][i]);
+    }
+  }
+
+  private static void checkModule(
+      int module,
+      ModuleOdometrySampler sampler,
+      ModuleIOInputs inputs,
+      long lastDrainLimit,
+      long drainLimit) {
+    SwerveModulePosition[] positions = sampler.getPositions();
+    long lastFrame = lastDrainLimit;
+    for (int i = 0; i < sampler.getSampleCount(); i++) {
+      long frame = frameAt(inputs.odometryTimestamps[i]);
+      assertTrue(frame > lastFrame, "Frame " + frame + " drained after " + lastFrame);
+      assertTrue(frame <= drainLimit, "Drained frame " + frame + " past limit " + drainLimit);
+      double expectedDistance =
+          drivePositionRotations(frame, module) * 2.0 * Math.PI * WHEEL_RADIUS;
+      assertEquals(
+          expectedDistance,
+          positions[i].distanceMeters,
+          1e-9 * expectedDistance,
+          "Drive position from another frame");
+      Rotation2d expectedAngle = Rotation2d.fromRotations(turnPositionRotations(frame, module));
+      assertEquals(
+          0.0,
+          positions[i].angle.minus(expectedAngle).getRadians(),
+          1e-9,
+          "Turn position from another frame");
+      lastFrame = frame;
+    }
+  }
+
+  private static void checkGyro(GyroIOInputs inputs, long lastDrainLimit, long drainLimit) {
+    long lastFrame = lastDrainLimit;
+    for (int i = 0; i < inputs.odometryYawTimestamps.length; i++) {
+      long frame = frameAt(inputs.odometryYawTimestamps[i]);
+      assertTrue(frame > lastFrame, "Gyro frame " + frame + " drained after " + lastFrame);
+      assertTrue(frame <= drainLimit, "Drained gyro frame " + frame + " past " + drainLimit);
+      Rotation2d expectedYaw = Rotation2d.fromDegrees(yawDegrees(frame));
+      assertEquals(
+          0.0,
+          inputs.odometryYawPositions[i].minus(expectedYaw).getRadians(),
+          1e-9,
+          "Yaw from another frame");
+      lastFrame = frame;
+    }
+  }
+
+  /** Returns the value after a delay, widening the window for the main loop to run mid-frame. */
+  private static double slowRead(double value) {
+    for (int spin = 0; spin < 1000; spin++) {
+      Thread.onSpinWait();
+    }
+    return value;
+  }
+
+  private static double timestamp(long frame) {
+    return frame / 1000.0;
+  }
+
+  private static long frameAt(double timestamp) {
+    return Math.round(timestamp * 1000.0);
+  }
+
+  private static double drivePositionRotations(long frame, int module) {
+    return frame * 0.01 + module;
+  }
+
+  private static double turnPositionRotations(long frame, int module) {
+    return (frame % 1000) / 1000.0 + module * 0.1;
+  }
+
+  private static double yawDegrees(long frame) {
+    return (frame % 3600) / 10.0;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * ClockOffsetEstimatorTest.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+
+package org.team5924.frc2025.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ClockOffsetEstimatorTest {
+  private static final double MAX_BRACKET_SECONDS = 100e-6;
+
+  @Test
+  void wideFirstObservationIsRejected() {
+    ClockOffsetEstimator estimator = new ClockOffsetEstimator(0.01, MAX_BRACKET_SECONDS);
+
+    // Preempted between the reads, so the midpoint is 5 ms away from the true offset of 10 s
+    estimator.addObservation(20.0, 10.0, 20.01);
+    assertFalse(estimator.isInitialized());
+    assertEquals(1, estimator.getRejectedCount());
+
+    // The first tight observation sets the offset outright
+    estimator.addObservation(20.1, 10.1, 20.10002);
+    assertTrue(estimator.isInitialized());
+    assertEquals(10.00001, estimator.getOffsetSeconds(), 1e-9);
+    assertEquals(1, estimator.getAcceptedCount());
+  }
+
+  @Test
+  void laterWideObservationsAreRejected() {
+    ClockOffsetEstimator estimator = new ClockOffsetEstimator(0.5, MAX_BRACKET_SECONDS);
+    estimator.addObservation(20.0, 10.0, 20.0);
+    estimator.addObservation(21.0, 10.0, 21.001);
+    estimator.addObservation(22.0, 12.0, 21.9999);
+    assertEquals(10.0, estimator.getOffsetSeconds(), 1e-12);
+    assertEquals(2, estimator.getRejectedCount());
+
+    estimator.addObservation(22.0, 11.98, 22.0);
+    assertEquals(10.01, estimator.getOffsetSeconds(), 1e-9);
+    assertEquals(15.0, estimator.toReference(4.99), 1e-9);
+  }
+}
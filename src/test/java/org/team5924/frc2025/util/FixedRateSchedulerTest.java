@@ -0,0 +1,89 @@
+/*
+ * FixedRateSchedulerTest.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+
+package org.team5924.frc2025.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+
+class FixedRateSchedulerTest {
+  private static final double PERIOD_SECONDS = 0.01;
+  private static final double SPIN_SECONDS = 0.0005;
+  private static final long PERIOD_NANOS = (long) (PERIOD_SECONDS * 1e9);
+  private static final int TICKS = 100;
+
+  @Test
+  void achievesTargetRate() {
+    FixedRateScheduler scheduler = new FixedRateScheduler(PERIOD_SECONDS, SPIN_SECONDS);
+    scheduler.waitForNextTick();
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < TICKS; i++) {
+      // Fake task using a fifth of the period, which the schedule should absorb
+      runTask(PERIOD_NANOS / 5);
+      scheduler.waitForNextTick();
+    }
+    double rateHz = TICKS / ((System.nanoTime() - startNanos) / 1e9);
+
+    assertEquals(1.0 / PERIOD_SECONDS, rateHz, 0.02 / PERIOD_SECONDS, "Achieved rate");
+    assertEquals(0, scheduler.getOverrunCount());
+  }
+
+  @Test
+  void skipsMissedPeriodsInsteadOfBursting() {
+    FixedRateScheduler scheduler = new FixedRateScheduler(PERIOD_SECONDS, SPIN_SECONDS);
+    scheduler.waitForNextTick();
+    long[] tickNanos = new long[TICKS];
+    long startNanos = System.nanoTime();
+    int overrunTick = TICKS / 2;
+    long overrunEndNanos = 0;
+    for (int i = 0; i < TICKS; i++) {
+      if (i == overrunTick) {
+        // One task overruns by three and a half periods
+        runTask(PERIOD_NANOS * 7 / 2);
+        overrunEndNanos = System.nanoTime();
+      }
+      scheduler.waitForNextTick();
+      tickNanos[i] = System.nanoTime();
+    }
+
+    assertEquals(1, scheduler.getOverrunCount());
+    // The next tick comes a full period after the overrun, not immediately
+    assertTrue(
+        tickNanos[overrunTick] - overrunEndNanos >= PERIOD_NANOS * 9 / 10,
+        "Ticked immediately after an overrun");
+    // Missed ticks are never run back to back to catch up
+    for (int i = overrunTick + 1; i < TICKS; i++) {
+      long intervalNanos = tickNanos[i] - tickNanos[i - 1];
+      assertTrue(intervalNanos >= PERIOD_NANOS / 2, "Burst tick " + i + " after " + intervalNanos);
+    }
+    // The three missed periods are dropped from the schedule rather than made up
+    double elapsedPeriods = (tickNanos[TICKS - 1] - startNanos) / (double) PERIOD_NANOS;
+    assertEquals(TICKS + 3, elapsedPeriods, 1.0, "Elapsed periods");
+  }
+
+  /** Stands in for the loop body by sleeping for the given duration. */
+  private static void runTask(long durationNanos) {
+    long endNanos = System.nanoTime() + durationNanos;
+    long remainingNanos;
+    while ((remainingNanos = endNanos - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remainingNanos);
+    }
+  }
+}
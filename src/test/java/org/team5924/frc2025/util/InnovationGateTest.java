@@ -0,0 +1,75 @@
+/*
+ * InnovationGateTest.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+
+package org.team5924.frc2025.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import org.junit.jupiter.api.Test;
+import org.team5924.frc2025.util.InnovationGate.Result;
+
+class InnovationGateTest {
+  private static final double[] DOWNWEIGHT_THRESHOLDS = {3.84, 5.99, 7.81};
+  private static final double[] REJECT_THRESHOLDS = {10.83, 13.82, 16.27};
+  private static final int MAX_CONSECUTIVE_REJECTS = 3;
+
+  private static final Pose2d PREDICTED = new Pose2d(2.0, 3.0, new Rotation2d());
+  private static final Pose2d OUTLIER = new Pose2d(4.0, 3.0, new Rotation2d());
+  private static final Matrix<N3, N1> STD_DEVS = VecBuilder.fill(0.1, 0.1, 0.1);
+
+  private final PoseCovarianceTracker covariance =
+      new PoseCovarianceTracker(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.1, 0.1);
+  private final InnovationGate gate =
+      new InnovationGate(DOWNWEIGHT_THRESHOLDS, REJECT_THRESHOLDS, MAX_CONSECUTIVE_REJECTS);
+
+  @Test
+  void downweightsAfterConsecutiveRejects() {
+    for (int i = 1; i <= MAX_CONSECUTIVE_REJECTS; i++) {
+      assertEquals(Result.REJECT, gate.evaluate(PREDICTED, covariance, OUTLIER, STD_DEVS, 1.0));
+      assertEquals(i, gate.getConsecutiveRejects());
+    }
+
+    assertEquals(Result.DOWNWEIGHT, gate.evaluate(PREDICTED, covariance, OUTLIER, STD_DEVS, 1.0));
+    assertEquals(0, gate.getConsecutiveRejects());
+    assertEquals(1, gate.getRecoveryCount());
+    assertEquals(MAX_CONSECUTIVE_REJECTS, gate.getRejectCount());
+    // Scaled so the measurement sits on the down-weight threshold for 3 degrees of freedom
+    assertEquals(
+        DOWNWEIGHT_THRESHOLDS[2],
+        gate.getLastMahalanobisSquared() / gate.getVarianceScale(),
+        1e-9);
+  }
+
+  @Test
+  void passingMeasurementResetsRun() {
+    for (int i = 0; i < MAX_CONSECUTIVE_REJECTS; i++) {
+      gate.evaluate(PREDICTED, covariance, OUTLIER, STD_DEVS, 1.0);
+    }
+    assertEquals(Result.ACCEPT, gate.evaluate(PREDICTED, covariance, PREDICTED, STD_DEVS, 1.0));
+    assertEquals(0, gate.getConsecutiveRejects());
+
+    assertEquals(Result.REJECT, gate.evaluate(PREDICTED, covariance, OUTLIER, STD_DEVS, 1.0));
+    assertEquals(1, gate.getConsecutiveRejects());
+    assertEquals(0, gate.getRecoveryCount());
+  }
+}
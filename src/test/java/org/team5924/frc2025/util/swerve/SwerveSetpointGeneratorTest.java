@@ -0,0 +1,283 @@
+/*
+ * SwerveSetpointGeneratorTest.java
+ */
+
+/* 
+ * Copyright (C) 2024-2025 Team 5924 - Golden Gate Robotics and/or its affiliates.
+ *
+ * This file, and the associated project, are offered under the GNU General
+ * Public License v3.0. A copy of this license can be found in LICENSE.md
+ * at the root of this project.
+ *
+ * If this file has been separated from the original project, you should have
+ * received a copy of the GNU General Public License along with it.
+ * If you did not, see <https://www.gnu.org/licenses>.
+ */
+
+
+package org.team5924.frc2025.util.swerve;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.util.Units;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.team5924.frc2025.util.swerve.SwerveSetpointGenerator.LimitSolver;
+
+class SwerveSetpointGeneratorTest {
+  private static final double LOOP_PERIOD = 0.02;
+  private static final double HALF_TRACK = 0.29;
+  // Same as TunerConstantsGamma.moduleLimitsFree, which cannot load without the Phoenix natives
+  private static final ModuleLimits LIMITS =
+      new ModuleLimits(3.83, Units.feetToMeters(75.0), Units.degreesToRadians(1080.0));
+  private static final Translation2d[] MODULE_TRANSLATIONS = {
+    new Translation2d(HALF_TRACK, HALF_TRACK),
+    new Translation2d(HALF_TRACK, -HALF_TRACK),
+    new Translation2d(-HALF_TRACK, HALF_TRACK),
+    new Translation2d(-HALF_TRACK, -HALF_TRACK)
+  };
+  private static final int STEPS = 100_000;
+  private static final double REFERENCE_TOLERANCE = 1e-6;
+
+  // Module speeds at or below this have no meaningful heading to limit
+  private static final double MIN_STEERING_SPEED = 1e-6;
+  // The closed form solver is exact, so it may only exceed a limit by rounding
+  private static final double CLOSED_FORM_LIMIT_TOLERANCE = 1e-9;
+  // Steps where the iterative solver exceeds a limit by more than this, in m/s or radians per
+  // loop, are where its root finding stopped short or hit the far end of its bracket
+  private static final double ITERATIVE_RESIDUAL = 1e-3;
+  // Largest difference in any module's velocity vector, in m/s, between the solvers on the other
+  // steps. The observed maximum is about 0.006.
+  private static final double MAX_SOLVER_DIFFERENCE = 0.01;
+  // The iterative solver stays within its residual on about 98% of random steps
+  private static final double MIN_COMPARED_FRACTION = 0.9;
+  // The closed form solver does not fall back on this sequence; picking the wrong root of the
+  // drive limit quadratic makes it fall back on about a sixth of the steps
+  private static final double MAX_CLOSED_FORM_FALLBACK_FRACTION = 1e-3;
+
+  /**
+   * Runs the iterative solver and the reference from the same random desired speeds, including
+   * stops, reversals and saturated commands. Each step continues from the reference setpoint so a
+   * difference is caught where it happens instead of compounding.
+   *
+   * <p>Both root finders keep the far end of their bracket when a guess rounds to the wrong side of
+   * the root, so rounding-level differences in their inputs can change a result completely. A
+   * mismatch only passes if the reference reproduces the iterative setpoint when exactly one of its
+   * guesses within rounding of the root keeps the other bracket.
+   */
+  @Test
+  void iterativeMatchesReference() {
+    Random random = new Random(5924);
+    SwerveSetpointGenerator generator =
+        new SwerveSetpointGenerator(MODULE_TRANSLATIONS, LimitSolver.ITERATIVE);
+    ReferenceSwerveSetpointGenerator referenceGenerator =
+        new ReferenceSwerveSetpointGenerator(
+            new SwerveDriveKinematics(MODULE_TRANSLATIONS), MODULE_TRANSLATIONS);
+    SwerveSetpoint previous = stoppedSetpoint();
+    SwerveSetpoint output = stoppedSetpoint();
+    ChassisSpeeds desired = new ChassisSpeeds();
+
+    for (int step = 0; step < STEPS; step++) {
+      desired = nextDesiredSpeeds(random, desired);
+      generator.generateSetpoint(LIMITS, previous, desired, LOOP_PERIOD, output);
+      referenceGenerator.resetNearRootGuesses(-1);
+      SwerveSetpoint expected =
+          referenceGenerator.generateSetpoint(LIMITS, previous, desired, LOOP_PERIOD);
+      if (!isEquivalent(expected, output)
+          && !matchesWithNearRootGuessFlipped(referenceGenerator, previous, desired, output)) {
+        fail("step " + step + ": expected " + describe(expected) + ", got " + describe(output));
+      }
+      previous = expected;
+    }
+  }
+
+  /**
+   * Steps both solvers from the iterative solver's previous setpoint. The closed form solver must
+   * respect every limit on every step, must agree with the iterative solver wherever the iterative
+   * solver converged, and must almost never need to fall back to iterating.
+   */
+  @Test
+  void closedFormMatchesIterativeWithinBound() {
+    Random random = new Random(5924);
+    SwerveSetpointGenerator iterative =
+        new SwerveSetpointGenerator(MODULE_TRANSLATIONS, LimitSolver.ITERATIVE);
+    SwerveSetpointGenerator closedForm =
+        new SwerveSetpointGenerator(MODULE_TRANSLATIONS, LimitSolver.CLOSED_FORM);
+    SwerveSetpoint previous = stoppedSetpoint();
+    SwerveSetpoint iterativeSetpoint = stoppedSetpoint();
+    SwerveSetpoint closedFormSetpoint = stoppedSetpoint();
+    ChassisSpeeds desired = new ChassisSpeeds();
+    int comparedCount = 0;
+
+    for (int step = 0; step < STEPS; step++) {
+      desired = nextDesiredSpeeds(random, desired);
+      iterative.generateSetpoint(LIMITS, previous, desired, LOOP_PERIOD, iterativeSetpoint);
+      closedForm.generateSetpoint(LIMITS, previous, desired, LOOP_PERIOD, closedFormSetpoint);
+
+      double closedFormOvershoot = getLimitOvershoot(previous, closedFormSetpoint);
+      if (closedFormOvershoot > CLOSED_FORM_LIMIT_TOLERANCE) {
+        fail("step " + step + ": closed form exceeds a limit by " + closedFormOvershoot);
+      }
+      if (getLimitOvershoot(previous, iterativeSetpoint) <= ITERATIVE_RESIDUAL) {
+        comparedCount++;
+        double difference = getMaxModuleVelocityDifference(iterativeSetpoint, closedFormSetpoint);
+        if (difference > MAX_SOLVER_DIFFERENCE) {
+          fail(
+              "step "
+                  + step
+                  + ": solvers differ by "
+                  + difference
+                  + ", iterative "
+                  + describe(iterativeSetpoint)
+                  + ", closed form "
+                  + describe(closedFormSetpoint));
+        }
+      }
+      copy(iterativeSetpoint, previous);
+    }
+
+    assertTrue(
+        comparedCount >= MIN_COMPARED_FRACTION * STEPS,
+        "only " + comparedCount + " of " + STEPS + " steps were compared");
+    assertTrue(
+        closedForm.getClosedFormFallbackCount() <= MAX_CLOSED_FORM_FALLBACK_FRACTION * STEPS,
+        "closed form fell back " + closedForm.getClosedFormFallbackCount() + " times");
+  }
+
+  /** Returns the next random command: a stop, a reversal, the same command or a new one. */
+  private static ChassisSpeeds nextDesiredSpeeds(Random random, ChassisSpeeds desired) {
+    return switch (random.nextInt(8)) {
+      case 0 -> new ChassisSpeeds();
+      case 1 ->
+          new ChassisSpeeds(
+              -desired.vxMetersPerSecond,
+              -desired.vyMetersPerSecond,
+              -desired.omegaRadiansPerSecond);
+      case 2 -> desired; // Keep the previous command so the setpoint converges
+      default ->
+          new ChassisSpeeds(
+              random.nextGaussian() * 3.0,
+              random.nextGaussian() * 3.0,
+              random.nextGaussian() * 4.0);
+    };
+  }
+
+  /** Reruns the reference with each of its near-root guesses in turn keeping the other bracket. */
+  private static boolean matchesWithNearRootGuessFlipped(
+      ReferenceSwerveSetpointGenerator referenceGenerator,
+      SwerveSetpoint previous,
+      ChassisSpeeds desired,
+      SwerveSetpoint actual) {
+    int nearRootGuessCount = referenceGenerator.getNearRootGuessCount();
+    for (int guess = 0; guess < nearRootGuessCount; guess++) {
+      referenceGenerator.resetNearRootGuesses(guess);
+      if (isEquivalent(
+          referenceGenerator.generateSetpoint(LIMITS, previous, desired, LOOP_PERIOD), actual)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isEquivalent(SwerveSetpoint expected, SwerveSetpoint actual) {
+    ChassisSpeeds expectedSpeeds = expected.chassisSpeeds();
+    ChassisSpeeds actualSpeeds = actual.chassisSpeeds();
+    boolean equivalent =
+        Math.abs(expectedSpeeds.vxMetersPerSecond - actualSpeeds.vxMetersPerSecond)
+                <= REFERENCE_TOLERANCE
+            && Math.abs(expectedSpeeds.vyMetersPerSecond - actualSpeeds.vyMetersPerSecond)
+                <= REFERENCE_TOLERANCE
+            && Math.abs(expectedSpeeds.omegaRadiansPerSecond - actualSpeeds.omegaRadiansPerSecond)
+                <= REFERENCE_TOLERANCE;
+    for (int i = 0; i < expected.moduleStates().length; i++) {
+      SwerveModuleState expectedState = expected.moduleStates()[i];
+      SwerveModuleState actualState = actual.moduleStates()[i];
+      equivalent &=
+          Math.abs(expectedState.speedMetersPerSecond - actualState.speedMetersPerSecond)
+                  <= REFERENCE_TOLERANCE
+              && Math.abs(
+                      MathUtil.angleModulus(
+                          expectedState.angle.getRadians() - actualState.angle.getRadians()))
+                  <= REFERENCE_TOLERANCE;
+    }
+    return equivalent;
+  }
+
+  /**
+   * Returns the largest amount by which any module's speed or velocity direction changed more than
+   * the limits allow in one loop. Module states are compared as velocity vectors, so a module that
+   * flipped its angle and reversed its wheel is not counted as having steered half a turn.
+   */
+  private static double getLimitOvershoot(SwerveSetpoint previous, SwerveSetpoint next) {
+    double maxSpeedStep = LIMITS.maxDriveAcceleration() * LOOP_PERIOD;
+    double maxHeadingStep = LIMITS.maxSteeringVelocity() * LOOP_PERIOD;
+    double overshoot = 0.0;
+    for (int i = 0; i < previous.moduleStates().length; i++) {
+      SwerveModuleState before = previous.moduleStates()[i];
+      SwerveModuleState after = next.moduleStates()[i];
+      double speedBefore = Math.abs(before.speedMetersPerSecond);
+      double speedAfter = Math.abs(after.speedMetersPerSecond);
+      overshoot = Math.max(overshoot, Math.abs(speedAfter - speedBefore) - maxSpeedStep);
+
+      if (speedBefore > MIN_STEERING_SPEED && speedAfter > MIN_STEERING_SPEED) {
+        double headingBefore =
+            before.angle.getRadians() + (before.speedMetersPerSecond < 0.0 ? Math.PI : 0.0);
+        double headingAfter =
+            after.angle.getRadians() + (after.speedMetersPerSecond < 0.0 ? Math.PI : 0.0);
+        double headingChange = Math.abs(MathUtil.angleModulus(headingAfter - headingBefore));
+        overshoot = Math.max(overshoot, headingChange - maxHeadingStep);
+      }
+    }
+    return overshoot;
+  }
+
+  private static double getMaxModuleVelocityDifference(SwerveSetpoint a, SwerveSetpoint b) {
+    double difference = 0.0;
+    for (int i = 0; i < a.moduleStates().length; i++) {
+      SwerveModuleState stateA = a.moduleStates()[i];
+      SwerveModuleState stateB = b.moduleStates()[i];
+      difference =
+          Math.max(
+              difference,
+              Math.hypot(
+                  stateA.speedMetersPerSecond * stateA.angle.getCos()
+                      - stateB.speedMetersPerSecond * stateB.angle.getCos(),
+                  stateA.speedMetersPerSecond * stateA.angle.getSin()
+                      - stateB.speedMetersPerSecond * stateB.angle.getSin()));
+    }
+    return difference;
+  }
+
+  private static String describe(SwerveSetpoint setpoint) {
+    StringBuilder builder = new StringBuilder(setpoint.chassisSpeeds().toString());
+    for (SwerveModuleState state : setpoint.moduleStates()) {
+      builder.append(' ').append(state);
+    }
+    return builder.toString();
+  }
+
+  private static void copy(SwerveSetpoint from, SwerveSetpoint to) {
+    to.chassisSpeeds().vxMetersPerSecond = from.chassisSpeeds().vxMetersPerSecond;
+    to.chassisSpeeds().vyMetersPerSecond = from.chassisSpeeds().vyMetersPerSecond;
+    to.chassisSpeeds().omegaRadiansPerSecond = from.chassisSpeeds().omegaRadiansPerSecond;
+    for (int i = 0; i < from.moduleStates().length; i++) {
+      to.moduleStates()[i].speedMetersPerSecond = from.moduleStates()[i].speedMetersPerSecond;
+      to.moduleStates()[i].angle = from.moduleStates()[i].angle;
+    }
+  }
+
+  private static SwerveSetpoint stoppedSetpoint() {
+    SwerveModuleState[] states = new SwerveModuleState[MODULE_TRANSLATIONS.length];
+    for (int i = 0; i < states.length; i++) {
+      states[i] = new SwerveModuleState(0.0, new Rotation2d());
+    }
+    return new SwerveSetpoint(new ChassisSpeeds(), states);
+  }
+}